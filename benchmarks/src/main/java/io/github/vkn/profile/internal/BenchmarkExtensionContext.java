@@ -0,0 +1,166 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.extension.ExecutableInvoker;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.TestInstances;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A minimal, allocation-free {@link ExtensionContext} of a single test method, so that the benchmarks
+ * measure the extension and not the context.
+ */
+class BenchmarkExtensionContext implements ExtensionContext {
+    private final Store store = new MapStore();
+    private final Optional<Method> method;
+    private final Optional<AnnotatedElement> element;
+    private final Optional<Class<?>> testClass;
+
+    BenchmarkExtensionContext(Method method) {
+        this.method = Optional.of(method);
+        this.element = Optional.of(method);
+        this.testClass = Optional.of(method.getDeclaringClass());
+    }
+
+    @Override
+    public Optional<ExtensionContext> getParent() {
+        return Optional.empty();
+    }
+
+    @Override
+    public ExtensionContext getRoot() {
+        return this;
+    }
+
+    @Override
+    public String getUniqueId() {
+        return "";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "benchmark context";
+    }
+
+    @Override
+    public Set<String> getTags() {
+        return Set.of();
+    }
+
+    @Override
+    public Optional<AnnotatedElement> getElement() {
+        return element;
+    }
+
+    @Override
+    public Optional<Class<?>> getTestClass() {
+        return testClass;
+    }
+
+    @Override
+    public Optional<TestInstance.Lifecycle> getTestInstanceLifecycle() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Object> getTestInstance() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<TestInstances> getTestInstances() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Method> getTestMethod() {
+        return method;
+    }
+
+    @Override
+    public Method getRequiredTestMethod() {
+        return method.get();
+    }
+
+    @Override
+    public Optional<Throwable> getExecutionException() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<String> getConfigurationParameter(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public <T> Optional<T> getConfigurationParameter(String key, Function<String, T> transformer) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void publishReportEntry(Map<String, String> map) {
+    }
+
+    @Override
+    public Store getStore(Namespace namespace) {
+        return store;
+    }
+
+    @Override
+    public ExecutionMode getExecutionMode() {
+        return ExecutionMode.SAME_THREAD;
+    }
+
+    @Override
+    public ExecutableInvoker getExecutableInvoker() {
+        return null;
+    }
+
+    private static class MapStore implements Store {
+        private final Map<Object, Object> values = new HashMap<>();
+
+        @Override
+        public Object get(Object key) {
+            return values.get(key);
+        }
+
+        @Override
+        public <V> V get(Object key, Class<V> requiredType) {
+            return requiredType.cast(values.get(key));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> Object getOrComputeIfAbsent(K key, Function<K, V> defaultCreator) {
+            return values.computeIfAbsent(key, k -> defaultCreator.apply((K) k));
+        }
+
+        @Override
+        public <K, V> V getOrComputeIfAbsent(K key, Function<K, V> defaultCreator, Class<V> requiredType) {
+            return requiredType.cast(getOrComputeIfAbsent(key, defaultCreator));
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            values.put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return values.remove(key);
+        }
+
+        @Override
+        public <V> V remove(Object key, Class<V> requiredType) {
+            return requiredType.cast(values.remove(key));
+        }
+    }
+}
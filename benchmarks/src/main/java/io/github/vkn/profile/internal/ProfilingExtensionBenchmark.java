@@ -0,0 +1,80 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.ProfiledTest;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead {@link ProfilingExtension} adds to every invocation of a profiled test:
+ * {@code beforeEach}, {@code interceptTestTemplateMethod} and {@code afterEach} around an empty test method.
+ * Run with {@code -prof gc} to verify that the per-invocation path does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProfilingExtensionBenchmark {
+
+    @Param({"profiled", "warmup", "allocations"})
+    public String method;
+
+    private ProfilingExtension extension;
+    private ExtensionContext context;
+    private final InvocationInterceptor.Invocation<Void> invocation = () -> null;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        extension = new ProfilingExtension() {
+            @Override
+            Profiler getProfiler(io.github.vkn.profile.Backend backend, io.github.vkn.profile.Type type, String events,
+                                 ProfilerOptions options, String absoluteDirPath) {
+                return new NoOpProfiler();
+            }
+        };
+        context = new BenchmarkExtensionContext(Fixture.class.getDeclaredMethod(method));
+        extension.provideTestTemplateInvocationContexts(context);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.getStore(null).get(ProfilingExtension._KEY_PROFILER, ExclusiveProfiler.class).close();
+    }
+
+    @Benchmark
+    public void invocation() throws Throwable {
+        extension.beforeEach(context);
+        extension.interceptTestTemplateMethod(invocation, null, context);
+        extension.afterEach(context);
+    }
+
+    static class Fixture {
+
+        @ProfiledTest(repeat = Integer.MAX_VALUE, top = 0)
+        void profiled() {
+        }
+
+        @ProfiledTest(warmup = Integer.MAX_VALUE - 1, top = 0)
+        void warmup() {
+        }
+
+        @ProfiledTest(repeat = Integer.MAX_VALUE, allocations = true, top = 0)
+        void allocations() {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Companion annotation for {@link ProfiledTest} that replaces the fixed {@link ProfiledTest#warmup()}
+ * count with a steady-state detection. Warm-up invocations continue until the coefficient of variation
+ * of the last {@link #window()} invocation times is below {@link #cv()} and the JIT compilation time
+ * did not grow during these invocations, or until {@link #max()} warm-up invocations ran. Only then
+ * the profiler is started. The chosen warm-up length is shown in the display names of the profiling
+ * invocations. Ignored in the throughput mode.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdaptiveWarmup {
+
+    /**
+     * Specifies the maximum coefficient of variation (standard deviation divided by mean) of the
+     * invocation times in the window, e.g. {@code 0.05} for 5%.
+     *
+     * @return The coefficient of variation threshold.
+     */
+    double cv() default 0.05;
+
+    /**
+     * Specifies the number of most recent warm-up invocations that must be stable.
+     *
+     * @return The window size.
+     */
+    int window() default 20;
+
+    /**
+     * Specifies the hard cap of warm-up invocations.
+     *
+     * @return The maximum number of warm-up invocations.
+     */
+    int max() default 10_000;
+}
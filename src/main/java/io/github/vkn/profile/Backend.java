@@ -0,0 +1,20 @@
+package io.github.vkn.profile;
+
+/**
+ * Enumerates the profilers that record a {@link ProfiledTest}.
+ */
+public enum Backend {
+    /**
+     * The async-profiler, or the JDK Flight Recorder if the async-profiler native library cannot be loaded.
+     */
+    AUTO,
+    /**
+     * The async-profiler. If its native library cannot be loaded, only latency and allocations are measured.
+     */
+    ASYNC_PROFILER,
+    /**
+     * The JDK Flight Recorder with low-overhead settings. Needs no native library and no
+     * {@code perf_event_paranoid} setting, and always writes a {@link Type#JFR} recording.
+     */
+    JFR
+}
@@ -0,0 +1,39 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Companion annotation for {@link ProfiledTest} that compares each run against the results of
+ * previous runs. The results are stored in {@code baseline.txt} in the profiling output directory,
+ * keyed by the test class, method and profiling events. A run is reported as a regression only if
+ * it is slower than the baseline by more than {@link #tolerance()} and the difference is
+ * statistically significant at level {@link #alpha()}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Baseline {
+
+    /**
+     * Specifies the relative slowdown, or allocation growth, that is tolerated, e.g. {@code 0.1} for 10%.
+     *
+     * @return The tolerance as a fraction of the baseline value.
+     */
+    double tolerance() default 0.1;
+
+    /**
+     * Specifies the significance level of the one-sided Welch's t-test on the mean latency.
+     *
+     * @return The significance level.
+     */
+    double alpha() default 0.01;
+
+    /**
+     * Specifies whether a detected regression fails the test. If {@code false}, regressions are only logged.
+     *
+     * @return {@code true} to fail the test on regression.
+     */
+    boolean failOnRegression() default true;
+}
@@ -0,0 +1,32 @@
+package io.github.vkn.profile;
+
+/**
+ * Enumerates the ways the async-profiler walks native stacks, see the {@code cstack} option of the
+ * <a href="https://github.com/async-profiler/async-profiler#profiler-options">async-profiler</a>.
+ */
+public enum CStack {
+    /**
+     * The default of the async-profiler for the event.
+     */
+    DEFAULT,
+    /**
+     * Frame pointers.
+     */
+    FP,
+    /**
+     * DWARF unwind information, for native code compiled without frame pointers.
+     */
+    DWARF,
+    /**
+     * The Last Branch Record of Intel CPUs.
+     */
+    LBR,
+    /**
+     * The stack walker of the JVM, experimental.
+     */
+    VM,
+    /**
+     * No native frames.
+     */
+    NO
+}
@@ -0,0 +1,25 @@
+package io.github.vkn.profile;
+
+/**
+ * The scaling curves fitted to the mean latencies of a {@link ProfiledTest#sizes()} sweep, in ascending order.
+ */
+public enum Complexity {
+    CONSTANT("O(1)"),
+    LOGARITHMIC("O(log n)"),
+    LINEAR("O(n)"),
+    LINEARITHMIC("O(n log n)"),
+    QUADRATIC("O(n^2)");
+
+    private final String notation;
+
+    Complexity(String notation) {
+        this.notation = notation;
+    }
+
+    /**
+     * @return The big O notation, e.g. {@code O(n log n)}.
+     */
+    public String notation() {
+        return notation;
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Companion annotation for {@link ProfiledTest} with {@link Type#COLLAPSED} output that compares the profile
+ * against the profile of another test instead of the previous run of the same test. Without this annotation,
+ * the collapsed stacks of the previous run are kept with a {@code _previous} suffix, and a differential flame
+ * graph of the previous and the current run is written to {@code _diff.html}.
+ * <p>
+ * The other test must be profiled with the same events before this test, in this run or in an earlier one.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Differential {
+
+    /**
+     * Specifies the test to compare against: the name of a test method of the same class, or the fully
+     * qualified name of the class followed by a dot and the method name, e.g.
+     * {@code com.example.ParserTest.oldParser}.
+     *
+     * @return The test to compare against.
+     */
+    String value();
+}
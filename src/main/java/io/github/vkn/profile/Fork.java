@@ -0,0 +1,48 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Companion annotation for {@link ProfiledTest} that runs the profiled test in freshly forked local JVMs
+ * instead of the shared test JVM, so that JIT profiles, heap state and loaded classes of earlier tests
+ * do not affect the results. Each fork runs the warm-up and profiling invocations of the test through the
+ * JUnit Platform Launcher, which must be on the test classpath together with the Jupiter engine, and writes its profiling output with a
+ * {@code _fork<n>} suffix next to the usual output. The latency and allocation results of all forks are
+ * aggregated in the test JVM, where budgets and baselines are checked.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Fork {
+
+    /**
+     * Specifies the number of forked JVMs that run the test one after another.
+     *
+     * @return The number of forks.
+     */
+    int value() default 1;
+
+    /**
+     * Specifies additional JVM flags of the forks, e.g. {@code -XX:+UseNUMA}.
+     *
+     * @return The JVM flags.
+     */
+    String[] jvmArgs() default {};
+
+    /**
+     * Specifies the initial and maximum heap size of the forks, e.g. {@code 2g}. Empty for the JVM default.
+     *
+     * @return The heap size.
+     */
+    String heap() default "";
+
+    /**
+     * Specifies the garbage collector of the forks by name, e.g. {@code G1}, {@code Parallel}, {@code Serial}
+     * or {@code Z}, which selects {@code -XX:+Use<name>GC}. Empty for the JVM default.
+     *
+     * @return The garbage collector name.
+     */
+    String gc() default "";
+}
@@ -0,0 +1,71 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Companion annotation for {@link ProfiledTest} that detects heap retained across invocations, such as an
+ * unbounded cache. Allocation profiles show churn, not retention: a leak of a few bytes per invocation is hidden
+ * among the garbage. After the first profiling invocation, every {@link #every()} invocations and after the last,
+ * a full GC is forced and the used heap is sampled. The growth per invocation is fitted by least squares, and
+ * reported with its confidence interval at level {@code 1 - }{@link #alpha()}.
+ * <p>
+ * With {@link #histogram()}, a class histogram is taken at the first and last sample and the classes with the
+ * largest growth of their instance count are reported, the likely content of the leak. The trend and the classes
+ * are written to {@code <test>_heap.txt}.
+ * <p>
+ * The forced collections run inside the profiling window and are counted by the GC activity of the test, which
+ * should not be combined with {@link PerformanceBudget#maxGcCount()}. Ignored in the throughput mode. With
+ * {@link Fork}, every fork samples its own heap and reports its trend, but growth does not fail the test.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface HeapGrowth {
+
+    /**
+     * Specifies the number of profiling invocations between two heap samples. The test needs at least three
+     * samples, so {@link ProfiledTest#repeat()} should be at least {@code 2 * every + 1}.
+     *
+     * @return The sampling interval in invocations.
+     */
+    int every() default 10;
+
+    /**
+     * Specifies whether class histograms are taken with the {@code DiagnosticCommand} MBean to report the classes
+     * that grow. A histogram walks the whole heap and is only taken at the first and the last sample.
+     *
+     * @return {@code true} to report the growing classes.
+     */
+    boolean histogram() default false;
+
+    /**
+     * Specifies the number of growing classes reported with {@link #histogram()}.
+     *
+     * @return The number of classes.
+     */
+    int top() default 10;
+
+    /**
+     * Specifies the growth of the used heap per invocation that is tolerated, in bytes.
+     *
+     * @return The tolerated growth in bytes per invocation.
+     */
+    long tolerance() default 0;
+
+    /**
+     * Specifies the significance level of the confidence interval of the growth.
+     *
+     * @return The significance level.
+     */
+    double alpha() default 0.01;
+
+    /**
+     * Specifies whether growth fails the test. The heap grows if the lower bound of the confidence interval of the
+     * growth per invocation is above the {@link #tolerance()}. If {@code false}, growth is only logged.
+     *
+     * @return {@code true} to fail the test on growth.
+     */
+    boolean failOnGrowth() default true;
+}
@@ -0,0 +1,109 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Companion annotation for {@link ProfiledTest} that defines hard performance limits.
+ * Once the last profiling invocation is done, the measured values are compared against
+ * the limits and the test fails if any of them is exceeded. Warm-up invocations are never measured.
+ * Negative values disable the corresponding limit. In a {@link ProfiledTest#sizes()} sweep, the limits apply to
+ * every size.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PerformanceBudget {
+
+    /**
+     * Specifies the maximum allowed 99th percentile latency of a single invocation, in {@link #unit()}.
+     *
+     * @return The p99 latency limit, or a negative value for no limit.
+     */
+    long maxP99() default -1;
+
+    /**
+     * Specifies the maximum allowed mean latency of a single invocation, in {@link #unit()}.
+     *
+     * @return The mean latency limit, or a negative value for no limit.
+     */
+    long maxMean() default -1;
+
+    /**
+     * Specifies the maximum number of garbage collections while profiling. Use {@code 0} to assert that the
+     * profiled invocations cause no GC.
+     *
+     * @return The GC count limit, or a negative value for no limit.
+     */
+    long maxGcCount() default -1;
+
+    /**
+     * Specifies the maximum number of major (full or old generation) garbage collections while profiling.
+     * Use {@code 0} to assert that there is no full GC.
+     *
+     * @return The major GC count limit, or a negative value for no limit.
+     */
+    long maxMajorGcCount() default -1;
+
+    /**
+     * Specifies the maximum allowed duration of a single GC pause while profiling, in {@link #unit()}.
+     *
+     * @return The GC pause limit, or a negative value for no limit.
+     */
+    long maxGcPause() default -1;
+
+    /**
+     * Specifies the maximum number of JIT deoptimizations while profiling. Use {@code 0} to assert that the
+     * compiled code stays stable during the measurement. Deoptimizations are counted in the JFR recording,
+     * so the limit is only checked with {@link Type#JFR}.
+     *
+     * @return The deoptimization limit, or a negative value for no limit.
+     */
+    long maxDeoptimizations() default -1;
+
+    /**
+     * Specifies the maximum time a thread may be blocked on a single monitor enter or lock park while profiling,
+     * in {@link #unit()}, e.g. to guard a lock-free or lock-striped implementation. Contention is read from the
+     * {@code lock} events of the JFR recording, so the limit is only checked with {@link Type#JFR} and the
+     * {@code lock} event. Only contention longer than the lock threshold, see {@link Sampling#lock()}, is recorded.
+     *
+     * @return The blocked time limit, or a negative value for no limit.
+     */
+    long maxBlocked() default -1;
+
+    /**
+     * Specifies the maximum share of the time of the profiled operations that threads spend blocked on locks,
+     * e.g. {@code 0.01} to assert that contention costs less than 1%. The blocked time and the operation time are
+     * summed over all threads, see {@link #maxBlocked()} for the requirements.
+     *
+     * @return The contended time limit as a fraction of the operation time, or a negative value for no limit.
+     */
+    double maxContendedRatio() default -1;
+
+    /**
+     * Specifies the time unit of {@link #maxP99()}, {@link #maxMean()}, {@link #maxGcPause()} and
+     * {@link #maxBlocked()}.
+     *
+     * @return The time unit of the latency limits.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * Specifies the maximum number of bytes the test thread may allocate per invocation, on average.
+     * Use {@code 0} to assert that the test method is allocation-free.
+     *
+     * @return The allocation limit in bytes, or a negative value for no limit.
+     */
+    long maxAllocatedBytes() default -1;
+
+    /**
+     * Specifies the highest complexity fitted to a {@link ProfiledTest#sizes()} sweep, e.g.
+     * {@link Complexity#LINEAR} to assert that the test method scales at most linearly.
+     * {@link Complexity#QUADRATIC}, the highest complexity that is fitted, never fails.
+     *
+     * @return The complexity limit.
+     */
+    Complexity maxComplexity() default Complexity.QUADRATIC;
+}
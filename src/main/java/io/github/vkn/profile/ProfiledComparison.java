@@ -0,0 +1,103 @@
+package io.github.vkn.profile;
+
+import org.junit.jupiter.api.TestTemplate;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to mark a test method that compares two implementations, the {@link #baseline()} and the
+ * {@link #candidate()} method of the test class. Both are invoked once per round, in a random order, so
+ * JIT compilation, thermal throttling and other drift affect them alike. Running two {@link ProfiledTest}s
+ * one after the other cannot give this guarantee, which makes small differences impossible to trust.
+ * <p>
+ * The speedup, the baseline time divided by the candidate time, is the geometric mean of the ratios of the
+ * rounds, with a confidence interval at level {@code 1 - }{@link #alpha()}. A one-sided Mann-Whitney U test
+ * reports how likely the candidate times are to be no faster than the baseline times. After the measured
+ * rounds, each side is profiled separately into its own output file with a {@code _baseline} or
+ * {@code _candidate} suffix, because the profiler records one profile at a time. With {@link Type#COLLAPSED}
+ * output, a differential flame graph of the candidate against the baseline is written to {@code _diff.html}.
+ * <p>
+ * The body of the annotated method is not invoked.
+ * <pre>{@code
+ * @ProfiledComparison(baseline = "oldParser", candidate = "newParser", minSpeedup = 0.1)
+ * void parsers() {
+ * }
+ * }</pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@TestTemplate
+@ResourceLock(ProfiledTest.PROFILER_LOCK)
+public @interface ProfiledComparison {
+
+    /**
+     * Specifies the name of the method of the test class with the current implementation. The method
+     * takes no parameters.
+     *
+     * @return The method name.
+     */
+    String baseline();
+
+    /**
+     * Specifies the name of the method of the test class with the new implementation. The method
+     * takes no parameters.
+     *
+     * @return The method name.
+     */
+    String candidate();
+
+    /**
+     * Specifies the number of measured rounds; each round invokes both methods once.
+     *
+     * @return The number of rounds.
+     */
+    int rounds() default 100;
+
+    /**
+     * Specifies the number of unmeasured rounds before the measured rounds.
+     *
+     * @return The number of warm-up rounds.
+     */
+    int warmup() default 10;
+
+    /**
+     * Specifies the speedup the candidate must reach, e.g. {@code 0.1} to require a candidate that is 10%
+     * faster, or {@code -0.05} to tolerate a candidate that is up to 5% slower. The test fails if the lower
+     * bound of the confidence interval of the speedup is below {@code 1 + minSpeedup}.
+     *
+     * @return The required relative speedup, or {@link Double#NEGATIVE_INFINITY} to report the comparison only.
+     */
+    double minSpeedup() default Double.NEGATIVE_INFINITY;
+
+    /**
+     * Specifies the significance level of the confidence interval of the speedup.
+     *
+     * @return The significance level.
+     */
+    double alpha() default 0.01;
+
+    /**
+     * Specifies the profiling events, see {@link ProfiledTest#event()}.
+     *
+     * @return A comma-separated list of profiling events.
+     */
+    String event() default "cpu,alloc,lock";
+
+    /**
+     * Specifies the output type of the profiling data, see {@link ProfiledTest#type()}.
+     *
+     * @return The type of the profiling output.
+     */
+    Type type() default Type.JFR;
+
+    /**
+     * Specifies the profiler, see {@link ProfiledTest#backend()}.
+     *
+     * @return The profiler backend.
+     */
+    Backend backend() default Backend.AUTO;
+}
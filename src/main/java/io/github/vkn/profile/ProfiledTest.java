@@ -1,22 +1,34 @@
 package io.github.vkn.profile;
 
 import org.junit.jupiter.api.TestTemplate;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Annotation to mark a test method for profiling, indicating it should be executed
  * with specific profiling configurations. This includes the type of events to profile,
  * the profiling output type, and the number of repeat and warm-up iterations.
+ * <p>
+ * Under JUnit parallel execution, profiled tests hold the {@link #PROFILER_LOCK} resource lock, so
+ * they are serialized while other tests keep running in parallel. Annotate other tests with
+ * {@code @ResourceLock(ProfiledTest.PROFILER_LOCK)} to keep them out of the profiles as well.
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 @TestTemplate
+@ResourceLock(ProfiledTest.PROFILER_LOCK)
 public @interface ProfiledTest {
 
+    /**
+     * The key of the resource lock held by every profiled test.
+     */
+    String PROFILER_LOCK = "io.github.vkn.profile.ProfiledTest.profiler";
+
     /**
      * Specifies the profiling events to be captured. Default events are CPU usage,
      * memory allocation, and lock contention.
@@ -28,12 +40,22 @@ public @interface ProfiledTest {
     String event() default "cpu,alloc,lock";
 
     /**
-     * Specifies the output type of the profiling data, e.g., Java Flight Recorder (JFR) or flame graphs.
+     * Specifies the output type of the profiling data, e.g., Java Flight Recorder (JFR), flame graphs or
+     * collapsed stacks.
      *
      * @return The type of the profiling output.
      */
     Type type() default Type.JFR;
 
+    /**
+     * Specifies the profiler. By default, the async-profiler is used, and the JDK Flight Recorder if the
+     * async-profiler native library cannot be loaded, e.g. on build agents where {@code perf_event_paranoid}
+     * cannot be changed.
+     *
+     * @return The profiler backend.
+     */
+    Backend backend() default Backend.AUTO;
+
     /**
      * Specifies the number of times the test should be repeated during the profiling session.
      *
@@ -48,4 +70,84 @@ public @interface ProfiledTest {
      * @return The warm-up count.
      */
     int warmup() default 0;
+
+    /**
+     * Specifies the length of the measurement window in {@link #timeUnit()}. A positive value enables
+     * the throughput mode: instead of a fixed {@link #repeat()} count, the test method is invoked
+     * back-to-back until the window ends, with the profiler attached for the whole window, and the
+     * operations per second are reported with a confidence interval. {@link #repeat()} and
+     * {@link #warmup()} are ignored in this mode.
+     *
+     * @return The measurement time, or {@code 0} for the count-based mode.
+     */
+    long measurementTime() default 0;
+
+    /**
+     * Specifies the length of the warm-up window in {@link #timeUnit()} in the throughput mode.
+     *
+     * @return The warm-up time.
+     */
+    long warmupTime() default 0;
+
+    /**
+     * Specifies the time unit of {@link #measurementTime()} and {@link #warmupTime()}.
+     *
+     * @return The time unit.
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * Specifies the number of threads that run the test method concurrently during the profiling phase,
+     * including the JUnit thread. All threads start each invocation at a shared barrier; in the throughput
+     * mode, each of them invokes the method until the end of the measurement window. The aggregate
+     * throughput and the latency per thread are reported. The test method must be thread-safe.
+     * Warm-up invocations always run on the JUnit thread only.
+     *
+     * @return The number of threads.
+     */
+    int threads() default 1;
+
+    /**
+     * Specifies whether the additional {@link #threads()} are virtual threads. Requires a JVM with virtual
+     * thread support; platform threads are used otherwise.
+     *
+     * @return {@code true} to use virtual threads.
+     */
+    boolean virtualThreads() default false;
+
+    /**
+     * Specifies whether the bytes allocated by the test thread are measured for every profiling invocation.
+     * The measurement uses {@code com.sun.management.ThreadMXBean} and works independently of the
+     * {@code alloc} event, even if the async-profiler native library cannot be loaded. The bytes per
+     * invocation are reported next to the latency statistics. Only the JUnit thread is measured if
+     * {@link #threads()} is greater than one. Allocations are always measured if
+     * {@link PerformanceBudget#maxAllocatedBytes()} is set. The allocations of the JUnit invocation chain are
+     * subtracted: every warm-up invocation also invokes the test method directly once, and the difference is
+     * calibrated. With less than two {@link #warmup()} invocations, the allocations of the chain are counted.
+     *
+     * @return {@code true} to measure allocations.
+     */
+    boolean allocations() default false;
+
+    /**
+     * Specifies the number of entries per category in the hot-method summary of a {@link Type#JFR} recording:
+     * top CPU frames, allocation sites, contended monitors and acquiring stacks. The summary is logged, written
+     * next to the profiling output and published as report entries. {@code 0} disables the summary, unless lock
+     * contention is limited by the {@link PerformanceBudget}.
+     *
+     * @return The number of entries per category.
+     */
+    int top() default 10;
+
+    /**
+     * Specifies the input sizes of a sweep. For every size, the warm-up and profiling invocations run
+     * separately with the size passed to the {@code int} or {@code long} parameter of the test method,
+     * each size is profiled into its own output file with an {@code _n<size>} suffix, and budgets and
+     * baselines are checked per size. After the last size, a {@link Complexity} is fitted to the mean
+     * latencies and reported; {@link PerformanceBudget#maxComplexity()} limits it. A sweep cannot be
+     * combined with {@link Fork} or {@link AdaptiveWarmup}.
+     *
+     * @return The input sizes, empty to invoke the test method without a size.
+     */
+    int[] sizes() default {};
 }
@@ -0,0 +1,40 @@
+package io.github.vkn.profile;
+
+import io.github.vkn.profile.internal.ThreadFilter;
+
+/**
+ * Registers the threads sampled by tests that profile with {@link Sampling#filterThreads()}. The JUnit thread
+ * that runs the test is always sampled; threads that run the code under test on its behalf, such as the
+ * worker threads of an executor, are sampled only once they are registered. The threads of
+ * {@link ProfiledTest#threads()} are registered by the extension.
+ * <p>
+ * Registrations hold until the thread is unregistered or terminates, and can be made before or during
+ * profiling, e.g. in {@code @BeforeAll} for a pool shared by all tests of a class:
+ * <pre>{@code
+ * executor.submit(() -> ProfiledThreads.register(Thread.currentThread()));
+ * }</pre>
+ */
+public final class ProfiledThreads {
+
+    private ProfiledThreads() {
+    }
+
+    /**
+     * Samples the thread in filtered profiling sessions. The async-profiler ignores a thread that has not
+     * been started yet or is still being started, so registering from within the thread is the safest.
+     *
+     * @param thread The thread.
+     */
+    public static void register(Thread thread) {
+        ThreadFilter.add(thread);
+    }
+
+    /**
+     * Stops sampling the thread in filtered profiling sessions.
+     *
+     * @param thread The thread.
+     */
+    public static void unregister(Thread thread) {
+        ThreadFilter.remove(thread);
+    }
+}
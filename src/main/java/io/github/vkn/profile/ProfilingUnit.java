@@ -12,9 +12,72 @@ import java.lang.annotation.Target;
  * Annotation to mark a test class to enable profiling. Classes annotated with {@link ProfilingUnit}
  * will have the {@link ProfilingExtension} applied to them, enabling the profiling of methods
  * annotated with {@link ProfiledTest}.
+ * <p>
+ * The profiling parameters of all tests can be overridden by JUnit configuration parameters, set in
+ * {@code junit-platform.properties} or as system properties, without editing the annotations. A value set
+ * this way replaces the value of every {@link ProfiledTest} annotation.
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 @ExtendWith(ProfilingExtension.class)
 public @interface ProfilingUnit {
+
+    /**
+     * The configuration parameter that turns profiling on or off, {@code true} by default. With {@code false},
+     * every profiled test runs once as a plain test: no warm-up, no repetitions, no measurements and no output,
+     * and the async-profiler native library is not loaded.
+     */
+    String ENABLED_PROPERTY = "io.github.vkn.profile.enabled";
+
+    /**
+     * The configuration parameter that overrides {@link ProfiledTest#event()}, e.g. {@code cpu,alloc}.
+     */
+    String EVENT_PROPERTY = "io.github.vkn.profile.event";
+
+    /**
+     * The configuration parameter that overrides {@link ProfiledTest#type()}, {@code JFR}, {@code FLAME} or
+     * {@code COLLAPSED}.
+     */
+    String TYPE_PROPERTY = "io.github.vkn.profile.type";
+
+    /**
+     * The configuration parameter that overrides {@link ProfiledTest#backend()}, e.g. {@code JFR}.
+     */
+    String BACKEND_PROPERTY = "io.github.vkn.profile.backend";
+
+    /**
+     * The configuration parameter that overrides {@link ProfiledTest#repeat()}.
+     */
+    String REPEAT_PROPERTY = "io.github.vkn.profile.repeat";
+
+    /**
+     * The configuration parameter that overrides {@link ProfiledTest#warmup()}.
+     */
+    String WARMUP_PROPERTY = "io.github.vkn.profile.warmup";
+
+    /**
+     * The configuration parameter that sets the directory of the profiling output, {@code target/profiling}
+     * next to the test classes by default.
+     */
+    String DIR_PROPERTY = "io.github.vkn.profile.dir";
+
+    /**
+     * The configuration parameter that accepts the current run as the new {@link Baseline} of every test, {@code false}
+     * by default. The stored baseline of a test is otherwise kept until it is accepted, so that a slow drift over many
+     * runs, each within the tolerance, is detected.
+     */
+    String UPDATE_BASELINE_PROPERTY = "io.github.vkn.profile.updateBaseline";
+
+    /**
+     * The configuration parameter that overrides {@link #session()}, {@code METHOD} or {@code CLASS}.
+     */
+    String SESSION_PROPERTY = "io.github.vkn.profile.session";
+
+    /**
+     * Specifies whether every profiled test of the class is recorded separately, or all of them in a single
+     * recording with a JFR event marking every invocation.
+     *
+     * @return The scope of the profiling session.
+     */
+    SessionScope session() default SessionScope.METHOD;
 }
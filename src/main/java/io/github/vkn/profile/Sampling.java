@@ -0,0 +1,101 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Companion annotation for {@link ProfiledTest} that tunes the sampling of the profiler. Coarser intervals
+ * keep the overhead of long throughput tests low; finer intervals and wall-clock sampling reveal short
+ * waits, e.g. on I/O. Negative values keep the profiler defaults. Options that the
+ * {@link Backend#JFR} backend does not support are ignored with a warning.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Sampling {
+
+    /**
+     * Specifies the interval of the CPU event ({@code cpu}, {@code itimer}) in {@link #unit()}.
+     *
+     * @return The sampling interval, or a negative value for the profiler default.
+     */
+    long interval() default -1;
+
+    /**
+     * Specifies the interval of wall-clock sampling in {@link #unit()}. A non-negative value samples all
+     * threads, running or waiting, in addition to the CPU event; {@code 0} uses the default interval.
+     *
+     * @return The wall-clock interval, or a negative value for no wall-clock sampling.
+     */
+    long wall() default -1;
+
+    /**
+     * Specifies the duration in {@link #unit()} from which a contended lock is recorded.
+     *
+     * @return The lock threshold, or a negative value for the profiler default.
+     */
+    long lock() default -1;
+
+    /**
+     * Specifies the time unit of {@link #interval()}, {@link #wall()} and {@link #lock()}.
+     *
+     * @return The time unit.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * Specifies the number of allocated bytes between two allocation samples.
+     *
+     * @return The allocation interval in bytes, or a negative value for the profiler default.
+     */
+    long alloc() default -1;
+
+    /**
+     * Specifies the maximum depth of the recorded Java stacks.
+     *
+     * @return The maximum stack depth, or a negative value for the profiler default.
+     */
+    int stackDepth() default -1;
+
+    /**
+     * Specifies how native stacks are walked.
+     *
+     * @return The native stack mode.
+     */
+    CStack cstack() default CStack.DEFAULT;
+
+    /**
+     * Specifies whether the samples of every thread are kept separately, with the thread as the root frame of
+     * each stack.
+     *
+     * @return {@code true} to split the profile by thread.
+     */
+    boolean threads() default false;
+
+    /**
+     * Specifies whether the CPU event is replaced by the {@code itimer} event, which needs no
+     * {@code perf_event_paranoid} setting.
+     *
+     * @return {@code true} to sample with {@code setitimer}.
+     */
+    boolean itimer() default false;
+
+    /**
+     * Specifies whether the CPU event is replaced by samples of native memory allocations, the calls of
+     * {@code malloc}.
+     *
+     * @return {@code true} to profile native memory allocations.
+     */
+    boolean nativeMemory() default false;
+
+    /**
+     * Specifies whether only the JUnit thread that runs the test and the threads registered with
+     * {@link ProfiledThreads} are sampled. Samples of background pools, schedulers and the JUnit engine
+     * are then neither taken nor written, which lowers the overhead and the size of the output.
+     *
+     * @return {@code true} to sample the threads of the test only.
+     */
+    boolean filterThreads() default false;
+}
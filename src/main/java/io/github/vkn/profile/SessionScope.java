@@ -0,0 +1,29 @@
+package io.github.vkn.profile;
+
+/**
+ * Enumerates the scopes of a profiling session, see {@link ProfilingUnit#session()}.
+ */
+public enum SessionScope {
+    /**
+     * Every {@link ProfiledTest} starts and stops its own profiler and writes its own output.
+     */
+    METHOD,
+    /**
+     * One {@link Type#JFR} recording runs from the first invocation of a profiled test of the class until all
+     * tests of the class have finished. Every invocation is marked by an {@code io.github.vkn.profile.Invocation}
+     * JFR event with the test, the phase ({@code warmup} or {@code profiling}) and the invocation index, so the
+     * recording can be sliced per test. The repeated start and stop of the profiler is saved, and effects between
+     * tests, such as caches warmed by an earlier test, become visible.
+     * <p>
+     * The recording is named after the class and configured by the first profiled test; the events, backend and
+     * sampling options of the other tests are ignored. The markers are recorded by the {@link Backend#JFR} backend,
+     * and by the async-profiler unless a JDK Flight Recording already ran in the JVM. The per-test summary, the
+     * deoptimization and safepoint counts and {@link TailCapture} need a recording per test and are skipped.
+     * <p>
+     * The scope of the top-level class applies to its nested classes, which share its recording. Profiled tests of
+     * other classes wait until the recording has finished, so under parallel execution the class must be
+     * annotated with {@code @ResourceLock(ProfiledTest.PROFILER_LOCK)} or {@code @Isolated}; otherwise its profiled
+     * tests fail with an {@link org.junit.jupiter.api.extension.ExtensionConfigurationException}.
+     */
+    CLASS
+}
@@ -0,0 +1,51 @@
+package io.github.vkn.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Companion annotation for {@link ProfiledTest} that keeps the profile of slow invocations only.
+ * The profiler records continuously, while the extension remembers the time window of every
+ * invocation slower than {@link #threshold()}, or slower than the running {@link #percentile()} if no
+ * threshold is set. After profiling, only the samples of the JUnit thread that fall into these windows
+ * are taken from the JFR recording and written as collapsed stacks, one file per event kind
+ * ({@code _outliers_cpu.collapsed}, {@code _outliers_alloc.collapsed}, {@code _outliers_lock.collapsed}),
+ * ready for any flame graph tool. Requires {@link Type#JFR}; ignored in the throughput mode and for the
+ * additional {@link ProfiledTest#threads()}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TailCapture {
+
+    /**
+     * Specifies the latency percentile that makes an invocation an outlier if no {@link #threshold()} is set.
+     *
+     * @return The percentile in the range {@code (0, 100)}.
+     */
+    double percentile() default 99;
+
+    /**
+     * Specifies a fixed latency threshold in {@link #unit()} that makes an invocation an outlier.
+     *
+     * @return The threshold, or a negative value to use the {@link #percentile()}.
+     */
+    long threshold() default -1;
+
+    /**
+     * Specifies the time unit of {@link #threshold()}.
+     *
+     * @return The time unit.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * Specifies the maximum number of outlier windows that are kept. Windows of the fastest outliers are
+     * discarded first.
+     *
+     * @return The maximum number of windows.
+     */
+    int capacity() default 10_000;
+}
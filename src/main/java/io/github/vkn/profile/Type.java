@@ -2,6 +2,8 @@ package io.github.vkn.profile;
 
 /**
  * Enumerates the types of profiling output supported. This includes Java Flight Recorder (JFR)
- * for comprehensive JVM profiling data and FLAME for generating flame graphs.
+ * for comprehensive JVM profiling data, FLAME for generating flame graphs and COLLAPSED for
+ * collapsed stacks, one line of semicolon-separated frames and their weight per distinct stack,
+ * from which differential flame graphs are generated.
  */
-public enum Type {JFR, FLAME}
+public enum Type {JFR, FLAME, COLLAPSED}
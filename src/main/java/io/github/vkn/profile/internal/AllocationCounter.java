@@ -0,0 +1,126 @@
+package io.github.vkn.profile.internal;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes allocated by the current thread between {@link #begin()} and {@link #end()}
+ * using {@link com.sun.management.ThreadMXBean}. Neither call allocates, so the counter can be
+ * used on the profiled hot path.
+ * <p>
+ * An invocation that proceeds through the JUnit invocation chain also counts the allocations of JUnit. They are
+ * calibrated during the warm-up, see {@link #calibrate(long, long)}, and subtracted by {@link #endProceed()}.
+ */
+final class AllocationCounter {
+
+    /**
+     * The extended MXBean of HotSpot-based JVMs, or {@code null} if the JVM does not provide it.
+     */
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = extendedThreadMXBean();
+
+    private long start;
+    private long total;
+    private long count;
+    private long max;
+    private long minChain = Long.MAX_VALUE;
+    private long minDirect = Long.MAX_VALUE;
+    private long overhead;
+    private long calibrations;
+
+    private static com.sun.management.ThreadMXBean extendedThreadMXBean() {
+        try {
+            return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean ? bean : null;
+        } catch (LinkageError e) {
+            // the jdk.management module is not present
+            return null;
+        }
+    }
+
+    /**
+     * @return {@code true} if the JVM supports measuring allocated bytes per thread.
+     */
+    static boolean isSupported() {
+        return THREAD_MX_BEAN != null
+                && THREAD_MX_BEAN.isThreadAllocatedMemorySupported() && THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled();
+    }
+
+    static long currentThreadAllocatedBytes() {
+        return THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    void begin() {
+        start = currentThreadAllocatedBytes();
+    }
+
+    /**
+     * Ends an invocation of the test method itself.
+     */
+    void end() {
+        end(0);
+    }
+
+    /**
+     * Ends an invocation that proceeded through the JUnit invocation chain, without the calibrated overhead.
+     */
+    void endProceed() {
+        end(overhead);
+    }
+
+    private void end(long overhead) {
+        long allocated = Math.max(0, currentThreadAllocatedBytes() - start - overhead);
+        total += allocated;
+        count++;
+        if (allocated > max) {
+            max = allocated;
+        }
+    }
+
+    /**
+     * Calibrates the allocations of the JUnit invocation chain from a warm-up invocation, as the difference of the
+     * bytes allocated while proceeding through the chain and while invoking the test method directly. The first
+     * invocation, which loads the classes of the chain, is ignored, and the minimum of each is taken, as early
+     * invocations also allocate while code is compiled.
+     *
+     * @param chainBytes  The bytes allocated by proceeding through the invocation chain.
+     * @param directBytes The bytes allocated by invoking the test method directly.
+     */
+    void calibrate(long chainBytes, long directBytes) {
+        if (calibrations++ == 0) {
+            return;
+        }
+        minChain = Math.min(minChain, chainBytes);
+        minDirect = Math.min(minDirect, directBytes);
+        overhead = Math.max(0, minChain - minDirect);
+    }
+
+    /**
+     * @return The calibrated bytes allocated by the JUnit invocation chain per invocation.
+     */
+    long overhead() {
+        return overhead;
+    }
+
+    /**
+     * Adds invocations measured elsewhere, e.g. in a forked JVM.
+     */
+    void add(long total, long count, long max) {
+        this.total += total;
+        this.count += count;
+        this.max = Math.max(this.max, max);
+    }
+
+    long count() {
+        return count;
+    }
+
+    long total() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double bytesPerInvocation() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+}
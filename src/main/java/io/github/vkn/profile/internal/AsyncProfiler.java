@@ -4,6 +4,8 @@ package io.github.vkn.profile.internal;
 import io.github.vkn.profile.Type;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 import static io.github.vkn.profile.Type.JFR;
@@ -14,16 +16,23 @@ class AsyncProfiler implements Profiler {
     private final String file;
     private final String command;
     private final Type type;
+    private final boolean filterThreads;
     private boolean isStarted;
 
     private final one.profiler.AsyncProfiler profiler = one.profiler.AsyncProfiler.getInstance();
 
-    AsyncProfiler(Type type, String profilingEvent, String filename) {
+    AsyncProfiler(Type type, String profilingEvent, ProfilerOptions options, String filename) {
         this.type = type;
-        command = "%sevent=%s".formatted(type == JFR ? "jfr," : "", profilingEvent);
+        this.filterThreads = options.filterThreads();
+        String events = options.events(profilingEvent);
+        command = "%sevent=%s%s".formatted(type == JFR ? "jfr," : "", events, options.asyncProfilerArguments());
 
-        String suffix = "_%s".formatted(profilingEvent.replace(",", "_"));
-        String ext = type == JFR ? "jfr" : "html";
+        String suffix = "_%s".formatted(events.replace(",", "_"));
+        String ext = switch (type) {
+            case JFR -> "jfr";
+            case FLAME -> "html";
+            case COLLAPSED -> "collapsed";
+        };
         file = "%s%s.%s".formatted(filename, suffix, ext);
 
     }
@@ -35,15 +44,43 @@ class AsyncProfiler implements Profiler {
         }
         LOGGER.log(INFO, "Start profiling");
         try {
-            String cmd = String.format("start,%s,%sfile=%s", command, (type == JFR ? "jfrsync=profile,": ""), file);
+            String cmd = String.format("start,%s,%sfile=%s", command, (isJfrSync() ? "jfrsync=profile," : ""), file);
             LOGGER.info(cmd);
             profiler.execute(cmd);
             isStarted = true;
+            if (filterThreads) {
+                ThreadFilter.attach(profiler);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Synchronizes the JDK events into JFR output, unless the JDK Flight Recorder was used by this JVM:
+     * jfrsync crashes a JVM that already ran a JDK Flight Recording.
+     */
+    private boolean isJfrSync() {
+        if (type != JFR) {
+            return false;
+        }
+        if (JfrProfiler.hasRecorded()) {
+            LOGGER.warning("JDK events are not recorded, a JDK Flight Recording already ran in this JVM");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<Path> recording() {
+        return type == JFR ? Optional.of(Path.of(file)) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Path> output() {
+        return Optional.of(Path.of(file));
+    }
+
     @Override
     public void stop() {
         if (!isStarted) {
@@ -51,6 +88,9 @@ class AsyncProfiler implements Profiler {
         }
         try {
             LOGGER.log(INFO, "Stop profiling");
+            if (filterThreads) {
+                ThreadFilter.detach();
+            }
             profiler.execute(String.format("stop,file=%s", file));
         } catch (IOException e) {
             throw new RuntimeException(e);
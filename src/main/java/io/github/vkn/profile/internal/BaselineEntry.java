@@ -0,0 +1,51 @@
+package io.github.vkn.profile.internal;
+
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The persisted result of a single profiled test run.
+ *
+ * @param count      The number of profiling invocations.
+ * @param mean       The mean latency in nanoseconds.
+ * @param stdDev     The standard deviation of the latency in nanoseconds.
+ * @param p99        The 99th percentile latency in nanoseconds.
+ * @param bytesPerOp The bytes allocated per invocation, or a negative value if not measured.
+ * @param topFrames  The hottest CPU frames by self samples, separated by {@code ;}, empty if unknown.
+ */
+record BaselineEntry(long count, double mean, double stdDev, long p99, double bytesPerOp, String topFrames) {
+
+    static final int TOP_FRAMES = 3;
+
+    static BaselineEntry of(LatencyHistogram histogram, AllocationCounter allocations, JfrSummary summary) {
+        String topFrames = summary == null ? "" : summary.selfCpu().stream()
+                .limit(TOP_FRAMES)
+                .map(TopCounter.Entry::key)
+                .collect(Collectors.joining(";"));
+        return new BaselineEntry(histogram.count(), histogram.mean(), histogram.stdDev(), histogram.percentile(99),
+                allocations == null ? -1 : allocations.bytesPerInvocation(), topFrames);
+    }
+
+    /**
+     * Parses an entry written by {@link #format()}.
+     *
+     * @throws IllegalArgumentException if the value is malformed.
+     */
+    static BaselineEntry parse(String value) {
+        String[] parts = value.split(",", 6);
+        if (parts.length < 5) {
+            throw new IllegalArgumentException("Malformed baseline entry: " + value);
+        }
+        try {
+            return new BaselineEntry(Long.parseLong(parts[0]), Double.parseDouble(parts[1]),
+                    Double.parseDouble(parts[2]), Long.parseLong(parts[3]), Double.parseDouble(parts[4]),
+                    parts.length > 5 ? parts[5] : "");
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed baseline entry: " + value, e);
+        }
+    }
+
+    String format() {
+        return String.format(Locale.ROOT, "%d,%.1f,%.1f,%d,%.1f,%s", count, mean, stdDev, p99, bytesPerOp, topFrames);
+    }
+}
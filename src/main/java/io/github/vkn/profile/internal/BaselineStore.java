@@ -0,0 +1,105 @@
+package io.github.vkn.profile.internal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * A file with one {@link BaselineEntry} per line, keyed by test and event set. Updates are
+ * serialized within the JVM by a monitor and across JVMs, e.g. concurrent Surefire forks,
+ * by a lock on a sibling {@code .lock} file. The file is rewritten via a temporary file and
+ * an atomic move, so readers never see a partially written baseline.
+ */
+class BaselineStore {
+    private static final Logger LOGGER = Logger.getLogger(BaselineStore.class.getName());
+    private static final Object JVM_LOCK = new Object();
+    private final Path file;
+
+    BaselineStore(Path file) {
+        this.file = file;
+    }
+
+    static String key(String className, String methodName, String events) {
+        return "%s.%s[%s]".formatted(className, methodName, events);
+    }
+
+    /**
+     * Atomically reads the entry for the key and replaces it with the result of the update function.
+     * If the function returns an empty optional, the stored entry is left untouched.
+     *
+     * @param key    The key of the entry.
+     * @param update Computes the new entry from the previous one.
+     * @return The previous entry, if any.
+     */
+    Optional<BaselineEntry> update(String key, Function<Optional<BaselineEntry>, Optional<BaselineEntry>> update) {
+        synchronized (JVM_LOCK) {
+            Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                Map<String, BaselineEntry> entries = read();
+                Optional<BaselineEntry> previous = Optional.ofNullable(entries.get(key));
+                Optional<BaselineEntry> next = update.apply(previous);
+                if (next.isPresent()) {
+                    entries.put(key, next.get());
+                    write(entries);
+                }
+                return previous;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    Map<String, BaselineEntry> read() throws IOException {
+        Map<String, BaselineEntry> entries = new TreeMap<>();
+        if (!Files.exists(file)) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(file)) {
+            int separator = separator(line);
+            if (line.isBlank() || line.startsWith("#") || separator < 0) {
+                continue;
+            }
+            try {
+                entries.put(line.substring(0, separator), BaselineEntry.parse(line.substring(separator + 1)));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("Skipping baseline line '%s': %s".formatted(line, e.getMessage()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return The index of the {@code =} that ends the key, or {@code -1}. A key ends with its events in brackets and
+     * may itself contain {@code =}, e.g. the input size of a sweep; the top frames of the entry may contain it, too.
+     */
+    private static int separator(String line) {
+        int events = line.indexOf("]=");
+        return events >= 0 ? events + 1 : line.indexOf('=');
+    }
+
+    private void write(Map<String, BaselineEntry> entries) throws IOException {
+        List<String> lines = new ArrayList<>(entries.size() + 1);
+        lines.add("# key=count,mean,stdDev,p99,bytesPerOp,topFrames (nanoseconds, bytes)");
+        entries.forEach((key, entry) -> lines.add(key + "=" + entry.format()));
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, lines);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.PerformanceBudget;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Compares measured values of a profiled test against its {@link PerformanceBudget}.
+ */
+final class BudgetCheck {
+    private static final Logger LOGGER = Logger.getLogger(BudgetCheck.class.getName());
+
+    private BudgetCheck() {
+    }
+
+    /**
+     * Returns a human-readable description of every exceeded limit.
+     *
+     * @param budget      The budget of the test.
+     * @param histogram   The latencies of the profiling invocations.
+     * @param allocations The allocations of the profiling invocations, may be {@code null} if not measured.
+     * @return The violations, empty if the budget is met.
+     */
+    static List<String> violations(PerformanceBudget budget, LatencyHistogram histogram, AllocationCounter allocations) {
+        List<String> violations = new ArrayList<>();
+        if (budget.maxP99() >= 0) {
+            long limit = budget.unit().toNanos(budget.maxP99());
+            long p99 = histogram.percentile(99);
+            if (p99 > limit) {
+                violations.add("p99 latency %s exceeds budget %s"
+                        .formatted(LatencyHistogram.formatNanos(p99), LatencyHistogram.formatNanos(limit)));
+            }
+        }
+        if (budget.maxMean() >= 0) {
+            long limit = budget.unit().toNanos(budget.maxMean());
+            double mean = histogram.mean();
+            if (mean > limit) {
+                violations.add("mean latency %s exceeds budget %s"
+                        .formatted(LatencyHistogram.formatNanos(mean), LatencyHistogram.formatNanos(limit)));
+            }
+        }
+        if (budget.maxAllocatedBytes() >= 0 && allocations != null) {
+            double perInvocation = allocations.bytesPerInvocation();
+            if (perInvocation > budget.maxAllocatedBytes()) {
+                violations.add("allocated %.1f bytes/invocation exceeds budget %d bytes"
+                        .formatted(perInvocation, budget.maxAllocatedBytes()));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Returns a human-readable description of every exceeded limit on the JVM activity of the profiling window.
+     * Limits on deoptimizations are skipped with a warning if they were not measured.
+     *
+     * @param budget    The budget of the test.
+     * @param telemetry The GC, JIT and safepoint activity of the profiling window.
+     * @return The violations, empty if the budget is met.
+     */
+    static List<String> violations(PerformanceBudget budget, JvmTelemetry telemetry) {
+        List<String> violations = new ArrayList<>();
+        if (budget.maxGcCount() >= 0 && telemetry.gcCount() > budget.maxGcCount()) {
+            violations.add("%d garbage collections exceed budget %d".formatted(telemetry.gcCount(), budget.maxGcCount()));
+        }
+        if (budget.maxMajorGcCount() >= 0 && telemetry.majorGcCount() > budget.maxMajorGcCount()) {
+            violations.add("%d major garbage collections exceed budget %d"
+                    .formatted(telemetry.majorGcCount(), budget.maxMajorGcCount()));
+        }
+        if (budget.maxGcPause() >= 0) {
+            long limit = budget.unit().toNanos(budget.maxGcPause());
+            if (telemetry.maxGcPauseNanos() > limit) {
+                violations.add("GC pause %s exceeds budget %s".formatted(
+                        LatencyHistogram.formatNanos(telemetry.maxGcPauseNanos()), LatencyHistogram.formatNanos(limit)));
+            }
+        }
+        if (budget.maxDeoptimizations() >= 0) {
+            if (telemetry.deoptimizations() < 0) {
+                LOGGER.warning("Deoptimizations are only measured with a JFR recording, the budget is not checked");
+            } else if (telemetry.deoptimizations() > budget.maxDeoptimizations()) {
+                violations.add("%d deoptimizations exceed budget %d"
+                        .formatted(telemetry.deoptimizations(), budget.maxDeoptimizations()));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Returns a human-readable description of every exceeded limit on the lock contention of the profiling window.
+     * The limits are skipped with a warning if the contention was not measured.
+     *
+     * @param budget    The budget of the test.
+     * @param summary   The summary of the JFR recording, {@code null} if there is none.
+     * @param histogram The latencies of the profiled operations.
+     * @return The violations, empty if the budget is met.
+     */
+    static List<String> violations(PerformanceBudget budget, JfrSummary summary, LatencyHistogram histogram) {
+        if (!hasLockLimits(budget)) {
+            return List.of();
+        }
+        if (summary == null) {
+            LOGGER.warning("Lock contention is only measured with a JFR recording, the budget is not checked");
+            return List.of();
+        }
+        List<String> violations = new ArrayList<>();
+        if (budget.maxBlocked() >= 0) {
+            long limit = budget.unit().toNanos(budget.maxBlocked());
+            if (summary.maxBlockedNanos() > limit) {
+                violations.add("blocked on %s for %s exceeds budget %s".formatted(summary.maxBlockedMonitor(),
+                        LatencyHistogram.formatNanos(summary.maxBlockedNanos()), LatencyHistogram.formatNanos(limit)));
+            }
+        }
+        if (budget.maxContendedRatio() >= 0) {
+            double ratio = summary.contendedRatio(histogram);
+            if (ratio > budget.maxContendedRatio()) {
+                violations.add("contended time %.2f%% of operation time exceeds budget %.2f%%"
+                        .formatted(ratio * 100, budget.maxContendedRatio() * 100));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * @return {@code true} if the budget limits the lock contention, which is read from the JFR recording.
+     */
+    static boolean hasLockLimits(PerformanceBudget budget) {
+        return budget != null && (budget.maxBlocked() >= 0 || budget.maxContendedRatio() >= 0);
+    }
+
+    /**
+     * Returns a description of the exceeded complexity limit of a size sweep.
+     *
+     * @param budget The budget of the test.
+     * @param fit    The complexity fitted to the sweep.
+     * @return The violation, empty if the complexity is within the budget.
+     */
+    static List<String> violations(PerformanceBudget budget, ComplexityFit fit) {
+        if (fit.complexity().compareTo(budget.maxComplexity()) <= 0) {
+            return List.of();
+        }
+        return List.of("scaling %s exceeds budget %s"
+                .formatted(fit.complexity().notation(), budget.maxComplexity().notation()));
+    }
+}
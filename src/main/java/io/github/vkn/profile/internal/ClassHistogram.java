@@ -0,0 +1,98 @@
+package io.github.vkn.profile.internal;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The live instances and bytes per class, as printed by the {@code GC.class_histogram} diagnostic command. Taking
+ * the histogram forces a full GC and walks the heap.
+ */
+final class ClassHistogram {
+    private static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+
+    /**
+     * The instances and bytes of each class.
+     */
+    private final Map<String, long[]> classes;
+
+    ClassHistogram(Map<String, long[]> classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * Takes the histogram of the live objects of this JVM.
+     *
+     * @throws IllegalStateException if the diagnostic command is not available.
+     */
+    static ClassHistogram take() {
+        try {
+            Object output = ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName(DIAGNOSTIC_COMMAND),
+                    "gcClassHistogram", new Object[]{new String[0]}, new String[]{String[].class.getName()});
+            return parse(String.valueOf(output));
+        } catch (JMException | RuntimeException e) {
+            throw new IllegalStateException("Cannot take a class histogram", e);
+        }
+    }
+
+    /**
+     * Parses the lines {@code num: #instances #bytes class-name [(module)]} of a histogram; other lines are ignored.
+     */
+    static ClassHistogram parse(String histogram) {
+        Map<String, long[]> classes = new HashMap<>();
+        for (String line : histogram.split("\n")) {
+            String[] columns = line.trim().split("\\s+");
+            if (columns.length < 4 || !columns[0].endsWith(":")) {
+                continue;
+            }
+            try {
+                classes.put(columns[3], new long[]{Long.parseLong(columns[1]), Long.parseLong(columns[2])});
+            } catch (NumberFormatException e) {
+                // not a class line
+            }
+        }
+        return new ClassHistogram(classes);
+    }
+
+    int size() {
+        return classes.size();
+    }
+
+    /**
+     * @return The instances of the class, {@code 0} if it has none.
+     */
+    long instances(String className) {
+        long[] counts = classes.get(className);
+        return counts == null ? 0 : counts[0];
+    }
+
+    /**
+     * Lists the classes whose instance count grew most since the earlier histogram, e.g.
+     * {@code +1000 instances +24000B java.util.HashMap$Node}.
+     *
+     * @param earlier The earlier histogram.
+     * @param top     The maximum number of classes.
+     * @return The growing classes, largest growth first.
+     */
+    List<String> growth(ClassHistogram earlier, int top) {
+        List<Map.Entry<String, long[]>> grown = new ArrayList<>();
+        classes.forEach((name, counts) -> {
+            long[] before = earlier.classes.getOrDefault(name, new long[2]);
+            if (counts[0] > before[0]) {
+                grown.add(Map.entry(name, new long[]{counts[0] - before[0], counts[1] - before[1]}));
+            }
+        });
+        grown.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed()
+                .thenComparing(Map.Entry::getKey));
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : grown.subList(0, Math.min(top, grown.size()))) {
+            lines.add("%+d instances %+dB %s".formatted(entry.getValue()[0], entry.getValue()[1], entry.getKey()));
+        }
+        return lines;
+    }
+}
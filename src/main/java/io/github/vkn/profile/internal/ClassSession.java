@@ -0,0 +1,86 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * The single recording of all profiled tests of a class, see {@link io.github.vkn.profile.SessionScope#CLASS}.
+ * It is started by the first invocation of a profiled test and stopped when the class store is closed, after
+ * the last test of the class. Every invocation in between is marked by an {@link InvocationEvent}.
+ */
+class ClassSession implements ExtensionContext.Store.CloseableResource {
+    private static final Logger LOGGER = Logger.getLogger(ClassSession.class.getName());
+    private final ExclusiveProfiler profiler;
+    private InvocationEvent marker;
+
+    ClassSession(ExclusiveProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Starts the recording, unless it is already running.
+     */
+    void start() {
+        profiler.start();
+    }
+
+    /**
+     * @return The recording of the class.
+     */
+    Optional<Path> output() {
+        return profiler.output();
+    }
+
+    /**
+     * Begins the marker of an invocation; the marker of a previous invocation that was not ended is discarded.
+     *
+     * @param test       The test class and method, and the input size of a sweep.
+     * @param phase      The phase of the invocation.
+     * @param invocation The index of the invocation within the phase, starting at 1.
+     */
+    synchronized void begin(String test, String phase, int invocation) {
+        marker = new InvocationEvent(test, phase, invocation);
+        marker.begin();
+    }
+
+    /**
+     * Commits the marker of the current invocation.
+     */
+    synchronized void end() {
+        if (marker != null) {
+            marker.commit();
+            marker = null;
+        }
+    }
+
+    /**
+     * @return The profiler of one test: it starts the recording of the class, but leaves it running when the test
+     * stops it, and has no recording of its own to post-process.
+     */
+    Profiler view() {
+        return new Profiler() {
+            @Override
+            public void start() {
+                ClassSession.this.start();
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public Optional<Path> output() {
+                return ClassSession.this.output();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        profiler.close();
+        output().ifPresent(output -> LOGGER.info("Class recording: %s".formatted(output)));
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.vkn.profile.internal;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The durations of the interleaved rounds of a {@link io.github.vkn.profile.ProfiledComparison}. Every round
+ * invokes the baseline and the candidate once; the arrays are preallocated for all rounds, so recording does
+ * not allocate.
+ */
+final class Comparison {
+
+    private final long[] baseline;
+    private final long[] candidate;
+    private final LatencyHistogram baselineHistogram = new LatencyHistogram();
+    private final LatencyHistogram candidateHistogram = new LatencyHistogram();
+    private int rounds;
+
+    /**
+     * @param rounds The number of measured rounds.
+     */
+    Comparison(int rounds) {
+        baseline = new long[rounds];
+        candidate = new long[rounds];
+    }
+
+    /**
+     * Records the durations of one round.
+     */
+    void record(long baselineNanos, long candidateNanos) {
+        baseline[rounds] = baselineNanos;
+        candidate[rounds] = candidateNanos;
+        rounds++;
+        baselineHistogram.record(baselineNanos);
+        candidateHistogram.record(candidateNanos);
+    }
+
+    int rounds() {
+        return rounds;
+    }
+
+    LatencyHistogram baseline() {
+        return baselineHistogram;
+    }
+
+    LatencyHistogram candidate() {
+        return candidateHistogram;
+    }
+
+    /**
+     * @return The geometric mean of the baseline time divided by the candidate time of every round,
+     * above {@code 1} if the candidate is faster.
+     */
+    double speedup() {
+        return Math.exp(meanLogRatio());
+    }
+
+    /**
+     * @param alpha The significance level.
+     * @return The confidence interval of the {@link #speedup()}, from Student's t-distribution of the
+     * logarithms of the ratios of the rounds: {@code [lower, upper]}.
+     */
+    double[] confidenceInterval(double alpha) {
+        double mean = meanLogRatio();
+        if (rounds < 2) {
+            return new double[]{0, Double.POSITIVE_INFINITY};
+        }
+        double sumOfSquares = 0;
+        for (int i = 0; i < rounds; i++) {
+            double deviation = logRatio(i) - mean;
+            sumOfSquares += deviation * deviation;
+        }
+        double error = Statistics.studentTQuantile(1 - alpha / 2, rounds - 1)
+                * Math.sqrt(sumOfSquares / (rounds - 1) / rounds);
+        return new double[]{Math.exp(mean - error), Math.exp(mean + error)};
+    }
+
+    /**
+     * @return The p-value of the one-sided Mann-Whitney U test for candidate times smaller than baseline times.
+     */
+    double pValue() {
+        return Statistics.mannWhitneyLessPValue(Arrays.copyOf(baseline, rounds),
+                Arrays.copyOf(candidate, rounds));
+    }
+
+    private double meanLogRatio() {
+        double sum = 0;
+        for (int i = 0; i < rounds; i++) {
+            sum += logRatio(i);
+        }
+        return rounds == 0 ? 0 : sum / rounds;
+    }
+
+    private double logRatio(int round) {
+        return Math.log(Math.max(1, baseline[round])) - Math.log(Math.max(1, candidate[round]));
+    }
+
+    String format(String baselineName, String candidateName, double alpha) {
+        double[] interval = confidenceInterval(alpha);
+        return """
+                %s: %s
+                %s: %s
+                speedup=%.3fx [%.3fx, %.3fx] (%.0f%% confidence) p=%.4f rounds=%d"""
+                .formatted(baselineName, baselineHistogram.format(), candidateName, candidateHistogram.format(),
+                        speedup(), interval[0], interval[1], (1 - alpha) * 100, pValue(), rounds);
+    }
+
+    Map<String, String> reportEntries(double alpha) {
+        double[] interval = confidenceInterval(alpha);
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("comparison.rounds", String.valueOf(rounds));
+        entries.put("comparison.speedup", "%.4f".formatted(speedup()));
+        entries.put("comparison.speedupLower", "%.4f".formatted(interval[0]));
+        entries.put("comparison.speedupUpper", "%.4f".formatted(interval[1]));
+        entries.put("comparison.pValue", "%.6f".formatted(pValue()));
+        entries.put("comparison.baseline.mean", String.valueOf(Math.round(baselineHistogram.mean())));
+        entries.put("comparison.candidate.mean", String.valueOf(Math.round(candidateHistogram.mean())));
+        return entries;
+    }
+}
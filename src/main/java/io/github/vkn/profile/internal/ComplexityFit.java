@@ -0,0 +1,77 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.Complexity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The result of fitting every {@link Complexity} to the mean latencies of a size sweep.
+ * Each curve {@code t(n) = c * f(n)} is fitted by least squares, and the curve with the lowest
+ * root mean square error, relative to the mean latency, is chosen.
+ *
+ * @param complexity  The best fitting complexity.
+ * @param coefficient The coefficient {@code c} of the best fit, in nanoseconds.
+ * @param rms         The relative root mean square error of the best fit.
+ */
+record ComplexityFit(Complexity complexity, double coefficient, double rms) {
+
+    /**
+     * @param sizes     The input sizes, at least two.
+     * @param meanNanos The mean latency per size in nanoseconds.
+     * @return The best fit.
+     */
+    static ComplexityFit of(long[] sizes, double[] meanNanos) {
+        if (sizes.length < 2 || sizes.length != meanNanos.length) {
+            throw new IllegalArgumentException("At least two sizes with a latency each are required");
+        }
+        double meanOfMeans = 0;
+        for (double t : meanNanos) {
+            meanOfMeans += t / meanNanos.length;
+        }
+        ComplexityFit best = null;
+        for (Complexity complexity : Complexity.values()) {
+            double sumTf = 0;
+            double sumFf = 0;
+            for (int i = 0; i < sizes.length; i++) {
+                double f = curve(complexity, sizes[i]);
+                sumTf += meanNanos[i] * f;
+                sumFf += f * f;
+            }
+            double coefficient = sumFf == 0 ? 0 : sumTf / sumFf;
+            double squaredError = 0;
+            for (int i = 0; i < sizes.length; i++) {
+                double error = meanNanos[i] - coefficient * curve(complexity, sizes[i]);
+                squaredError += error * error;
+            }
+            double rms = Math.sqrt(squaredError / sizes.length) / Math.max(meanOfMeans, Double.MIN_VALUE);
+            if (best == null || rms < best.rms()) {
+                best = new ComplexityFit(complexity, coefficient, rms);
+            }
+        }
+        return best;
+    }
+
+    static double curve(Complexity complexity, long n) {
+        return switch (complexity) {
+            case CONSTANT -> 1;
+            case LOGARITHMIC -> Math.log(n);
+            case LINEAR -> n;
+            case LINEARITHMIC -> n * Math.log(n);
+            case QUADRATIC -> (double) n * n;
+        };
+    }
+
+    String format() {
+        return "%s (coefficient=%s, rms=%.1f%%)".formatted(complexity.notation(),
+                LatencyHistogram.formatNanos(coefficient), rms * 100);
+    }
+
+    Map<String, String> reportEntries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("scaling.complexity", complexity.notation());
+        entries.put("scaling.coefficientNanos", "%.3f".formatted(coefficient));
+        entries.put("scaling.rms", "%.4f".formatted(rms));
+        return entries;
+    }
+}
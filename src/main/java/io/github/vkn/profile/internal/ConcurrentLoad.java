@@ -0,0 +1,273 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor.Invocation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Runs the test method concurrently from several threads during the profiling phase. The JUnit
+ * thread is the first of the threads, the others are pooled for the whole template and wait for
+ * the next round between the rounds. All threads wait on a shared {@link RoundBarrier}, so their
+ * calls overlap as much as possible. Every thread records into its own histogram and throughput,
+ * which are merged into the ones of the template before reporting. The pooled platform threads
+ * register themselves with the {@link ThreadFilter}; virtual threads cannot be registered.
+ */
+final class ConcurrentLoad implements ExtensionContext.Store.CloseableResource {
+    private static final Logger LOGGER = Logger.getLogger(ConcurrentLoad.class.getName());
+
+    private final int threads;
+    private final boolean virtual;
+    private final ExecutorService executor;
+    private final RoundBarrier barrier;
+    private final RoundBarrier done;
+    private final LatencyHistogram histogram;
+    private final Throughput throughput;
+    private final LatencyHistogram[] histograms;
+    private final Throughput[] throughputs;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+    private volatile MethodInvoker invoker;
+    private boolean started;
+    private long rounds;
+    private long wallNanos;
+    private boolean merged;
+
+    /**
+     * @param threads    The number of concurrent threads, including the JUnit thread.
+     * @param virtual    Whether the additional threads are virtual threads, if the JVM supports them.
+     * @param histogram  The histogram of the template.
+     * @param throughput The throughput of the template, or {@code null} in the count-based mode.
+     */
+    ConcurrentLoad(int threads, boolean virtual, LatencyHistogram histogram, Throughput throughput) {
+        this.threads = threads;
+        this.histogram = histogram;
+        this.throughput = throughput;
+        this.histograms = new LatencyHistogram[threads];
+        this.throughputs = throughput == null ? null : new Throughput[threads];
+        this.barrier = new RoundBarrier(threads);
+        this.done = new RoundBarrier(threads);
+        for (int i = 0; i < threads; i++) {
+            histograms[i] = new LatencyHistogram();
+            if (throughputs != null) {
+                throughputs[i] = new Throughput(throughput.durationNanos());
+            }
+        }
+        ExecutorService virtualExecutor = virtual ? newVirtualThreadExecutor() : null;
+        this.virtual = virtualExecutor != null;
+        this.executor = virtualExecutor != null ? virtualExecutor : Executors.newFixedThreadPool(threads - 1, daemonThreads());
+    }
+
+    /**
+     * Runs one round: every thread calls the test method once, or repeatedly until the end of the
+     * measurement window in the throughput mode. The pooled threads are started by the first round
+     * and wait on the barrier for the next one, so that a round does not allocate. The first failure
+     * of any thread is rethrown once all threads finished the round.
+     *
+     * @param first       The invocation of the JUnit thread for its first operation.
+     * @param invoker     The direct invoker for all other operations.
+     * @param allocations The allocation counter of the JUnit thread, may be {@code null}.
+     */
+    void run(Invocation<?> first, MethodInvoker invoker, AllocationCounter allocations) throws Throwable {
+        this.invoker = invoker;
+        if (!started) {
+            started = true;
+            barrier.reset();
+            done.reset();
+            for (int i = 1; i < threads; i++) {
+                int index = i;
+                executor.execute(() -> repeat(index));
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            barrier.await(0);
+            start = System.nanoTime();
+            work(0, first, invoker, allocations);
+        } catch (InterruptedException | BrokenBarrierException e) {
+            // the pooled threads leave, the next round starts new ones
+            started = false;
+            done.breakBarrier();
+            throw e;
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+        try {
+            done.await(0);
+        } catch (InterruptedException | BrokenBarrierException e) {
+            started = false;
+            barrier.breakBarrier();
+            failure.compareAndSet(null, e);
+        }
+        Throwable t = failure.getAndSet(null);
+        if (t != null) {
+            throw t;
+        }
+        wallNanos += System.nanoTime() - start;
+        rounds++;
+    }
+
+    private void repeat(int index) {
+        threadNames.put(Thread.currentThread().getId(), Thread.currentThread().getName());
+        while (true) {
+            try {
+                barrier.await(index);
+            } catch (InterruptedException | BrokenBarrierException e) {
+                return;
+            }
+            try {
+                work(index, null, invoker, null);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+            try {
+                done.await(index);
+            } catch (InterruptedException | BrokenBarrierException e) {
+                return;
+            }
+        }
+    }
+
+    private void work(int index, Invocation<?> first, MethodInvoker invoker, AllocationCounter allocations)
+            throws Throwable {
+        LatencyHistogram histogram = histograms[index];
+        Throughput throughput = throughputs == null ? null : throughputs[index];
+        long windowStart = System.nanoTime();
+        long end = throughput == null ? windowStart : windowStart + throughput.durationNanos();
+        boolean isFirst = true;
+        long now = windowStart;
+        while (isFirst || now < end) {
+            if (allocations != null) {
+                allocations.begin();
+            }
+            long start = System.nanoTime();
+            if (isFirst && first != null) {
+                first.proceed();
+            } else {
+                invoker.invoke();
+            }
+            now = System.nanoTime();
+            histogram.record(now - start);
+            if (allocations != null) {
+                // only the first call of the JUnit thread proceeds through the invocation chain
+                if (isFirst) {
+                    allocations.endProceed();
+                } else {
+                    allocations.end();
+                }
+            }
+            isFirst = false;
+            if (throughput != null) {
+                throughput.record(now - windowStart);
+            }
+        }
+        if (throughput != null) {
+            throughput.end(now - windowStart);
+        }
+    }
+
+    /**
+     * @return The ids and names of the threads that ran operations, other than the JUnit thread.
+     */
+    Map<Long, String> threads() {
+        return threadNames;
+    }
+
+    /**
+     * Merges the histograms and throughputs of all threads into the ones of the template.
+     * Called once, before the results are reported.
+     */
+    void merge() {
+        if (merged) {
+            return;
+        }
+        merged = true;
+        for (int i = 0; i < threads; i++) {
+            histogram.add(histograms[i]);
+            if (throughput != null) {
+                throughput.add(throughputs[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The per-thread latencies and, in the count-based mode, the aggregate throughput over
+     * the wall time of all rounds.
+     */
+    Map<String, String> reportEntries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("load.threads", String.valueOf(threads));
+        entries.put("load.virtual", String.valueOf(virtual));
+        if (throughputs == null) {
+            entries.put("load.opsPerSecond", "%.1f".formatted(aggregateOpsPerSecond()));
+        }
+        for (int i = 0; i < threads; i++) {
+            entries.put("load.thread.%d.mean".formatted(i), String.valueOf(Math.round(histograms[i].mean())));
+            entries.put("load.thread.%d.p99".formatted(i), String.valueOf(histograms[i].percentile(99)));
+        }
+        return entries;
+    }
+
+    String format() {
+        StringBuilder sb = new StringBuilder("threads=%d%s".formatted(threads, virtual ? " (virtual)" : ""));
+        if (throughputs == null) {
+            sb.append(" aggregate=%.1f ops/s".formatted(aggregateOpsPerSecond()));
+        }
+        for (int i = 0; i < threads; i++) {
+            sb.append(System.lineSeparator()).append("  thread ").append(i).append(": ").append(histograms[i].format());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The operations of all threads per second of wall time in the count-based mode,
+     * where every round is one operation per thread.
+     */
+    double aggregateOpsPerSecond() {
+        return wallNanos == 0 ? 0 : rounds * threads * 1e9 / wallNanos;
+    }
+
+    LatencyHistogram histogram(int thread) {
+        return histograms[thread];
+    }
+
+    boolean isClosed() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warning("Virtual threads are not supported by this JVM, using platform threads");
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                // sampled if the profiler filters threads
+                ThreadFilter.add(Thread.currentThread());
+                runnable.run();
+            }, "profiling-load-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.Backend;
+import io.github.vkn.profile.ProfilingUnit;
+import io.github.vkn.profile.SessionScope;
+import io.github.vkn.profile.Type;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Reads the run-wide overrides of the profiling parameters from the JUnit configuration parameters,
+ * see {@link ProfilingUnit}.
+ */
+final class Configuration {
+
+    /**
+     * The prefix of all configuration parameters, which are passed on to forked JVMs as system properties.
+     */
+    static final String PREFIX = "io.github.vkn.profile.";
+
+    private static final String PARALLEL_PROPERTY = "junit.jupiter.execution.parallel.enabled";
+
+    private Configuration() {
+    }
+
+    static boolean isEnabled(ExtensionContext context) {
+        return context.getConfigurationParameter(ProfilingUnit.ENABLED_PROPERTY)
+                .map(value -> !"false".equalsIgnoreCase(value.trim()))
+                .orElse(true);
+    }
+
+    static boolean isBaselineUpdate(ExtensionContext context) {
+        return context.getConfigurationParameter(ProfilingUnit.UPDATE_BASELINE_PROPERTY)
+                .map(value -> "true".equalsIgnoreCase(value.trim()))
+                .orElse(false);
+    }
+
+    static Optional<String> event(ExtensionContext context) {
+        return context.getConfigurationParameter(ProfilingUnit.EVENT_PROPERTY)
+                .map(String::trim)
+                .filter(value -> !value.isEmpty());
+    }
+
+    static Optional<Type> type(ExtensionContext context) {
+        return constant(context, ProfilingUnit.TYPE_PROPERTY, Type.class);
+    }
+
+    static Optional<Backend> backend(ExtensionContext context) {
+        return constant(context, ProfilingUnit.BACKEND_PROPERTY, Backend.class);
+    }
+
+    /**
+     * @return {@code true} if JUnit may run tests in parallel.
+     */
+    static boolean isParallel(ExtensionContext context) {
+        return context.getConfigurationParameter(PARALLEL_PROPERTY)
+                .map(value -> "true".equalsIgnoreCase(value.trim()))
+                .orElse(false);
+    }
+
+    static Optional<SessionScope> session(ExtensionContext context) {
+        return constant(context, ProfilingUnit.SESSION_PROPERTY, SessionScope.class);
+    }
+
+    static Optional<Integer> repeat(ExtensionContext context) {
+        return count(context, ProfilingUnit.REPEAT_PROPERTY, 1);
+    }
+
+    static Optional<Integer> warmUp(ExtensionContext context) {
+        return count(context, ProfilingUnit.WARMUP_PROPERTY, 0);
+    }
+
+    static Optional<Path> dir(ExtensionContext context) {
+        return context.getConfigurationParameter(ProfilingUnit.DIR_PROPERTY)
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(Path::of);
+    }
+
+    private static <E extends Enum<E>> Optional<E> constant(ExtensionContext context, String key, Class<E> type) {
+        return context.getConfigurationParameter(key).map(value -> {
+            try {
+                return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ExtensionConfigurationException("Invalid %s: %s".formatted(key, value), e);
+            }
+        });
+    }
+
+    private static Optional<Integer> count(ExtensionContext context, String key, int min) {
+        return context.getConfigurationParameter(key).map(value -> {
+            try {
+                int count = Integer.parseInt(value.trim());
+                if (count >= min) {
+                    return count;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new ExtensionConfigurationException("Invalid %s: %s, must be at least %d".formatted(key, value, min));
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The report entries computed by the {@link PostProcessor}, such as the hot methods of a JFR summary. They are
+ * published by the top-level test class once all its tests have finished, so that the tests do not wait for them.
+ */
+final class DeferredReportEntries {
+
+    private final Queue<Future<Map<String, String>>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param entries The entries being computed; {@code null} or empty entries are not published.
+     */
+    void add(Future<Map<String, String>> entries) {
+        pending.add(entries);
+    }
+
+    /**
+     * Waits for the entries in the order they were added and publishes them.
+     *
+     * @param context The context of the test class.
+     */
+    void publish(ExtensionContext context) throws InterruptedException {
+        Future<Map<String, String>> next;
+        while ((next = pending.poll()) != null) {
+            try {
+                Map<String, String> entries = next.get();
+                if (entries != null && !entries.isEmpty()) {
+                    context.publishReportEntry(entries);
+                }
+            } catch (ExecutionException e) {
+                // logged by the post-processor
+            }
+        }
+    }
+}
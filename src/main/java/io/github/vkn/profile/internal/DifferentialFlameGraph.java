@@ -0,0 +1,293 @@
+package io.github.vkn.profile.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A differential flame graph of two profiles in the collapsed stack format ({@code frame;frame;frame weight},
+ * root first). The frames are as wide as in the current profile and colored by the change of their share of
+ * all samples: red if it grew, blue if it shrank, the more saturated the larger the change.
+ * <p>
+ * The profiles are streamed line by line into a tree of frames that holds the weights of both profiles, so
+ * the memory footprint depends on the number of distinct frames, not on the size of the files. The tree is
+ * bounded: stacks deeper than {@link #MAX_DEPTH} frames and frames beyond {@link #MAX_FRAMES} are counted at
+ * their deepest existing parent.
+ */
+final class DifferentialFlameGraph {
+    static final String EXTENSION = ".collapsed";
+    static final int MAX_DEPTH = 2048;
+    static final int MAX_FRAMES = 500_000;
+    private static final int WIDTH = 1200;
+    private static final int FRAME_HEIGHT = 16;
+    private static final double MIN_FRAME_WIDTH = 0.5;
+
+    private final Frame root = new Frame("all");
+    private final Map<String, String> names = new HashMap<>();
+    private final int maxFrames;
+    private int frames;
+    private long truncated;
+
+    DifferentialFlameGraph() {
+        this(MAX_FRAMES);
+    }
+
+    DifferentialFlameGraph(int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Creates the differential flame graph of two collapsed stack files.
+     *
+     * @param previous The profile to compare against.
+     * @param current  The current profile.
+     * @return The flame graph.
+     */
+    static DifferentialFlameGraph of(Path previous, Path current) {
+        DifferentialFlameGraph graph = new DifferentialFlameGraph();
+        graph.add(previous, false);
+        graph.add(current, true);
+        return graph;
+    }
+
+    /**
+     * @return Whether the file is in the collapsed stack format, judged by its extension.
+     */
+    static boolean isCollapsed(Path file) {
+        return file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * @return The file that keeps the collapsed stacks of the previous run, e.g. {@code test_cpu_previous.collapsed}.
+     */
+    static Path previous(Path collapsed) {
+        String name = collapsed.getFileName().toString();
+        return collapsed.resolveSibling(name.substring(0, name.length() - EXTENSION.length()) + "_previous" + EXTENSION);
+    }
+
+    void add(Path collapsed, boolean current) {
+        try (BufferedReader reader = Files.newBufferedReader(collapsed)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                add(line, current);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds one line of a collapsed stack file. Lines without a weight are ignored.
+     */
+    void add(String line, boolean current) {
+        int space = line.lastIndexOf(' ');
+        if (space <= 0) {
+            return;
+        }
+        long weight;
+        try {
+            weight = Long.parseLong(line.substring(space + 1).trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        Frame frame = root;
+        frame.add(weight, current);
+        int depth = 0;
+        for (int start = 0; start < space; depth++) {
+            int end = line.indexOf(';', start);
+            if (end < 0 || end > space) {
+                end = space;
+            }
+            Frame child = depth < MAX_DEPTH ? child(frame, line.substring(start, end)) : null;
+            if (child == null) {
+                truncated += weight;
+                break;
+            }
+            child.add(weight, current);
+            frame = child;
+            start = end + 1;
+        }
+    }
+
+    private Frame child(Frame parent, String name) {
+        Frame child = parent.children == null ? null : parent.children.get(name);
+        if (child != null) {
+            return child;
+        }
+        if (frames >= maxFrames) {
+            return null;
+        }
+        if (parent.children == null) {
+            parent.children = new HashMap<>();
+        }
+        String interned = names.computeIfAbsent(name, key -> key);
+        child = new Frame(interned);
+        parent.children.put(interned, child);
+        frames++;
+        return child;
+    }
+
+    int frames() {
+        return frames;
+    }
+
+    /**
+     * @return The weight of the stacks that were cut off by the bounds of the tree.
+     */
+    long truncated() {
+        return truncated;
+    }
+
+    /**
+     * @return The weights of the frame at the path of frame names from the root, previous and current,
+     * or {@code null} if the frame does not exist.
+     */
+    long[] weights(String... path) {
+        Frame frame = root;
+        for (String name : path) {
+            frame = frame.children == null ? null : frame.children.get(name);
+            if (frame == null) {
+                return null;
+            }
+        }
+        return new long[]{frame.previous, frame.current};
+    }
+
+    /**
+     * Writes the flame graph as an HTML page with an embedded SVG.
+     */
+    void write(Path file, String title) {
+        try {
+            Files.writeString(file, html(title));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    String html(String title) {
+        double maxDelta = Math.max(maxDelta(root), 1e-9);
+        int height = (depth(root, 0, WIDTH) + 1) * FRAME_HEIGHT;
+        StringBuilder sb = new StringBuilder("""
+                <!DOCTYPE html>
+                <html>
+                <head>
+                <meta charset="utf-8">
+                <title>%s</title>
+                <style>
+                body { font-family: sans-serif; }
+                text { font-size: 11px; font-family: monospace; pointer-events: none; }
+                </style>
+                </head>
+                <body>
+                <h1>%s</h1>
+                <p>Width: current samples. Color: change of the share of all samples, red grew, blue shrank.</p>
+                """.formatted(escape(title), escape(title)));
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\">\n".formatted(WIDTH, height));
+        layout(root, height - FRAME_HEIGHT, 0, WIDTH, maxDelta, sb);
+        return sb.append("</svg>\n</body>\n</html>\n").toString();
+    }
+
+    /**
+     * @return The deepest level of the frames that are wide enough to be drawn.
+     */
+    private static int depth(Frame frame, int level, double width) {
+        int depth = level;
+        if (frame.children != null && frame.current > 0) {
+            for (Frame child : frame.children.values()) {
+                double childWidth = width * child.current / frame.current;
+                if (childWidth >= MIN_FRAME_WIDTH) {
+                    depth = Math.max(depth, depth(child, level + 1, childWidth));
+                }
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Draws the frame at the vertical position and its children above it, the root is at the bottom.
+     */
+    private void layout(Frame frame, int y, double x, double width, double maxDelta, StringBuilder sb) {
+        rect(frame, y, x, width, delta(frame) / maxDelta, sb);
+        if (frame.children == null || frame.current == 0) {
+            return;
+        }
+        List<Frame> children = new ArrayList<>(frame.children.values());
+        children.sort(Comparator.comparing(child -> child.name));
+        double childX = x;
+        for (Frame child : children) {
+            double childWidth = width * child.current / frame.current;
+            if (childWidth >= MIN_FRAME_WIDTH) {
+                layout(child, y - FRAME_HEIGHT, childX, childWidth, maxDelta, sb);
+            }
+            childX += childWidth;
+        }
+    }
+
+    private void rect(Frame frame, int y, double x, double width, double intensity, StringBuilder sb) {
+        int fade = (int) Math.round(255 * (1 - Math.min(1, Math.abs(intensity))));
+        String color = intensity >= 0 ? "rgb(255,%d,%d)".formatted(fade, fade) : "rgb(%d,%d,255)".formatted(fade, fade);
+        String tooltip = "%s (%d samples, previously %d, %+.2f%%)".formatted(frame.name, frame.current, frame.previous,
+                delta(frame) * 100);
+        sb.append("<g><title>").append(escape(tooltip)).append("</title>")
+                .append(String.format(Locale.ROOT,
+                        "<rect x=\"%.1f\" y=\"%d\" width=\"%.1f\" height=\"%d\" fill=\"%s\" stroke=\"white\"/>",
+                        x, y, width, FRAME_HEIGHT, color));
+        // about 7 pixels per character
+        int chars = (int) (width / 7);
+        if (chars >= 3) {
+            String label = frame.name.length() <= chars ? frame.name : frame.name.substring(0, chars - 2) + "..";
+            sb.append(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\" dy=\"12\">", x + 2, y))
+                    .append(escape(label)).append("</text>");
+        }
+        sb.append("</g>\n");
+    }
+
+    /**
+     * @return The change of the share of all samples of the frame, from the previous to the current profile.
+     */
+    private double delta(Frame frame) {
+        double previous = root.previous == 0 ? 0 : (double) frame.previous / root.previous;
+        double current = root.current == 0 ? 0 : (double) frame.current / root.current;
+        return current - previous;
+    }
+
+    private double maxDelta(Frame frame) {
+        double max = frame == root ? 0 : Math.abs(delta(frame));
+        if (frame.children != null) {
+            for (Frame child : frame.children.values()) {
+                max = Math.max(max, maxDelta(child));
+            }
+        }
+        return max;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static final class Frame {
+        private final String name;
+        private long previous;
+        private long current;
+        private Map<String, Frame> children;
+
+        private Frame(String name) {
+            this.name = name;
+        }
+
+        private void add(long weight, boolean isCurrent) {
+            if (isCurrent) {
+                current += weight;
+            } else {
+                previous += weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coordinates profiling sessions across concurrently running tests. The async-profiler is a
+ * process-wide singleton, so only one session may be active at a time: {@link #start()} blocks
+ * until the session of any other test has been stopped. Profiled templates are already serialized
+ * by the {@link io.github.vkn.profile.ProfiledTest#PROFILER_LOCK} resource lock under JUnit parallel
+ * execution; this class guarantees it regardless of the JUnit configuration.
+ * <p>
+ * The profiler is registered in the template's store, so it is closed, stopped and the session
+ * released even if the last profiling invocation never runs.
+ */
+class ExclusiveProfiler implements Profiler, ExtensionContext.Store.CloseableResource {
+    private static final Logger LOGGER = Logger.getLogger(ExclusiveProfiler.class.getName());
+    private static final Semaphore SESSION = new Semaphore(1, true);
+    private final Profiler delegate;
+    private boolean isStarted;
+
+    ExclusiveProfiler(Profiler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (isStarted) {
+            return;
+        }
+        if (!SESSION.tryAcquire()) {
+            LOGGER.log(Level.INFO, "Waiting for another profiling session to finish");
+            SESSION.acquireUninterruptibly();
+        }
+        try {
+            delegate.start();
+            isStarted = true;
+        } catch (RuntimeException | Error e) {
+            SESSION.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!isStarted) {
+            return;
+        }
+        try {
+            delegate.stop();
+        } finally {
+            isStarted = false;
+            SESSION.release();
+        }
+    }
+
+    @Override
+    public Optional<Path> recording() {
+        return delegate.recording();
+    }
+
+    @Override
+    public Optional<Path> output() {
+        return delegate.output();
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
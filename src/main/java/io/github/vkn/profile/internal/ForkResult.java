@@ -0,0 +1,62 @@
+package io.github.vkn.profile.internal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The results a forked JVM hands back to the test JVM: the latency histogram, the JVM telemetry and,
+ * if measured, the allocations of the profiling invocations.
+ *
+ * @param histogram           The latencies of the profiling invocations.
+ * @param allocatedBytes      The total bytes allocated, or a negative value if not measured.
+ * @param allocationCount     The number of invocations whose allocations were measured.
+ * @param maxAllocatedBytes   The bytes allocated by the largest invocation.
+ * @param telemetry           The GC, JIT and safepoint activity of the profiling window.
+ */
+record ForkResult(LatencyHistogram histogram, long allocatedBytes, long allocationCount, long maxAllocatedBytes,
+                  JvmTelemetry telemetry) {
+
+    static void write(Path file, LatencyHistogram histogram, AllocationCounter allocations,
+                      JvmTelemetry telemetry) throws IOException {
+        String allocationLine = allocations == null
+                ? "-1 0 0"
+                : "%d %d %d".formatted(allocations.total(), allocations.count(), allocations.max());
+        Files.write(file, List.of(histogram.encode(), allocationLine, telemetry.encode()));
+    }
+
+    /**
+     * Reads a result written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    static ForkResult read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        if (lines.size() < 3) {
+            throw new IOException("Malformed fork result " + file);
+        }
+        try {
+            String[] allocations = lines.get(1).split(" ");
+            return new ForkResult(LatencyHistogram.decode(lines.get(0)), Long.parseLong(allocations[0]),
+                    Long.parseLong(allocations[1]), Long.parseLong(allocations[2]), JvmTelemetry.decode(lines.get(2)));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed fork result " + file, e);
+        }
+    }
+
+    /**
+     * Adds this result to the aggregated results of the test JVM.
+     *
+     * @param target      The histogram of the test JVM.
+     * @param allocations The allocation counter of the test JVM, may be {@code null}.
+     * @param jvm         The telemetry of the test JVM.
+     */
+    void addTo(LatencyHistogram target, AllocationCounter allocations, JvmTelemetry jvm) {
+        target.add(histogram);
+        jvm.add(telemetry);
+        if (allocations != null && allocatedBytes >= 0) {
+            allocations.add(allocatedBytes, allocationCount, maxAllocatedBytes);
+        }
+    }
+}
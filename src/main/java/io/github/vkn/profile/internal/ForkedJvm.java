@@ -0,0 +1,103 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.Fork;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Launches a profiled test in a fresh local JVM with the classpath of the test JVM and the flags
+ * configured by {@link Fork}. System properties of the profiling configuration are passed on. The fork runs
+ * {@link ForkedTestRunner} and reports back through a {@link ForkResult} file.
+ */
+class ForkedJvm {
+    private static final Logger LOGGER = Logger.getLogger(ForkedJvm.class.getName());
+    /**
+     * System property that tells the {@link ProfilingExtension} of a fork where to write its result.
+     */
+    static final String RESULT_PROPERTY = "io.github.vkn.profile.fork.result";
+    /**
+     * System property with the 1-based index of a fork.
+     */
+    static final String INDEX_PROPERTY = "io.github.vkn.profile.fork.index";
+
+    private final Fork fork;
+
+    ForkedJvm(Fork fork) {
+        this.fork = fork;
+    }
+
+    /**
+     * @return {@code true} if this JVM is a fork started by {@link ForkedJvm}.
+     */
+    static boolean isFork() {
+        return System.getProperty(RESULT_PROPERTY) != null;
+    }
+
+    int forks() {
+        return fork.value();
+    }
+
+    /**
+     * Runs the test method in a new JVM and waits for it to finish.
+     *
+     * @param testMethod The test method.
+     * @param index      The 1-based index of the fork.
+     * @param resultFile The file the fork writes its result to.
+     * @return The result of the fork.
+     * @throws AssertionError if the test failed in the fork.
+     */
+    ForkResult run(Method testMethod, int index, Path resultFile) throws IOException, InterruptedException {
+        Files.deleteIfExists(resultFile);
+        List<String> command = command(testMethod, index, resultFile);
+        LOGGER.info("Fork %d/%d: %s".formatted(index, forks(), String.join(" ", command)));
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || !Files.exists(resultFile)) {
+            throw new AssertionError("Fork %d/%d of %s failed with exit code %d"
+                    .formatted(index, forks(), testMethod.getName(), exitCode));
+        }
+        return ForkResult.read(resultFile);
+    }
+
+    List<String> command(Method testMethod, int index, Path resultFile) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (!fork.heap().isBlank()) {
+            command.add("-Xms" + fork.heap());
+            command.add("-Xmx" + fork.heap());
+        }
+        if (!fork.gc().isBlank()) {
+            command.add("-XX:+Use%sGC".formatted(fork.gc()));
+        }
+        command.addAll(Arrays.asList(fork.jvmArgs()));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(Configuration.PREFIX))
+                .sorted()
+                .forEach(name -> command.add("-D%s=%s".formatted(name, System.getProperty(name))));
+        command.add("-D%s=%s".formatted(RESULT_PROPERTY, resultFile.toAbsolutePath()));
+        command.add("-D%s=%d".formatted(INDEX_PROPERTY, index));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ForkedTestRunner.class.getName());
+        command.add(methodSelector(testMethod));
+        return command;
+    }
+
+    /**
+     * @return The fully qualified method name understood by the JUnit Platform method selector.
+     */
+    static String methodSelector(Method testMethod) {
+        String parameters = Arrays.stream(testMethod.getParameterTypes())
+                .map(Class::getName)
+                .collect(Collectors.joining(","));
+        return "%s#%s(%s)".formatted(testMethod.getDeclaringClass().getName(), testMethod.getName(), parameters);
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import java.io.PrintWriter;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectMethod;
+
+/**
+ * Entry point of a forked JVM started by {@link ForkedJvm}. Runs a single test method through the
+ * JUnit Platform Launcher, so that the {@link ProfilingExtension} and all other extensions of the test
+ * behave as in the test JVM. Exits with {@code 0} if the test succeeded and {@code 1} otherwise.
+ */
+public final class ForkedTestRunner {
+
+    private ForkedTestRunner() {
+    }
+
+    /**
+     * @param args The fully qualified method name, e.g. {@code com.example.MyTest#myMethod()}.
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: ForkedTestRunner <class#method(parameterTypes)>");
+            System.exit(2);
+        }
+        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                .selectors(selectMethod(args[0]))
+                .build();
+        Launcher launcher = LauncherFactory.create();
+        SummaryGeneratingListener listener = new SummaryGeneratingListener();
+        launcher.execute(request, listener);
+        TestExecutionSummary summary = listener.getSummary();
+        if (summary.getTotalFailureCount() > 0 || summary.getTestsSucceededCount() == 0) {
+            summary.printFailuresTo(new PrintWriter(System.err, true), 20);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
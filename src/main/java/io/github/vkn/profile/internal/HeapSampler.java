@@ -0,0 +1,125 @@
+package io.github.vkn.profile.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Samples the used heap after a full GC during the profiling invocations of a test with
+ * {@link io.github.vkn.profile.HeapGrowth}: after the first invocation, every {@code every} invocations and after
+ * the last one. The sample arrays are preallocated for all samples. Class histograms are taken at the first and the
+ * last sample only, as each one walks the whole heap.
+ */
+final class HeapSampler {
+    private static final Logger LOGGER = Logger.getLogger(HeapSampler.class.getName());
+    private final int every;
+    private final int repeat;
+    private final long[] invocations;
+    private final long[] usedBytes;
+    private boolean histogram;
+    private int samples;
+    private ClassHistogram first;
+    private ClassHistogram last;
+
+    /**
+     * @param every     The number of invocations between two samples.
+     * @param repeat    The number of profiling invocations.
+     * @param histogram Whether class histograms are taken.
+     */
+    HeapSampler(int every, int repeat, boolean histogram) {
+        if (every < 1) {
+            throw new IllegalArgumentException("The heap must be sampled at least every invocation, but was " + every);
+        }
+        this.every = every;
+        this.repeat = repeat;
+        this.histogram = histogram;
+        int capacity = (repeat - 1) / every + 2;
+        invocations = new long[capacity];
+        usedBytes = new long[capacity];
+    }
+
+    /**
+     * @return The number of samples taken over all profiling invocations.
+     */
+    int expectedSamples() {
+        return (repeat - 1) / every + ((repeat - 1) % every == 0 ? 1 : 2);
+    }
+
+    /**
+     * Samples the used heap if the finished invocation is due.
+     *
+     * @param invocation The count of the finished profiling invocation, starting at 1.
+     */
+    void afterInvocation(int invocation) {
+        boolean isLast = invocation == repeat;
+        if ((invocation - 1) % every != 0 && !isLast) {
+            return;
+        }
+        boolean isFirst = samples == 0;
+        if (histogram && (isFirst || isLast)) {
+            try {
+                // the histogram collects all garbage before counting
+                ClassHistogram taken = ClassHistogram.take();
+                if (isFirst) {
+                    first = taken;
+                } else {
+                    last = taken;
+                }
+            } catch (IllegalStateException e) {
+                LOGGER.log(Level.WARNING, "Class histograms are not available, growing classes are not reported", e);
+                histogram = false;
+                System.gc();
+            }
+        } else {
+            System.gc();
+        }
+        invocations[samples] = invocation;
+        usedBytes[samples] = usedAfterGc();
+        samples++;
+    }
+
+    /**
+     * @return The used heap right after the last collection; unlike the current usage, it excludes the objects
+     * allocated since.
+     */
+    static long usedAfterGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    int samples() {
+        return samples;
+    }
+
+    /**
+     * @return The trend of the used heap, or {@code null} with less than three samples.
+     */
+    HeapTrend trend(double alpha) {
+        return samples < 3 ? null : HeapTrend.of(invocations, usedBytes, samples, alpha);
+    }
+
+    /**
+     * @return The classes whose instance count grew most from the first to the last sample, empty without
+     * histograms.
+     */
+    List<String> growingClasses(int top) {
+        return first == null || last == null ? List.of() : last.growth(first, top);
+    }
+
+    /**
+     * @return The used heap at the first and the last sample.
+     */
+    String format() {
+        return samples == 0 ? "" : "heap=%dB..%dB".formatted(usedBytes[0], usedBytes[samples - 1]);
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.vkn.profile.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The linear trend of the used heap over the invocation count, fitted by least squares.
+ *
+ * @param slope   The growth of the used heap in bytes per invocation.
+ * @param lower   The lower bound of the confidence interval of the slope, from Student's t-distribution.
+ * @param upper   The upper bound of the confidence interval of the slope.
+ * @param r2      The coefficient of determination, how much of the variation of the heap the trend explains.
+ * @param samples The number of heap samples.
+ */
+record HeapTrend(double slope, double lower, double upper, double r2, int samples) {
+
+    /**
+     * @param invocations The invocation counts of the samples.
+     * @param usedBytes   The used heap after a full GC at each sample.
+     * @param samples     The number of samples to fit, at least three.
+     * @param alpha       The significance level of the confidence interval.
+     * @return The trend.
+     */
+    static HeapTrend of(long[] invocations, long[] usedBytes, int samples, double alpha) {
+        if (samples < 3) {
+            throw new IllegalArgumentException("At least three heap samples are required");
+        }
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < samples; i++) {
+            meanX += (double) invocations[i] / samples;
+            meanY += (double) usedBytes[i] / samples;
+        }
+        double sxx = 0;
+        double sxy = 0;
+        double syy = 0;
+        for (int i = 0; i < samples; i++) {
+            double dx = invocations[i] - meanX;
+            double dy = usedBytes[i] - meanY;
+            sxx += dx * dx;
+            sxy += dx * dy;
+            syy += dy * dy;
+        }
+        if (sxx == 0) {
+            throw new IllegalArgumentException("The heap samples must be taken at different invocations");
+        }
+        double slope = sxy / sxx;
+        double squaredError = Math.max(0, syy - slope * sxy);
+        double error = Statistics.studentTQuantile(1 - alpha / 2, samples - 2)
+                * Math.sqrt(squaredError / (samples - 2) / sxx);
+        double r2 = syy == 0 ? 0 : 1 - squaredError / syy;
+        return new HeapTrend(slope, slope - error, slope + error, r2, samples);
+    }
+
+    /**
+     * @return {@code true} if the heap grows by more than the tolerance with the confidence of the interval.
+     */
+    boolean grows(long toleranceBytes) {
+        return lower > toleranceBytes;
+    }
+
+    String format() {
+        return "growth=%+.1fB/op [%+.1fB/op, %+.1fB/op] r2=%.3f samples=%d"
+                .formatted(slope, lower, upper, r2, samples);
+    }
+
+    Map<String, String> reportEntries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("heap.growthBytesPerOp", "%.1f".formatted(slope));
+        entries.put("heap.growthLower", "%.1f".formatted(lower));
+        entries.put("heap.growthUpper", "%.1f".formatted(upper));
+        entries.put("heap.r2", "%.4f".formatted(r2));
+        entries.put("heap.samples", String.valueOf(samples));
+        return entries;
+    }
+}
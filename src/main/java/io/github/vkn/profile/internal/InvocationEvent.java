@@ -0,0 +1,41 @@
+package io.github.vkn.profile.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event that spans one invocation of a profiled test, written into the recording of a
+ * {@link io.github.vkn.profile.SessionScope#CLASS} session, so that the recording can be sliced per test.
+ */
+@Name(InvocationEvent.NAME)
+@Label("Profiled Invocation")
+@Category("Profiling Unit")
+@Description("An invocation of a profiled test, from the before-each to the after-each callbacks")
+@StackTrace(false)
+class InvocationEvent extends Event {
+    static final String NAME = "io.github.vkn.profile.Invocation";
+    static final String WARMUP = "warmup";
+    static final String PROFILING = "profiling";
+
+    @Label("Test")
+    @Description("The test class and method, and the input size of a sweep")
+    String test;
+
+    @Label("Phase")
+    @Description("warmup, profiling, or the compared method of a comparison")
+    String phase;
+
+    @Label("Invocation")
+    @Description("The index of the invocation within its phase, starting at 1")
+    int invocation;
+
+    InvocationEvent(String test, String phase, int invocation) {
+        this.test = test;
+        this.phase = phase;
+        this.invocation = invocation;
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.CStack;
+import io.github.vkn.profile.Type;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.INFO;
+
+/**
+ * A {@link Profiler} backed by the JDK Flight Recorder. Needs no native library and no kernel settings.
+ * Only the JDK events that correspond to the requested async-profiler events are enabled, with settings
+ * close to the async-profiler defaults and below the overhead of the JDK {@code profile} settings:
+ * <ul>
+ *     <li>{@code cpu}, {@code itimer}: {@code jdk.ExecutionSample} every 10 ms</li>
+ *     <li>{@code wall}: additionally {@code jdk.NativeMethodSample} every 20 ms</li>
+ *     <li>{@code alloc}: {@code jdk.ObjectAllocationSample}, throttled to 150 samples per second</li>
+ *     <li>{@code lock}: {@code jdk.JavaMonitorEnter} and {@code jdk.ThreadPark} longer than 10 ms</li>
+ * </ul>
+ * The interval, wall-clock interval and lock threshold of {@link io.github.vkn.profile.Sampling} replace
+ * these defaults. Deoptimizations and safepoints are always recorded for the {@link JvmTelemetry}, and so are the
+ * {@link InvocationEvent} markers of a class-scoped session. The output is always a JFR recording, named like the
+ * recordings of the async-profiler.
+ */
+class JfrProfiler implements Profiler {
+    private static final Logger LOGGER = Logger.getLogger(JfrProfiler.class.getName());
+    private static final AtomicBoolean HAS_RECORDED = new AtomicBoolean();
+    private final Path file;
+    private final Map<String, String> settings;
+    private Recording recording;
+
+    JfrProfiler(Type type, String profilingEvent, ProfilerOptions options, String filename) {
+        if (type != Type.JFR) {
+            LOGGER.warning("The JDK Flight Recorder writes JFR recordings only, %s is ignored".formatted(type));
+        }
+        String events = options.events(profilingEvent);
+        file = Path.of("%s_%s.jfr".formatted(filename, events.replace(",", "_")));
+        settings = settings(events, options);
+    }
+
+    /**
+     * @return {@code true} if a JDK Flight Recording was started in this JVM.
+     */
+    static boolean hasRecorded() {
+        return HAS_RECORDED.get();
+    }
+
+    /**
+     * Translates the events and the supported sampling options to JFR settings. The interval, wall-clock
+     * interval and lock threshold are supported; other options are ignored with a warning.
+     */
+    static Map<String, String> settings(String profilingEvents, ProfilerOptions options) {
+        if (options.allocBytes() >= 0 || options.stackDepth() > 0 || options.cstack() != CStack.DEFAULT
+                || options.threads() || options.nativeMemory() || options.filterThreads()) {
+            LOGGER.warning("The JDK Flight Recorder ignores the alloc, stackDepth, cstack, threads, nativeMemory "
+                    + "and filterThreads options");
+        }
+        String interval = options.intervalNanos() > 0 ? options.intervalNanos() + " ns" : "10 ms";
+        String lock = options.lockNanos() >= 0 ? options.lockNanos() + " ns" : "10 ms";
+        Map<String, String> settings = new HashMap<>();
+        enable(settings, "jdk.Deoptimization", false);
+        enable(settings, "jdk.SafepointBegin", false);
+        enable(settings, InvocationEvent.NAME, false);
+        settings.put("jdk.SafepointBegin#threshold", "0 ms");
+        for (String event : profilingEvents.split(",")) {
+            switch (event.trim()) {
+                case "cpu", "itimer" -> period(settings, "jdk.ExecutionSample", interval);
+                case "wall" -> {
+                    period(settings, "jdk.ExecutionSample", interval);
+                    period(settings, "jdk.NativeMethodSample", "20 ms");
+                }
+                case "alloc" -> {
+                    enable(settings, "jdk.ObjectAllocationSample", true);
+                    settings.put("jdk.ObjectAllocationSample#throttle", "150/s");
+                }
+                case "lock" -> {
+                    threshold(settings, "jdk.JavaMonitorEnter", lock);
+                    threshold(settings, "jdk.ThreadPark", lock);
+                }
+                default -> LOGGER.warning("Event %s is not supported by the JDK Flight Recorder".formatted(event));
+            }
+        }
+        if (options.wallNanos() >= 0) {
+            period(settings, "jdk.ExecutionSample", interval);
+            period(settings, "jdk.NativeMethodSample", options.wallNanos() > 0 ? options.wallNanos() + " ns" : "20 ms");
+        }
+        return settings;
+    }
+
+    private static void enable(Map<String, String> settings, String event, boolean stackTrace) {
+        settings.put(event + "#enabled", "true");
+        settings.put(event + "#stackTrace", String.valueOf(stackTrace));
+    }
+
+    private static void period(Map<String, String> settings, String event, String period) {
+        enable(settings, event, true);
+        settings.put(event + "#period", period);
+    }
+
+    private static void threshold(Map<String, String> settings, String event, String threshold) {
+        enable(settings, event, true);
+        settings.put(event + "#threshold", threshold);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (recording != null) {
+            return;
+        }
+        LOGGER.log(INFO, "Start JDK Flight Recording");
+        Recording started = new Recording(settings);
+        try {
+            started.setDestination(file);
+            started.setToDisk(true);
+            started.start();
+        } catch (IOException | RuntimeException e) {
+            started.close();
+            throw new IllegalStateException("Cannot start JDK Flight Recording to " + file, e);
+        }
+        HAS_RECORDED.set(true);
+        recording = started;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (recording == null) {
+            return;
+        }
+        LOGGER.log(INFO, "Stop JDK Flight Recording");
+        try {
+            // writes the recording to its destination
+            recording.stop();
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @Override
+    public Optional<Path> recording() {
+        return Optional.of(file);
+    }
+}
@@ -0,0 +1,376 @@
+package io.github.vkn.profile.internal;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Hot-method summary of a JFR recording: the top CPU frames by self and total samples, the top
+ * allocation sites by bytes, and the lock contention: the most contended monitors and acquiring
+ * stacks by blocked time, with the total and the longest blocked time. The recording is read event
+ * by event with {@link RecordingFile}, and every aggregate is a {@link TopCounter} or a scalar, so
+ * memory use is bounded regardless of the size of the recording. The lock events can be restricted to the
+ * threads of the test, see {@link #testLocks(Map)}.
+ */
+final class JfrSummary {
+
+    static final int CAPACITY = 4096;
+    /**
+     * The number of frames of an acquiring stack, from the first frame outside the JDK.
+     */
+    static final int LOCK_STACK_DEPTH = 3;
+    /**
+     * The classes whose synchronization coordinates the profiled operations rather than being part of them.
+     */
+    private static final Set<String> EXTENSION_CLASSES = Set.of(ConcurrentLoad.class.getName(),
+            ProfilingExtension.class.getName(), ExclusiveProfiler.class.getName(), PostProcessor.class.getName(),
+            RoundBarrier.class.getName(), ThreadFilter.class.getName());
+
+    private final int top;
+    private final Predicate<RecordedEvent> isTestLock;
+    private final TopCounter selfCpu = new TopCounter(CAPACITY);
+    private final TopCounter totalCpu = new TopCounter(CAPACITY);
+    private final TopCounter allocations = new TopCounter(CAPACITY);
+    private final TopCounter sampledAllocations = new TopCounter(CAPACITY);
+    private final TopCounter monitors = new TopCounter(CAPACITY);
+    private final TopCounter lockStacks = new TopCounter(CAPACITY);
+    private final Set<String> seenInStack = new HashSet<>();
+    private long cpuSamples;
+    private long lockEvents;
+    private long blockedNanos;
+    private long maxBlockedNanos;
+    private String maxBlockedMonitor = "<none>";
+
+    private JfrSummary(int top, Predicate<RecordedEvent> isTestLock) {
+        this.top = top;
+        this.isTestLock = isTestLock;
+    }
+
+    /**
+     * Streams the recording and summarizes it.
+     *
+     * @param recording The JFR file.
+     * @param top       The number of entries per category.
+     * @return The summary.
+     */
+    static JfrSummary of(Path recording, int top) {
+        return of(recording, top, event -> true);
+    }
+
+    /**
+     * Streams the recording and summarizes it, counting only the lock events accepted by the filter.
+     *
+     * @param recording  The JFR file.
+     * @param top        The number of entries per category.
+     * @param isTestLock The filter of the lock events.
+     * @return The summary.
+     */
+    static JfrSummary of(Path recording, int top, Predicate<RecordedEvent> isTestLock) {
+        JfrSummary summary = new JfrSummary(top, isTestLock);
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                summary.accept(file.readEvent());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return summary;
+    }
+
+    private void accept(RecordedEvent event) {
+        switch (event.getEventType().getName()) {
+            case "jdk.ExecutionSample", "jdk.NativeMethodSample" -> acceptCpu(event.getStackTrace());
+            // async-profiler reports sampled allocations with the TLAB size as weight
+            case "jdk.ObjectAllocationInNewTLAB" -> allocations.add(allocationSite(event), event.getLong("tlabSize"));
+            case "jdk.ObjectAllocationOutsideTLAB" -> allocations.add(allocationSite(event), event.getLong("allocationSize"));
+            case "jdk.ObjectAllocationSample" -> sampledAllocations.add(allocationSite(event), event.getLong("weight"));
+            case "jdk.JavaMonitorEnter" -> acceptLock(event, className(event.getClass("monitorClass")));
+            case "jdk.ThreadPark" -> acceptLock(event, className(event.getClass("parkedClass")));
+            default -> {
+            }
+        }
+    }
+
+    private void acceptCpu(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return;
+        }
+        cpuSamples++;
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        selfCpu.add(frameName(frames.get(0)), 1);
+        seenInStack.clear();
+        for (RecordedFrame frame : frames) {
+            String name = frameName(frame);
+            if (seenInStack.add(name)) {
+                totalCpu.add(name, 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the filter of the lock events of a test. The recording covers every thread of the JVM, most of which
+     * wait as part of their job, such as the reference handler or idle pool workers. An event is counted if it was
+     * recorded by one of the threads, matched by id or, if the recording has no Java thread id, by name, and is not
+     * the synchronization of the extension itself, such as the barrier of the concurrent load. Events without a
+     * frame outside the JDK, a pool worker waiting for a task, are not counted either.
+     *
+     * @param threads The ids and names of the threads that ran the test.
+     * @return The filter.
+     */
+    static Predicate<RecordedEvent> testLocks(Map<Long, String> threads) {
+        Set<Long> ids = Set.copyOf(threads.keySet());
+        Set<String> names = Set.copyOf(threads.values());
+        return event -> {
+            RecordedThread thread = event.getThread();
+            if (thread == null) {
+                return false;
+            }
+            boolean isTestThread = thread.getJavaThreadId() > 0
+                    ? ids.contains(thread.getJavaThreadId())
+                    : thread.getJavaName() != null && names.contains(thread.getJavaName());
+            return isTestThread && !isExtensionSynchronization(event.getStackTrace());
+        };
+    }
+
+    private static boolean isExtensionSynchronization(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return false;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.getMethod() != null && !isJdkFrame(frame)) {
+                String className = className(frame.getMethod().getType());
+                int nested = className.indexOf('$');
+                String outerClass = nested < 0 ? className : className.substring(0, nested);
+                return EXTENSION_CLASSES.contains(outerClass) || outerClass.startsWith("org.junit.");
+            }
+        }
+        return !stackTrace.isTruncated();
+    }
+
+    private void acceptLock(RecordedEvent event, String monitor) {
+        if (!isTestLock.test(event)) {
+            return;
+        }
+        long nanos = event.getDuration().toNanos();
+        monitors.add(monitor, nanos);
+        lockStacks.add(acquiringStack(event.getStackTrace()), nanos);
+        lockEvents++;
+        blockedNanos += nanos;
+        if (nanos > maxBlockedNanos) {
+            maxBlockedNanos = nanos;
+            maxBlockedMonitor = monitor;
+        }
+    }
+
+    /**
+     * @return The frames that acquire the lock, starting at the first frame outside the JDK, so that the frames of
+     * {@code LockSupport.park} and the lock implementation do not hide the caller, e.g.
+     * {@code com.Cache.get <- com.Service.handle <- com.Server.run}.
+     */
+    static String acquiringStack(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "<unknown>";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        int first = 0;
+        while (first < frames.size() - 1 && isJdkFrame(frames.get(first))) {
+            first++;
+        }
+        StringBuilder sb = new StringBuilder(frameName(frames.get(first)));
+        for (int i = first + 1; i < Math.min(frames.size(), first + LOCK_STACK_DEPTH); i++) {
+            sb.append(" <- ").append(frameName(frames.get(i)));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isJdkFrame(RecordedFrame frame) {
+        String name = frameName(frame);
+        return name.startsWith("java.") || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+
+    private static String allocationSite(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String site = stackTrace == null || stackTrace.getFrames().isEmpty()
+                ? "<unknown>"
+                : frameName(stackTrace.getFrames().get(0));
+        return "%s (%s)".formatted(site, className(event.getClass("objectClass")));
+    }
+
+    static String frameName(RecordedFrame frame) {
+        RecordedMethod method = frame.getMethod();
+        if (method == null) {
+            return "<unknown>";
+        }
+        return className(method.getType()) + "." + method.getName();
+    }
+
+    private static String className(RecordedClass recordedClass) {
+        return recordedClass == null ? "<unknown>" : recordedClass.getName();
+    }
+
+    long cpuSamples() {
+        return cpuSamples;
+    }
+
+    List<TopCounter.Entry> selfCpu() {
+        return selfCpu.top(top);
+    }
+
+    List<TopCounter.Entry> totalCpu() {
+        return totalCpu.top(top);
+    }
+
+    /**
+     * @return The top allocation sites, preferring async-profiler's allocation events over
+     * the JDK's own allocation samples, so that a synchronized recording is not counted twice.
+     */
+    List<TopCounter.Entry> allocations() {
+        return (allocations.isEmpty() ? sampledAllocations : allocations).top(top);
+    }
+
+    List<TopCounter.Entry> monitors() {
+        return monitors.top(top);
+    }
+
+    List<TopCounter.Entry> lockStacks() {
+        return lockStacks.top(top);
+    }
+
+    /**
+     * @return The number of monitor enter and park events, each one a thread blocked longer than the lock threshold.
+     */
+    long lockEvents() {
+        return lockEvents;
+    }
+
+    /**
+     * @return The time threads were blocked on locks, summed over all threads.
+     */
+    long blockedNanos() {
+        return blockedNanos;
+    }
+
+    /**
+     * @return The longest time a thread was blocked on a single lock.
+     */
+    long maxBlockedNanos() {
+        return maxBlockedNanos;
+    }
+
+    /**
+     * @return The class of the monitor or lock of the longest blocked time.
+     */
+    String maxBlockedMonitor() {
+        return maxBlockedMonitor;
+    }
+
+    /**
+     * @param histogram The latencies of the profiled operations.
+     * @return The time blocked on locks as a share of the time of the operations, summed over all threads.
+     */
+    double contendedRatio(LatencyHistogram histogram) {
+        return histogram.sum() <= 0 ? 0 : (double) blockedNanos / histogram.sum();
+    }
+
+    /**
+     * Formats the lock contention relative to the profiled operations, e.g. {@code Lock contention: 12 events
+     * (0.012/op), blocked 30.000ms (30.000us/op, 1.20% of operation time), max 5.000ms (java.lang.Object)}.
+     *
+     * @param histogram The latencies of the profiled operations.
+     * @return The formatted contention.
+     */
+    String formatContention(LatencyHistogram histogram) {
+        long operations = Math.max(1, histogram.count());
+        return "Lock contention: %d events (%.3f/op), blocked %s (%s/op, %.2f%% of operation time), max %s (%s)"
+                .formatted(lockEvents, (double) lockEvents / operations, LatencyHistogram.formatNanos(blockedNanos),
+                        LatencyHistogram.formatNanos((double) blockedNanos / operations),
+                        contendedRatio(histogram) * 100, LatencyHistogram.formatNanos(maxBlockedNanos),
+                        maxBlockedMonitor);
+    }
+
+    /**
+     * @param histogram The latencies of the profiled operations.
+     * @return The lock contention as report entries.
+     */
+    Map<String, String> contentionEntries(LatencyHistogram histogram) {
+        long operations = Math.max(1, histogram.count());
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("locks.events", String.valueOf(lockEvents));
+        entries.put("locks.eventsPerOp", "%.6f".formatted((double) lockEvents / operations));
+        entries.put("locks.blockedNanos", String.valueOf(blockedNanos));
+        entries.put("locks.blockedNanosPerOp", "%.1f".formatted((double) blockedNanos / operations));
+        entries.put("locks.contendedRatio", "%.6f".formatted(contendedRatio(histogram)));
+        entries.put("locks.maxBlockedNanos", String.valueOf(maxBlockedNanos));
+        entries.put("locks.maxBlockedMonitor", maxBlockedMonitor);
+        return entries;
+    }
+
+    /**
+     * Formats the summary as a multi-line human-readable text.
+     *
+     * @return The formatted summary.
+     */
+    String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("CPU samples: ").append(cpuSamples).append(System.lineSeparator());
+        section(sb, "Top CPU frames (self)", selfCpu(), e -> percent(e.weight()));
+        section(sb, "Top CPU frames (total)", totalCpu(), e -> percent(e.weight()));
+        section(sb, "Top allocation sites", allocations(), e -> "%d bytes".formatted(e.weight()));
+        section(sb, "Most contended monitors", monitors(),
+                e -> "%s in %d events".formatted(LatencyHistogram.formatNanos(e.weight()), e.count()));
+        section(sb, "Most contended stacks", lockStacks(),
+                e -> "%s in %d events".formatted(LatencyHistogram.formatNanos(e.weight()), e.count()));
+        return sb.toString();
+    }
+
+    /**
+     * @return The summary as flat report entries, e.g. {@code jfr.cpu.self.1 -> "com.Foo.bar 42.0%"}.
+     */
+    Map<String, String> reportEntries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("jfr.cpu.samples", String.valueOf(cpuSamples));
+        entries(entries, "jfr.cpu.self", selfCpu(), e -> percent(e.weight()));
+        entries(entries, "jfr.cpu.total", totalCpu(), e -> percent(e.weight()));
+        entries(entries, "jfr.alloc", allocations(), e -> String.valueOf(e.weight()));
+        entries(entries, "jfr.monitor", monitors(), e -> String.valueOf(e.weight()));
+        entries(entries, "jfr.lockStack", lockStacks(), e -> String.valueOf(e.weight()));
+        return entries;
+    }
+
+    private String percent(long samples) {
+        return "%.1f%%".formatted(cpuSamples == 0 ? 0 : 100.0 * samples / cpuSamples);
+    }
+
+    private static void section(StringBuilder sb, String title, List<TopCounter.Entry> entries,
+                                Function<TopCounter.Entry, String> value) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        sb.append(title).append(':').append(System.lineSeparator());
+        for (TopCounter.Entry entry : entries) {
+            sb.append("  ").append(value.apply(entry)).append("  ").append(entry.key()).append(System.lineSeparator());
+        }
+    }
+
+    private static void entries(Map<String, String> entries, String prefix, List<TopCounter.Entry> top,
+                                Function<TopCounter.Entry, String> value) {
+        for (int i = 0; i < top.size(); i++) {
+            entries.put(prefix + "." + (i + 1), top.get(i).key() + " " + value.apply(top.get(i)));
+        }
+    }
+}
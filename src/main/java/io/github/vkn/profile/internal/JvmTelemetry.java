@@ -0,0 +1,286 @@
+package io.github.vkn.profile.internal;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * GC, JIT and safepoint activity of the JVM during a profiling window. GC counts and times and the
+ * JIT compilation time are deltas of the {@link GarbageCollectorMXBean}s and the {@link CompilationMXBean}.
+ * Major collections, the longest pause and the bytes promoted to the old generation come from GC
+ * notifications received during the window. Deoptimizations and safepoints are only known if a JFR
+ * recording of the window with the JDK events is available; they are {@code -1} otherwise.
+ */
+final class JvmTelemetry implements NotificationListener {
+    private static final Logger LOGGER = Logger.getLogger(JvmTelemetry.class.getName());
+
+    private long gcCount;
+    private long majorGcCount;
+    private long gcTimeNanos;
+    private long maxGcPauseNanos;
+    private long promotedBytes;
+    private long compilationNanos;
+    private long deoptimizations = -1;
+    private long safepoints = -1;
+    private long safepointSyncNanos = -1;
+
+    private long startGcCount;
+    private long startGcTimeMillis;
+    private long startCompilationMillis;
+    private boolean isStarted;
+
+    /**
+     * Takes the snapshot at the start of the window and starts listening to GC notifications.
+     */
+    synchronized void start() {
+        if (isStarted) {
+            return;
+        }
+        isStarted = true;
+        startGcCount = totalGcCount();
+        startGcTimeMillis = totalGcTimeMillis();
+        startCompilationMillis = totalCompilationMillis();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    /**
+     * Stops listening and adds the activity since {@link #start()}.
+     */
+    synchronized void stop() {
+        if (!isStarted) {
+            return;
+        }
+        isStarted = false;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter emitter) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // not registered with this collector
+                }
+            }
+        }
+        gcCount += totalGcCount() - startGcCount;
+        gcTimeNanos += TimeUnit.MILLISECONDS.toNanos(totalGcTimeMillis() - startGcTimeMillis);
+        compilationNanos += TimeUnit.MILLISECONDS.toNanos(totalCompilationMillis() - startCompilationMillis);
+    }
+
+    @Override
+    public synchronized void handleNotification(Notification notification, Object handback) {
+        if (!isStarted || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        if (info.getGcAction().contains("major")) {
+            majorGcCount++;
+        }
+        maxGcPauseNanos = Math.max(maxGcPauseNanos, TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()));
+        Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+        info.getGcInfo().getMemoryUsageAfterGc().forEach((pool, after) -> {
+            MemoryUsage used = before.get(pool);
+            if (isOldGeneration(pool) && used != null && after.getUsed() > used.getUsed()) {
+                promotedBytes += after.getUsed() - used.getUsed();
+            }
+        });
+    }
+
+    static boolean isOldGeneration(String pool) {
+        return pool.contains("Old") || pool.contains("Tenured");
+    }
+
+    /**
+     * Adds the deoptimizations and safepoints of a JFR recording of the window. They stay unknown if the
+     * recording cannot be read.
+     *
+     * @param recording The JFR file with the {@code jdk.Deoptimization} and {@code jdk.SafepointBegin} events.
+     */
+    void addRecording(Path recording) {
+        long deopts = 0;
+        long safepointCount = 0;
+        long syncNanos = 0;
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case "jdk.Deoptimization" -> deopts++;
+                    case "jdk.SafepointBegin" -> {
+                        safepointCount++;
+                        syncNanos += event.getDuration().toNanos();
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } catch (IOException | InternalError e) {
+            // the JFR parser signals a chunk it cannot read with an InternalError
+            LOGGER.log(Level.WARNING, "Cannot read deoptimizations and safepoints from " + recording, e);
+            return;
+        }
+        synchronized (this) {
+            deoptimizations = Math.max(0, deoptimizations) + deopts;
+            safepoints = Math.max(0, safepoints) + safepointCount;
+            safepointSyncNanos = Math.max(0, safepointSyncNanos) + syncNanos;
+        }
+    }
+
+    /**
+     * Adds the activity of another window, e.g. of a forked JVM.
+     */
+    synchronized void add(JvmTelemetry other) {
+        gcCount += other.gcCount;
+        majorGcCount += other.majorGcCount;
+        gcTimeNanos += other.gcTimeNanos;
+        maxGcPauseNanos = Math.max(maxGcPauseNanos, other.maxGcPauseNanos);
+        promotedBytes += other.promotedBytes;
+        compilationNanos += other.compilationNanos;
+        deoptimizations = addKnown(deoptimizations, other.deoptimizations);
+        safepoints = addKnown(safepoints, other.safepoints);
+        safepointSyncNanos = addKnown(safepointSyncNanos, other.safepointSyncNanos);
+    }
+
+    private static long addKnown(long a, long b) {
+        return a < 0 && b < 0 ? -1 : Math.max(0, a) + Math.max(0, b);
+    }
+
+    private static long totalGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long totalGcTimeMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    private static long totalCompilationMillis() {
+        CompilationMXBean bean = ManagementFactory.getCompilationMXBean();
+        return bean == null || !bean.isCompilationTimeMonitoringSupported() ? 0 : bean.getTotalCompilationTime();
+    }
+
+    synchronized long gcCount() {
+        return gcCount;
+    }
+
+    synchronized long majorGcCount() {
+        return majorGcCount;
+    }
+
+    synchronized long gcTimeNanos() {
+        return gcTimeNanos;
+    }
+
+    synchronized long maxGcPauseNanos() {
+        return maxGcPauseNanos;
+    }
+
+    synchronized long promotedBytes() {
+        return promotedBytes;
+    }
+
+    synchronized long compilationNanos() {
+        return compilationNanos;
+    }
+
+    synchronized long deoptimizations() {
+        return deoptimizations;
+    }
+
+    synchronized long safepoints() {
+        return safepoints;
+    }
+
+    synchronized long safepointSyncNanos() {
+        return safepointSyncNanos;
+    }
+
+    /**
+     * Encodes the telemetry as a single line of space-separated numbers.
+     */
+    String encode() {
+        return "%d %d %d %d %d %d %d %d %d".formatted(gcCount, majorGcCount, gcTimeNanos, maxGcPauseNanos,
+                promotedBytes, compilationNanos, deoptimizations, safepoints, safepointSyncNanos);
+    }
+
+    /**
+     * Decodes telemetry written by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the value is malformed.
+     */
+    static JvmTelemetry decode(String encoded) {
+        String[] parts = encoded.trim().split(" ");
+        if (parts.length != 9) {
+            throw new IllegalArgumentException("Malformed telemetry: " + encoded);
+        }
+        JvmTelemetry telemetry = new JvmTelemetry();
+        try {
+            telemetry.gcCount = Long.parseLong(parts[0]);
+            telemetry.majorGcCount = Long.parseLong(parts[1]);
+            telemetry.gcTimeNanos = Long.parseLong(parts[2]);
+            telemetry.maxGcPauseNanos = Long.parseLong(parts[3]);
+            telemetry.promotedBytes = Long.parseLong(parts[4]);
+            telemetry.compilationNanos = Long.parseLong(parts[5]);
+            telemetry.deoptimizations = Long.parseLong(parts[6]);
+            telemetry.safepoints = Long.parseLong(parts[7]);
+            telemetry.safepointSyncNanos = Long.parseLong(parts[8]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed telemetry: " + encoded, e);
+        }
+        return telemetry;
+    }
+
+    /**
+     * Formats the telemetry as a single human-readable line.
+     */
+    String format() {
+        StringBuilder sb = new StringBuilder()
+                .append("gc=").append(gcCount)
+                .append(" majorGc=").append(majorGcCount)
+                .append(" gcTime=").append(LatencyHistogram.formatNanos(gcTimeNanos))
+                .append(" maxGcPause=").append(LatencyHistogram.formatNanos(maxGcPauseNanos))
+                .append(" promoted=").append(promotedBytes).append('B')
+                .append(" jit=").append(LatencyHistogram.formatNanos(compilationNanos));
+        if (deoptimizations >= 0) {
+            sb.append(" deopts=").append(deoptimizations)
+                    .append(" safepoints=").append(safepoints)
+                    .append(" safepointSync=").append(LatencyHistogram.formatNanos(safepointSyncNanos));
+        }
+        return sb.toString();
+    }
+
+    Map<String, String> reportEntries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("jvm.gc.count", String.valueOf(gcCount));
+        entries.put("jvm.gc.major", String.valueOf(majorGcCount));
+        entries.put("jvm.gc.timeNanos", String.valueOf(gcTimeNanos));
+        entries.put("jvm.gc.maxPauseNanos", String.valueOf(maxGcPauseNanos));
+        entries.put("jvm.gc.promotedBytes", String.valueOf(promotedBytes));
+        entries.put("jvm.jit.timeNanos", String.valueOf(compilationNanos));
+        if (deoptimizations >= 0) {
+            entries.put("jvm.deoptimizations", String.valueOf(deoptimizations));
+            entries.put("jvm.safepoints", String.valueOf(safepoints));
+            entries.put("jvm.safepoints.syncNanos", String.valueOf(safepointSyncNanos));
+        }
+        return entries;
+    }
+}
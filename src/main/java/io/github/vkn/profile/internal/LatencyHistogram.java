@@ -0,0 +1,226 @@
+package io.github.vkn.profile.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A fixed-size, log-linear latency histogram in the spirit of HdrHistogram.
+ * Values are recorded in nanoseconds. Values below {@code 2^SUB_BUCKET_BITS} are stored
+ * exactly, larger values with a relative precision of {@code 1/2^SUB_BUCKET_BITS} (~0.8%).
+ * All storage is allocated up front, so {@link #record(long)} never allocates and can be
+ * called from the profiled hot path.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - 1 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private double sumOfSquares;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Records a single value. Negative values are clamped to zero.
+     *
+     * @param nanos The measured duration in nanoseconds.
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        sumOfSquares += (double) value * value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds all values recorded by another histogram to this one.
+     *
+     * @param other The histogram to add.
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Encodes the histogram as a single line, listing only non-empty buckets.
+     *
+     * @return The encoded histogram.
+     */
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(count).append(' ').append(sum).append(' ').append(sumOfSquares).append(' ')
+                .append(min).append(' ').append(max);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                sb.append(' ').append(i).append(':').append(counts[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a histogram written by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the value is malformed.
+     */
+    static LatencyHistogram decode(String encoded) {
+        String[] parts = encoded.trim().split(" ");
+        if (parts.length < 5) {
+            throw new IllegalArgumentException("Malformed histogram: " + encoded);
+        }
+        try {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.count = Long.parseLong(parts[0]);
+            histogram.sum = Long.parseLong(parts[1]);
+            histogram.sumOfSquares = Double.parseDouble(parts[2]);
+            histogram.min = Long.parseLong(parts[3]);
+            histogram.max = Long.parseLong(parts[4]);
+            for (int i = 5; i < parts.length; i++) {
+                int separator = parts[i].indexOf(':');
+                histogram.counts[Integer.parseInt(parts[i].substring(0, separator))] =
+                        Long.parseLong(parts[i].substring(separator + 1));
+            }
+            return histogram;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed histogram: " + encoded, e);
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    long sum() {
+        return sum;
+    }
+
+    long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @return The sample standard deviation of the recorded values, or {@code 0} with fewer than two values.
+     */
+    double stdDev() {
+        if (count < 2) {
+            return 0;
+        }
+        double mean = mean();
+        double variance = (sumOfSquares - count * mean * mean) / (count - 1);
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    /**
+     * Returns the value at the given percentile. The result is the highest value that is
+     * equivalent to the bucket the percentile falls into, capped at the recorded maximum.
+     *
+     * @param percentile The percentile in the range {@code [0, 100]}.
+     * @return The value at the percentile in nanoseconds, or {@code 0} if nothing was recorded.
+     */
+    long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(max, Math.max(min, highestEquivalentValue(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the summary statistics reported for a profiled test, keyed by name.
+     * Values are in nanoseconds, except {@code count}.
+     *
+     * @return An ordered map with count, min, mean, p50, p90, p99, p99.9 and max.
+     */
+    Map<String, Long> summary() {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("min", min());
+        summary.put("mean", Math.round(mean()));
+        summary.put("p50", percentile(50));
+        summary.put("p90", percentile(90));
+        summary.put("p99", percentile(99));
+        summary.put("p99.9", percentile(99.9));
+        summary.put("max", max());
+        return summary;
+    }
+
+    /**
+     * Formats {@link #summary()} as a single human-readable line.
+     *
+     * @return The formatted summary.
+     */
+    String format() {
+        StringBuilder sb = new StringBuilder();
+        summary().forEach((name, value) -> {
+            if (!sb.isEmpty()) {
+                sb.append(' ');
+            }
+            sb.append(name).append('=').append("count".equals(name) ? String.valueOf(value) : formatNanos(value));
+        });
+        return sb.toString();
+    }
+
+    static String formatNanos(double nanos) {
+        if (nanos < 1_000) {
+            return "%.0fns".formatted(nanos);
+        }
+        if (nanos < 1_000_000) {
+            return "%.3fus".formatted(nanos / 1_000);
+        }
+        if (nanos < 1_000_000_000) {
+            return "%.3fms".formatted(nanos / 1_000_000);
+        }
+        return "%.3fs".formatted(nanos / 1_000_000_000);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKET_COUNT + (mantissa - SUB_BUCKET_COUNT);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = SUB_BUCKET_COUNT + (index % SUB_BUCKET_COUNT);
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Invokes a test method directly, bypassing the JUnit invocation chain, so that it can be called
+ * repeatedly within a single template invocation. The arguments are resolved once by JUnit. The invoker of a
+ * profiling session is created once and bound to every invocation, see {@link #bind(ReflectiveInvocationContext)}.
+ */
+final class MethodInvoker {
+
+    private final Method method;
+    private Object target;
+    private Object[] arguments;
+    private boolean isBound;
+
+    MethodInvoker(ReflectiveInvocationContext<Method> invocationContext) {
+        this(invocationContext.getExecutable(), invocationContext.getTarget().orElse(null),
+                invocationContext.getArguments().toArray());
+    }
+
+    MethodInvoker(Method method, Object target, Object[] arguments) {
+        this.method = method;
+        this.target = target;
+        this.arguments = arguments;
+        this.isBound = true;
+        this.method.setAccessible(true);
+    }
+
+    /**
+     * Creates an invoker that is bound to an invocation later.
+     */
+    MethodInvoker(Method method) {
+        this(method, null, new Object[0]);
+        this.isBound = false;
+    }
+
+    /**
+     * Binds the invoker to the test instance and the arguments of an invocation. The arguments are copied only
+     * if they differ from those of the previous invocation, so that binding a repeated invocation does not allocate.
+     *
+     * @param invocationContext The context of the invocation.
+     * @return This invoker.
+     */
+    MethodInvoker bind(ReflectiveInvocationContext<Method> invocationContext) {
+        target = invocationContext.getTarget().orElse(null);
+        List<Object> current = invocationContext.getArguments();
+        if (!isBound || !isSame(current)) {
+            arguments = current.toArray();
+            isBound = true;
+        }
+        return this;
+    }
+
+    private boolean isSame(List<Object> current) {
+        if (current.size() != arguments.length) {
+            return false;
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            if (current.get(i) != arguments[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void invoke() throws Throwable {
+        try {
+            method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.vkn.profile.internal;
+
+/**
+ * A {@link Profiler} that records nothing. Used when no profiler backend is available,
+ * so that latency and allocation measurements still work.
+ */
+class NoOpProfiler implements Profiler {
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.vkn.profile.internal;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stacks of a JFR recording that were sampled during {@link OutlierWindows}, aggregated in the
+ * collapsed stack format ({@code frame;frame;frame weight}, root first) understood by flame graph tools.
+ * CPU stacks are weighted by samples, allocation stacks by bytes and lock stacks by nanoseconds blocked.
+ */
+final class OutlierStacks {
+
+    private final Map<String, Long> cpu = new HashMap<>();
+    private final Map<String, Long> alloc = new HashMap<>();
+    private final Map<String, Long> lock = new HashMap<>();
+
+    private OutlierStacks() {
+    }
+
+    /**
+     * Streams the recording and keeps the events of the thread of the windows that fall into a window.
+     *
+     * @param recording The JFR file.
+     * @param windows   The outlier windows.
+     * @return The outlier stacks.
+     */
+    static OutlierStacks of(Path recording, OutlierWindows windows) {
+        OutlierStacks stacks = new OutlierStacks();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                Map<String, Long> target = stacks.target(event);
+                if (target != null && isOnThread(event, windows.threadId()) && windows.contains(epochNanos(event.getStartTime()))) {
+                    String stack = collapse(event.getStackTrace());
+                    if (stack != null) {
+                        target.merge(stack, weight(event), Long::sum);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stacks;
+    }
+
+    private Map<String, Long> target(RecordedEvent event) {
+        return switch (event.getEventType().getName()) {
+            case "jdk.ExecutionSample", "jdk.NativeMethodSample" -> cpu;
+            case "jdk.ObjectAllocationInNewTLAB", "jdk.ObjectAllocationOutsideTLAB", "jdk.ObjectAllocationSample" -> alloc;
+            case "jdk.JavaMonitorEnter", "jdk.ThreadPark" -> lock;
+            default -> null;
+        };
+    }
+
+    private static long weight(RecordedEvent event) {
+        return switch (event.getEventType().getName()) {
+            // async-profiler reports sampled allocations with the TLAB size as weight
+            case "jdk.ObjectAllocationInNewTLAB" -> event.getLong("tlabSize");
+            case "jdk.ObjectAllocationOutsideTLAB" -> event.getLong("allocationSize");
+            case "jdk.ObjectAllocationSample" -> event.getLong("weight");
+            case "jdk.JavaMonitorEnter", "jdk.ThreadPark" -> event.getDuration().toNanos();
+            default -> 1;
+        };
+    }
+
+    private static boolean isOnThread(RecordedEvent event, long threadId) {
+        RecordedThread thread = event.hasField("sampledThread") ? event.getThread("sampledThread") : event.getThread();
+        return thread != null && thread.getJavaThreadId() == threadId;
+    }
+
+    private static long epochNanos(Instant instant) {
+        return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+
+    private static String collapse(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return null;
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        StringBuilder sb = new StringBuilder();
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            if (!sb.isEmpty()) {
+                sb.append(';');
+            }
+            sb.append(JfrSummary.frameName(frames.get(i)));
+        }
+        return sb.toString();
+    }
+
+    long cpuSamples() {
+        return cpu.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    Map<String, Long> cpu() {
+        return cpu;
+    }
+
+    Map<String, Long> alloc() {
+        return alloc;
+    }
+
+    Map<String, Long> lock() {
+        return lock;
+    }
+
+    /**
+     * Writes one collapsed stack file per non-empty event kind next to the profiling output.
+     *
+     * @param filePath The path of the profiling output, without suffix and extension.
+     * @return The written files.
+     */
+    List<Path> write(String filePath) {
+        List<Path> written = new ArrayList<>();
+        write(Path.of(filePath + "_outliers_cpu.collapsed"), cpu, written);
+        write(Path.of(filePath + "_outliers_alloc.collapsed"), alloc, written);
+        write(Path.of(filePath + "_outliers_lock.collapsed"), lock, written);
+        return written;
+    }
+
+    private static void write(Path file, Map<String, Long> stacks, List<Path> written) {
+        if (stacks.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+                writer.write(entry.getKey() + " " + entry.getValue());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written.add(file);
+    }
+}
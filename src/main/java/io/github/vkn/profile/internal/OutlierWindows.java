@@ -0,0 +1,177 @@
+package io.github.vkn.profile.internal;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time windows of slow invocations of a single thread. All storage is allocated up front, so
+ * {@link #record(long, long)} never allocates and can be called from the profiled hot path.
+ * <p>
+ * With a percentile instead of a fixed threshold, the running percentile of the {@link LatencyHistogram}
+ * is refreshed every {@value #REFRESH_INTERVAL} invocations and every slower invocation is remembered.
+ * Once profiling is done, {@link #finish()} keeps only the windows above the final percentile. If the
+ * capacity is exhausted, the windows of the fastest outliers are discarded.
+ */
+final class OutlierWindows {
+    static final int REFRESH_INTERVAL = 256;
+
+    private final LatencyHistogram histogram;
+    private final double percentile;
+    private final long fixedThreshold;
+    private final long[] starts;
+    private final long[] durations;
+    private final long[] sorted;
+    private final long epochOffsetNanos;
+    private final long threadId;
+    private long threshold;
+    private int size;
+    private long recorded;
+    private long dropped;
+
+    /**
+     * @param histogram      The histogram of all invocations, used for the running percentile.
+     * @param percentile     The percentile that makes an invocation an outlier.
+     * @param fixedThreshold A fixed threshold in nanoseconds, or a negative value to use the percentile.
+     * @param capacity       The maximum number of windows.
+     */
+    OutlierWindows(LatencyHistogram histogram, double percentile, long fixedThreshold, int capacity) {
+        this.histogram = histogram;
+        this.percentile = percentile;
+        this.fixedThreshold = fixedThreshold;
+        this.threshold = Math.max(0, fixedThreshold);
+        this.starts = new long[Math.max(1, capacity)];
+        this.durations = new long[Math.max(1, capacity)];
+        this.sorted = new long[Math.max(1, capacity)];
+        this.threadId = Thread.currentThread().getId();
+        Instant now = Instant.now();
+        this.epochOffsetNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano() - System.nanoTime();
+    }
+
+    /**
+     * Remembers the window of an invocation if it is slow. Must be called after the duration was
+     * recorded by the histogram.
+     *
+     * @param start    The start of the invocation from {@link System#nanoTime()}.
+     * @param duration The duration of the invocation in nanoseconds.
+     */
+    void record(long start, long duration) {
+        if (fixedThreshold < 0 && ++recorded % REFRESH_INTERVAL == 0) {
+            threshold = histogram.percentile(percentile);
+        }
+        if (duration <= threshold) {
+            return;
+        }
+        if (size == starts.length) {
+            compact();
+            if (size == starts.length) {
+                dropped++;
+                return;
+            }
+        }
+        starts[size] = start;
+        durations[size] = duration;
+        size++;
+    }
+
+    /**
+     * Keeps only the windows above the final threshold.
+     */
+    void finish() {
+        if (fixedThreshold < 0) {
+            threshold = histogram.percentile(percentile);
+        }
+        removeFastest(threshold);
+    }
+
+    private void compact() {
+        if (fixedThreshold < 0) {
+            threshold = histogram.percentile(percentile);
+        }
+        removeFastest(threshold);
+        if (size == starts.length) {
+            dropped += removeFasterHalf();
+        }
+    }
+
+    /**
+     * Removes exactly the faster half of the windows, also if their durations are tied, and raises the
+     * threshold to just below the slowest removed one.
+     */
+    private int removeFasterHalf() {
+        System.arraycopy(durations, 0, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+        long median = sorted[size / 2];
+        int tiesToRemove = size / 2;
+        for (int i = 0; i < size / 2; i++) {
+            if (sorted[i] < median) {
+                tiesToRemove--;
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (durations[i] > median || durations[i] == median && tiesToRemove-- <= 0) {
+                starts[kept] = starts[i];
+                durations[kept] = durations[i];
+                kept++;
+            }
+        }
+        threshold = Math.max(threshold, median - 1);
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    private int removeFastest(long limit) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (durations[i] > limit) {
+                starts[kept] = starts[i];
+                durations[kept] = durations[i];
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * @param epochNanos A timestamp in nanoseconds since the epoch, e.g. of a JFR event.
+     * @return {@code true} if the timestamp falls into one of the windows.
+     */
+    boolean contains(long epochNanos) {
+        long nanoTime = epochNanos - epochOffsetNanos;
+        // windows are recorded in order of their start
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= nanoTime) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && nanoTime <= starts[high] + durations[high];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long threshold() {
+        return threshold;
+    }
+
+    long threadId() {
+        return threadId;
+    }
+
+    /**
+     * @return The number of outliers that were discarded because the capacity was exhausted.
+     */
+    long dropped() {
+        return dropped;
+    }
+}
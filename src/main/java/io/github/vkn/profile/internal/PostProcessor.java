@@ -0,0 +1,106 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the post-processing of profiling output that does not decide the outcome of a test, such as
+ * summarizing JFR recordings and writing collapsed stacks, on a background thread instead of the JUnit thread.
+ * <p>
+ * A single low-priority thread keeps the interference with the measurements of the following tests small.
+ * The queue is bounded: if it is full, the JUnit thread runs the task itself, which throttles a run that
+ * produces output faster than it can be processed. The post-processor is registered in the root store, and
+ * {@link #close()} is the completion barrier that drains the queue at the end of the run; a shutdown hook
+ * drains it as well if the run ends without closing the store. A failing task is logged and does not fail
+ * the run, its test has already finished.
+ */
+class PostProcessor implements ExtensionContext.Store.CloseableResource {
+    private static final Logger LOGGER = Logger.getLogger(PostProcessor.class.getName());
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    static final int QUEUE_CAPACITY = 64;
+    private static final long DRAIN_TIMEOUT_MINUTES = 30;
+    private final ThreadPoolExecutor executor;
+    private final Thread shutdownHook = new Thread(this::drain, "profiling-post-processor-shutdown");
+
+    PostProcessor() {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                task -> {
+                    Thread thread = new Thread(task, "profiling-post-processor-" + THREADS.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                (task, rejecting) -> task.run());
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues a task, or runs it on the calling thread if the queue is full or the post-processor has been closed.
+     *
+     * @param description What the task does, for the log if it fails.
+     * @param task        The task.
+     */
+    void submit(String description, Runnable task) {
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                LOGGER.log(Level.WARNING, "Post-processing failed: " + description, e);
+            }
+        };
+        executor.execute(guarded);
+    }
+
+    /**
+     * Queues a task that computes a result, or runs it on the calling thread like {@link #submit(String, Runnable)}.
+     *
+     * @param description What the task does, for the log if it fails.
+     * @param task        The task.
+     * @return The result, {@code null} if the task failed.
+     */
+    <T> Future<T> compute(String description, Supplier<T> task) {
+        FutureTask<T> future = new FutureTask<>(() -> {
+            try {
+                return task.get();
+            } catch (RuntimeException | Error e) {
+                LOGGER.log(Level.WARNING, "Post-processing failed: " + description, e);
+                return null;
+            }
+        });
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Waits until every queued task has been processed.
+     */
+    @Override
+    public void close() {
+        drain();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is shutting down, the hook drains the queue
+        }
+    }
+
+    private void drain() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(DRAIN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                LOGGER.warning("Post-processing did not finish within %d minutes".formatted(DRAIN_TIMEOUT_MINUTES));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -12,6 +12,7 @@ class ProfiledTestTemplateInvocationContext implements TestTemplateInvocationCon
 
     private final int repeat;
     private final int warmUp;
+    private final boolean adaptive;
 
     /**
      * Constructs a new {@link ProfiledTestTemplateInvocationContext} with the specified
@@ -21,8 +22,22 @@ class ProfiledTestTemplateInvocationContext implements TestTemplateInvocationCon
      * @param warmUp The number of initial warm-up invocations before the actual test invocations begin.
      */
     ProfiledTestTemplateInvocationContext(int repeat, int warmUp) {
+        this(repeat, warmUp, false);
+    }
+
+    /**
+     * Constructs a new {@link ProfiledTestTemplateInvocationContext} for an adaptive warm-up. While the
+     * warm-up is running, {@code warmUp} is the maximum number of warm-up invocations; once it has
+     * finished, {@code warmUp} is the number of warm-up invocations that were chosen.
+     *
+     * @param repeat   The number of times the test should be repeated.
+     * @param warmUp   The maximum or the chosen number of warm-up invocations.
+     * @param adaptive Whether the warm-up length is chosen adaptively.
+     */
+    ProfiledTestTemplateInvocationContext(int repeat, int warmUp, boolean adaptive) {
         this.repeat = repeat;
         this.warmUp = warmUp;
+        this.adaptive = adaptive;
     }
 
     /**
@@ -35,7 +50,12 @@ class ProfiledTestTemplateInvocationContext implements TestTemplateInvocationCon
     @Override
     public String getDisplayName(int invocationIndex) {
         if (invocationIndex <= warmUp) {
-            return "Warmup invocation %d/%d".formatted(invocationIndex, warmUp);
+            return (adaptive ? "Adaptive warmup invocation %d/max %d" : "Warmup invocation %d/%d")
+                    .formatted(invocationIndex, warmUp);
+        }
+        if (adaptive) {
+            return "Profiling invocation %d/%d after %d warmup invocations"
+                    .formatted(invocationIndex - warmUp, repeat, warmUp);
         }
         return "Profiling invocation %d/%d".formatted(invocationIndex - warmUp, repeat);
     }
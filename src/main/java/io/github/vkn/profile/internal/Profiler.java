@@ -1,5 +1,8 @@
 package io.github.vkn.profile.internal;
 
+import java.nio.file.Path;
+import java.util.Optional;
+
 /**
  * Interface defining the operations for starting and stopping a profiler.
  * Implementations of this interface can encapsulate different profiling tools or mechanisms.
@@ -14,4 +17,22 @@ interface Profiler {
      * Stops the profiler and captures the collected profiling data.
      */
     void stop();
+
+    /**
+     * Returns the JFR recording written by {@link #stop()}, if the profiler produces one.
+     *
+     * @return The path of the JFR file, or an empty optional for other output types.
+     */
+    default Optional<Path> recording() {
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the file written by {@link #stop()}, a JFR recording or a flame graph.
+     *
+     * @return The path of the profiling output, or an empty optional if the profiler writes none.
+     */
+    default Optional<Path> output() {
+        return recording();
+    }
 }
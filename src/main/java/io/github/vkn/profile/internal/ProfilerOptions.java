@@ -0,0 +1,96 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.CStack;
+import io.github.vkn.profile.Sampling;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The sampling options of a profiled test, resolved from its {@link Sampling} annotation.
+ * Negative values keep the profiler defaults.
+ *
+ * @param intervalNanos The interval of the CPU event.
+ * @param wallNanos     The interval of wall-clock sampling, negative for no wall-clock sampling.
+ * @param lockNanos     The lock threshold.
+ * @param allocBytes    The allocation interval.
+ * @param stackDepth    The maximum Java stack depth.
+ * @param cstack        The native stack mode.
+ * @param threads       Whether the profile is split by thread.
+ * @param itimer        Whether the CPU event is replaced by {@code itimer}.
+ * @param nativeMemory  Whether the CPU event is replaced by {@code malloc}.
+ * @param filterThreads Whether only the test thread and the threads of the {@link ThreadFilter} are sampled.
+ */
+record ProfilerOptions(long intervalNanos, long wallNanos, long lockNanos, long allocBytes, int stackDepth,
+                       CStack cstack, boolean threads, boolean itimer, boolean nativeMemory,
+                       boolean filterThreads) {
+
+    static final ProfilerOptions DEFAULT = new ProfilerOptions(-1, -1, -1, -1, -1, CStack.DEFAULT, false, false, false,
+            false);
+
+    /**
+     * @param sampling The annotation, may be {@code null}.
+     * @return The options of the annotation, or {@link #DEFAULT}.
+     */
+    static ProfilerOptions of(Sampling sampling) {
+        if (sampling == null) {
+            return DEFAULT;
+        }
+        return new ProfilerOptions(toNanos(sampling, sampling.interval()), toNanos(sampling, sampling.wall()),
+                toNanos(sampling, sampling.lock()), sampling.alloc(), sampling.stackDepth(), sampling.cstack(),
+                sampling.threads(), sampling.itimer(), sampling.nativeMemory(), sampling.filterThreads());
+    }
+
+    private static long toNanos(Sampling sampling, long value) {
+        return value < 0 ? -1 : sampling.unit().toNanos(value);
+    }
+
+    /**
+     * @param events The comma-separated events of the test.
+     * @return The events with the CPU event replaced by {@code itimer} or {@code malloc} if requested.
+     */
+    String events(String events) {
+        if (!itimer && !nativeMemory) {
+            return events;
+        }
+        String replacement = nativeMemory ? "malloc" : "itimer";
+        return Arrays.stream(events.split(","))
+                .map(event -> "cpu".equals(event.trim()) ? replacement : event)
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * @return The options as arguments of the async-profiler {@code start} command, each with a leading comma.
+     */
+    String asyncProfilerArguments() {
+        StringBuilder sb = new StringBuilder();
+        if (intervalNanos > 0) {
+            sb.append(",interval=").append(intervalNanos);
+        }
+        if (wallNanos == 0) {
+            sb.append(",wall");
+        } else if (wallNanos > 0) {
+            sb.append(",wall=").append(wallNanos);
+        }
+        if (lockNanos >= 0) {
+            sb.append(",lock=").append(lockNanos);
+        }
+        if (allocBytes >= 0) {
+            sb.append(",alloc=").append(allocBytes);
+        }
+        if (stackDepth > 0) {
+            sb.append(",jstackdepth=").append(stackDepth);
+        }
+        if (cstack != CStack.DEFAULT) {
+            sb.append(",cstack=").append(cstack.name().toLowerCase(Locale.ROOT));
+        }
+        if (threads) {
+            sb.append(",threads");
+        }
+        if (filterThreads) {
+            sb.append(",filter");
+        }
+        return sb.toString();
+    }
+}
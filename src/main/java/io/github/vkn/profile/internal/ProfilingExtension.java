@@ -1,19 +1,47 @@
 package io.github.vkn.profile.internal;
 
+import io.github.vkn.profile.AdaptiveWarmup;
+import io.github.vkn.profile.Backend;
+import io.github.vkn.profile.Baseline;
+import io.github.vkn.profile.Differential;
+import io.github.vkn.profile.Fork;
+import io.github.vkn.profile.HeapGrowth;
+import io.github.vkn.profile.PerformanceBudget;
+import io.github.vkn.profile.ProfiledComparison;
 import io.github.vkn.profile.ProfiledTest;
+import io.github.vkn.profile.ProfilingUnit;
+import io.github.vkn.profile.Sampling;
+import io.github.vkn.profile.SessionScope;
+import io.github.vkn.profile.TailCapture;
 import io.github.vkn.profile.Type;
 import org.junit.jupiter.api.extension.*;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.junit.jupiter.api.parallel.ResourceAccessMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.ReflectionSupport;
+import jdk.jfr.consumer.RecordedEvent;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
@@ -24,12 +52,35 @@ import java.util.stream.Stream;
  * warm-up iterations, and capturing profiling data according to the specified
  * configuration.
  */
-public class ProfilingExtension implements TestTemplateInvocationContextProvider, BeforeEachCallback, AfterEachCallback {
+public class ProfilingExtension implements TestTemplateInvocationContextProvider, BeforeEachCallback, AfterEachCallback,
+        AfterAllCallback, InvocationInterceptor {
     private static final Logger LOGGER = Logger.getLogger(ProfilingExtension.class.getName());
     public static final String _KEY_PROFILER = ProfilingExtension.class.getName() + "syncProfilerKey";
     public static final String _KEY_COUNT = ProfilingExtension.class.getName() + "syncProfilerKeyCnt";
     public static final String _KEY_WARMUP = ProfilingExtension.class.getName() + "syncProfilerKeyWarmUpCnt";
-    private ExtensionContext.Namespace namespace;
+    public static final String _KEY_HISTOGRAM = ProfilingExtension.class.getName() + "syncProfilerKeyHistogram";
+    public static final String _KEY_FILE = ProfilingExtension.class.getName() + "syncProfilerKeyFile";
+    public static final String _KEY_ALLOCATION = ProfilingExtension.class.getName() + "syncProfilerKeyAllocation";
+    public static final String _KEY_SUMMARY = ProfilingExtension.class.getName() + "syncProfilerKeySummary";
+    public static final String _KEY_THROUGHPUT = ProfilingExtension.class.getName() + "syncProfilerKeyThroughput";
+    public static final String _KEY_LOAD = ProfilingExtension.class.getName() + "syncProfilerKeyLoad";
+    public static final String _KEY_STEADY_STATE = ProfilingExtension.class.getName() + "syncProfilerKeySteadyState";
+    public static final String _KEY_FORK = ProfilingExtension.class.getName() + "syncProfilerKeyFork";
+    public static final String _KEY_SESSION = ProfilingExtension.class.getName() + "syncProfilerKeySession";
+    public static final String _KEY_SWEEP = ProfilingExtension.class.getName() + "syncProfilerKeySweep";
+    public static final String _KEY_REPORT = ProfilingExtension.class.getName() + "syncProfilerKeyReport";
+    public static final String _KEY_POST_PROCESSOR = ProfilingExtension.class.getName() + "syncProfilerKeyPostProcessor";
+    public static final String _KEY_CLASS_SESSION = ProfilingExtension.class.getName() + "syncProfilerKeyClassSession";
+    public static final String _KEY_COMPARISON = ProfilingExtension.class.getName() + "syncProfilerKeyComparison";
+    public static final String _KEY_DEFERRED_ENTRIES = ProfilingExtension.class.getName() + "syncProfilerKeyDeferredEntries";
+    private static final ExtensionContext.Namespace RUN_NAMESPACE = ExtensionContext.Namespace.create(ProfilingExtension.class);
+    private static final TestTemplateInvocationContext DISABLED_CONTEXT = new TestTemplateInvocationContext() {
+        @Override
+        public String getDisplayName(int invocationIndex) {
+            return "Profiling disabled";
+        }
+    };
+    private final Map<Method, ExtensionContext.Namespace> namespaces = new ConcurrentHashMap<>();
 
 
     @Override
@@ -39,72 +90,985 @@ public class ProfilingExtension implements TestTemplateInvocationContextProvider
 
     @Override
     public void beforeEach(ExtensionContext context) {
-        AtomicInteger warmUpCount = getStore(context).get(_KEY_WARMUP, AtomicInteger.class);
-        if(warmUpCount == null) {
+        ProfilingSession session = getSession(context);
+        if (session == null) {
             // method not profiled
             return;
         }
-        var warmUp = getWarmUpCount(context);
-        if (warmUpCount.getAndIncrement() < warmUp) {
-            LOGGER.log(Level.FINE, "Warm-up iteration %d".formatted(warmUpCount.get()));
+        ClassSession classSession = session.classSession();
+        if (session.warmUpCount().getAndIncrement() < session.warmUpInvocations()) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Warm-up iteration %d".formatted(session.warmUpCount().get()));
+            }
+            if (classSession != null) {
+                // the class recording covers the warm-up, the markers tell it apart
+                classSession.start();
+                classSession.begin(session.testName(), InvocationEvent.WARMUP, session.warmUpCount().get());
+            }
             return;
         }
-        Profiler profiler = getStore(context).get(_KEY_PROFILER, Profiler.class);
-        AtomicInteger profilingCount = getStore(context).get(_KEY_COUNT, AtomicInteger.class);
-        profilingCount.getAndIncrement();
-        profiler.start();
+        int profilingCount = session.profilingCount().incrementAndGet();
+        session.profiler().start();
+        if (classSession != null) {
+            classSession.begin(session.testName(), InvocationEvent.PROFILING, profilingCount);
+        }
 
     }
 
     @Override
     public void afterEach(ExtensionContext context) {
-        int warmUp = getWarmUpCount(context);
-        AtomicInteger profilingCount = getStore(context).get(_KEY_COUNT, AtomicInteger.class);
-        AtomicInteger warmUpCount = getStore(context).get(_KEY_WARMUP, AtomicInteger.class);
-        if(profilingCount == null) {
+        ProfilingSession session = getSession(context);
+        if (session == null) {
             // method not profiled
             return;
         }
-        if (warmUpCount.get() < warmUp+1) {
+        if (session.classSession() != null) {
+            session.classSession().end();
+        }
+        if (session.isWarmUp()) {
             return;
         }
-        Profiler profiler = getStore(context).get(_KEY_PROFILER, Profiler.class);
+        int profilingCount = session.profilingCount().get();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Profiling iteration %s".formatted(profilingCount));
+        }
+        if (session.heap() != null) {
+            session.heap().afterInvocation(profilingCount);
+        }
+        if (profilingCount >= session.repeat()) {
+            session.profiler().stop();
+            reportLatency(context, session);
+            JfrSummary summary = summarize(context, session);
+            captureOutliers(context, session);
+            diff(context, session);
+            List<String> heapGrowth = checkHeapGrowth(context, session);
+            if (ForkedJvm.isFork()) {
+                // budgets and baselines are checked by the test JVM on the results of all forks
+                writeForkResult(session);
+                return;
+            }
+            recordRun(context, session);
+            List<String> failures = new ArrayList<>(heapGrowth);
+            failures.addAll(checkBaseline(context, session, summary));
+            failures.addAll(checkBudget(context, session, summary));
+            SizeSweep sweep = getStore(context).get(_KEY_SWEEP, SizeSweep.class);
+            if (sweep != null) {
+                failures.addAll(recordSweep(context, sweep, session));
+            }
+            if (!failures.isEmpty()) {
+                throw new AssertionError("Performance check of %s failed: %s"
+                        .formatted(context.getRequiredTestMethod().getName(), String.join(", ", failures)));
+            }
+        }
+    }
+
+    /**
+     * Times every profiling invocation of the test method with {@link System#nanoTime()} and
+     * records the duration into the preallocated {@link LatencyHistogram}. Warm-up invocations
+     * are not recorded. In the throughput mode, the method is invoked repeatedly until the end
+     * of the warm-up or measurement window. With several {@link ProfiledTest#threads()}, the
+     * profiling invocations are run by {@link ConcurrentLoad}. With {@link Fork}, each invocation
+     * runs the whole test in a {@link ForkedJvm} and adds its results. A {@link ProfiledComparison} runs
+     * all its rounds within its single invocation.
+     */
+    @Override
+    public void interceptTestTemplateMethod(Invocation<Void> invocation,
+                                            ReflectiveInvocationContext<Method> invocationContext,
+                                            ExtensionContext extensionContext) throws Throwable {
+        ProfiledComparison comparison = getStore(extensionContext).get(_KEY_COMPARISON, ProfiledComparison.class);
+        if (comparison != null) {
+            invocation.skip();
+            compare(comparison, invocationContext, extensionContext);
+            return;
+        }
+        ProfilingSession session = getSession(extensionContext);
+        if (session == null) {
+            invocation.proceed();
+            return;
+        }
+        LatencyHistogram histogram = session.histogram();
+        AllocationCounter allocations = session.allocations();
+        if (session.fork() != null) {
+            invocation.skip();
+            int index = session.profilingCount().get();
+            Path resultFile = Path.of(session.filePath() + "_fork" + index + ".result");
+            session.fork().run(invocationContext.getExecutable(), index, resultFile)
+                    .addTo(histogram, allocations, session.telemetry());
+            return;
+        }
+        boolean isWarmUp = session.isWarmUp();
+        if (session.load() != null && !isWarmUp) {
+            session.load().run(invocation, session.invoker().bind(invocationContext), allocations);
+            return;
+        }
+        if (session.throughput() != null) {
+            if (isWarmUp) {
+                warmUpFor(invocation, session.invoker().bind(invocationContext), session.warmUpNanos(), allocations);
+            } else {
+                measureFor(invocation, session.invoker().bind(invocationContext), session.throughput(), histogram,
+                        allocations);
+            }
+            return;
+        }
+        if (isWarmUp) {
+            warmUp(invocation, invocationContext, session);
+            return;
+        }
+        if (allocations != null) {
+            allocations.begin();
+        }
+        long start = System.nanoTime();
+        try {
+            invocation.proceed();
+        } finally {
+            long duration = System.nanoTime() - start;
+            histogram.record(duration);
+            if (allocations != null) {
+                allocations.endProceed();
+            }
+            if (session.outliers() != null) {
+                session.outliers().record(start, duration);
+            }
+        }
+    }
+
+    /**
+     * Runs a warm-up invocation, timed for the {@link SteadyStateDetector}. When allocations are measured, the test
+     * method is also invoked directly once, to calibrate the allocations of the JUnit invocation chain.
+     */
+    private static void warmUp(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+                               ProfilingSession session) throws Throwable {
+        AllocationCounter allocations = session.allocations();
+        long allocated = allocations == null ? 0 : AllocationCounter.currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        invocation.proceed();
+        long duration = System.nanoTime() - start;
+        if (allocations != null) {
+            calibrate(allocations, AllocationCounter.currentThreadAllocatedBytes() - allocated,
+                    session.invoker().bind(invocationContext));
+        }
+        if (session.steadyState() != null) {
+            session.steadyState().record(duration);
+        }
+    }
+
+    private static void calibrate(AllocationCounter allocations, long chainBytes, MethodInvoker invoker)
+            throws Throwable {
+        long allocated = AllocationCounter.currentThreadAllocatedBytes();
+        invoker.invoke();
+        allocations.calibrate(chainBytes, AllocationCounter.currentThreadAllocatedBytes() - allocated);
+    }
+
+    private static void warmUpFor(Invocation<Void> invocation, MethodInvoker invoker, long warmUpNanos,
+                                  AllocationCounter allocations) throws Throwable {
+        long end = System.nanoTime() + warmUpNanos;
+        long allocated = allocations == null ? 0 : AllocationCounter.currentThreadAllocatedBytes();
+        invocation.proceed();
+        if (allocations != null) {
+            calibrate(allocations, AllocationCounter.currentThreadAllocatedBytes() - allocated, invoker);
+        }
+        while (System.nanoTime() < end) {
+            invoker.invoke();
+        }
+    }
+
+    private static void measureFor(Invocation<Void> invocation, MethodInvoker invoker, Throughput throughput,
+                                   LatencyHistogram histogram, AllocationCounter allocations) throws Throwable {
+        long windowStart = System.nanoTime();
+        long end = windowStart + throughput.durationNanos();
+        boolean isFirst = true;
+        long now = windowStart;
+        while (isFirst || now < end) {
+            if (allocations != null) {
+                allocations.begin();
+            }
+            long start = System.nanoTime();
+            if (isFirst) {
+                invocation.proceed();
+            } else {
+                invoker.invoke();
+            }
+            now = System.nanoTime();
+            histogram.record(now - start);
+            if (allocations != null) {
+                if (isFirst) {
+                    allocations.endProceed();
+                } else {
+                    allocations.end();
+                }
+            }
+            isFirst = false;
+            throughput.record(now - windowStart);
+        }
+        throughput.end(now - windowStart);
+    }
+
+    /**
+     * Summarizes the JFR recording. The summary is part of the baseline and holds the lock contention checked by
+     * the {@link PerformanceBudget}, so with {@link Baseline} or a lock budget it is created on the JUnit thread and
+     * published as report entries; otherwise it is created by the {@link PostProcessor}, and its entries are published
+     * by the test class in {@link #afterAll(ExtensionContext)}. It is written next to the profiling output.
+     *
+     * @return The summary if it was created on the JUnit thread, otherwise {@code null}.
+     */
+    private JfrSummary summarize(ExtensionContext context, ProfilingSession session) {
+        int top = getAnnotation(context).map(ProfiledTest::top).orElse(0);
+        boolean checksLocks = BudgetCheck.hasLockLimits(context.getRequiredTestMethod().getAnnotation(PerformanceBudget.class));
+        if (checksLocks && !getProfilingEvents(context).contains("lock")) {
+            LOGGER.warning("The lock contention budget of %s needs the lock event".formatted(session.testName()));
+        }
+        Optional<Path> recording = session.profiler().recording().filter(Files::exists);
+        if (top <= 0 && !checksLocks || recording.isEmpty()) {
+            return null;
+        }
+        Predicate<RecordedEvent> isTestLock = JfrSummary.testLocks(testThreads(session));
+        if (!checksLocks && !context.getRequiredTestMethod().isAnnotationPresent(Baseline.class)) {
+            getDeferredReportEntries(context).add(getPostProcessor(context).compute("summary of " + recording.get(), () -> {
+                JfrSummary summary = JfrSummary.of(recording.get(), top, isTestLock);
+                writeSummary(summary, recording.get(), session.filePath(), session.histogram());
+                Map<String, String> entries = new LinkedHashMap<>();
+                entries.put("jfr.test", session.testName());
+                entries.putAll(summary.reportEntries());
+                entries.putAll(summary.contentionEntries(session.histogram()));
+                return entries;
+            }));
+            return null;
+        }
+        JfrSummary summary = JfrSummary.of(recording.get(), Math.max(top, 1), isTestLock);
+        getStore(context).put(_KEY_SUMMARY, summary);
+        writeSummary(summary, recording.get(), session.filePath(), session.histogram());
+        context.publishReportEntry(summary.reportEntries());
+        context.publishReportEntry(summary.contentionEntries(session.histogram()));
+        return summary;
+    }
+
+    /**
+     * @return The ids and names of the threads that ran the test: the JUnit thread, the threads of the concurrent
+     * load and the threads registered with {@link ThreadFilter}.
+     */
+    private static Map<Long, String> testThreads(ProfilingSession session) {
+        Map<Long, String> threads = new HashMap<>();
+        threads.put(Thread.currentThread().getId(), Thread.currentThread().getName());
+        for (Thread thread : ThreadFilter.threads()) {
+            threads.put(thread.getId(), thread.getName());
+        }
+        if (session.load() != null) {
+            threads.putAll(session.load().threads());
+        }
+        return threads;
+    }
+
+    /**
+     * Publishes the report entries that were computed in the background for the tests of the class.
+     */
+    @Override
+    public void afterAll(ExtensionContext context) throws InterruptedException {
+        DeferredReportEntries entries = context.getStore(RUN_NAMESPACE)
+                .remove(_KEY_DEFERRED_ENTRIES, DeferredReportEntries.class);
+        if (entries != null) {
+            entries.publish(context);
+        }
+    }
+
+    private static DeferredReportEntries getDeferredReportEntries(ExtensionContext context) {
+        return getTopLevelClassContext(context).getStore(RUN_NAMESPACE)
+                .getOrComputeIfAbsent(_KEY_DEFERRED_ENTRIES, key -> new DeferredReportEntries(), DeferredReportEntries.class);
+    }
+
+    private static void writeSummary(JfrSummary summary, Path recording, String filePath, LatencyHistogram histogram) {
+        String formatted = summary.format() + summary.formatContention(histogram);
+        LOGGER.info("Summary of %s:%n%s".formatted(recording.getFileName(), formatted));
+        try {
+            Files.writeString(Path.of(filePath + "_summary.txt"), formatted + System.lineSeparator());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the stacks sampled during the slow invocations as collapsed stacks next to the profiling output.
+     * The recording is filtered by the {@link PostProcessor}.
+     */
+    private void captureOutliers(ExtensionContext context, ProfilingSession session) {
+        OutlierWindows outliers = session.outliers();
+        Optional<Path> recording = session.profiler().recording().filter(Files::exists);
+        if (outliers == null || recording.isEmpty()) {
+            return;
+        }
+        outliers.finish();
+        context.publishReportEntry(Map.of(
+                "outliers.count", String.valueOf(outliers.size()),
+                "outliers.thresholdNanos", String.valueOf(outliers.threshold())));
+        String name = context.getRequiredTestMethod().getName();
+        getPostProcessor(context).submit("outliers of " + recording.get(), () -> {
+            OutlierStacks stacks = OutlierStacks.of(recording.get(), outliers);
+            List<Path> files = stacks.write(session.filePath());
+            LOGGER.info("Outliers of %s: %d invocations slower than %s (%d discarded), %d CPU samples written to %s"
+                    .formatted(name, outliers.size(), LatencyHistogram.formatNanos(outliers.threshold()),
+                            outliers.dropped(), stacks.cpuSamples(), files));
+        });
+    }
+
+    /**
+     * Writes the differential flame graph of {@link Type#COLLAPSED} output against the previous run, or against
+     * the test of {@link Differential}, if its output exists. The graph is created by the {@link PostProcessor}.
+     */
+    private void diff(ExtensionContext context, ProfilingSession session) {
+        Optional<Path> output = session.profiler().output()
+                .filter(DifferentialFlameGraph::isCollapsed)
+                .filter(Files::exists);
+        if (output.isEmpty()) {
+            return;
+        }
+        Differential differential = context.getRequiredTestMethod().getAnnotation(Differential.class);
+        Path previous = differential == null
+                ? DifferentialFlameGraph.previous(output.get())
+                : getDifferentialOutput(context, differential.value(), output.get());
+        if (!Files.exists(previous)) {
+            if (differential != null) {
+                LOGGER.warning("No profile of %s to compare against: %s".formatted(differential.value(), previous));
+            }
+            return;
+        }
+        submitDiff(context, previous, output.get(), Path.of(session.filePath() + "_diff.html"));
+    }
+
+    /**
+     * @return The output of the other test, named like the output of this test.
+     */
+    private Path getDifferentialOutput(ExtensionContext context, String test, Path output) {
+        Method method = context.getRequiredTestMethod();
+        String base = method.getDeclaringClass().getName() + "." + method.getName();
+        String other = test.contains(".") ? test : method.getDeclaringClass().getName() + "." + test;
+        return output.resolveSibling(other + output.getFileName().toString().substring(base.length()));
+    }
+
+    private static void submitDiff(ExtensionContext context, Path previous, Path current, Path diff) {
+        getPostProcessor(context).submit("differential flame graph of " + current, () -> {
+            DifferentialFlameGraph graph = DifferentialFlameGraph.of(previous, current);
+            graph.write(diff, "%s compared to %s".formatted(current.getFileName(), previous.getFileName()));
+            if (graph.truncated() > 0) {
+                LOGGER.warning("Differential flame graph %s is truncated, %d samples are attributed to parent frames"
+                        .formatted(diff, graph.truncated()));
+            }
+            LOGGER.info("Differential flame graph: %s".formatted(diff));
+        });
+    }
+
+    /**
+     * Fits the trend of the used heap of a test with {@link HeapGrowth} and writes it, with the classes that grew
+     * most, to {@code <test>_heap.txt}.
+     *
+     * @return The growth if it fails the test, otherwise empty.
+     */
+    private List<String> checkHeapGrowth(ExtensionContext context, ProfilingSession session) {
+        HeapSampler heap = session.heap();
+        HeapGrowth config = context.getRequiredTestMethod().getAnnotation(HeapGrowth.class);
+        if (heap == null || config == null) {
+            return List.of();
+        }
+        HeapTrend trend = heap.trend(config.alpha());
+        if (trend == null) {
+            LOGGER.warning("The heap growth of %s needs at least 3 heap samples, but %d were taken"
+                    .formatted(session.testName(), heap.samples()));
+            return List.of();
+        }
+        StringBuilder report = new StringBuilder(trend.format()).append(' ').append(heap.format());
+        heap.growingClasses(config.top()).forEach(line -> report.append(System.lineSeparator()).append(line));
+        LOGGER.info("Heap %s: %s".formatted(session.testName(), report));
+        context.publishReportEntry(trend.reportEntries());
+        try {
+            Files.writeString(Path.of(session.filePath() + "_heap.txt"), report + System.lineSeparator());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (!trend.grows(config.tolerance())) {
+            return List.of();
+        }
+        String growth = "heap grows by %.1fB/op, above the tolerance of %dB/op with %.0f%% confidence"
+                .formatted(trend.slope(), config.tolerance(), (1 - config.alpha()) * 100);
+        LOGGER.warning("Heap growth of %s: %s".formatted(session.testName(), growth));
+        return config.failOnGrowth() ? List.of(growth) : List.of();
+    }
+
+    private void writeForkResult(ProfilingSession session) {
+        try {
+            ForkResult.write(Path.of(System.getProperty(ForkedJvm.RESULT_PROPERTY)), session.histogram(),
+                    session.allocations(), session.telemetry());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends the results of the test to the run-wide {@link RunReport}, created by the first finished test.
+     */
+    private void recordRun(ExtensionContext context, ProfilingSession session) {
+        getRunReport(context).record(session.testName(),
+                getProfilingEvents(context), getProfilingType(context).name(), session.histogram(),
+                session.allocations(), session.profiler().output().orElse(Path.of(session.filePath() + "_latency.txt")));
+    }
+
+    private RunReport getRunReport(ExtensionContext context) {
+        return context.getRoot().getStore(RUN_NAMESPACE)
+                .getOrComputeIfAbsent(_KEY_REPORT, key -> new RunReport(outputDir(context)), RunReport.class);
+    }
+
+    /**
+     * Runs the warm-up and measured rounds of a {@link ProfiledComparison}, each invoking the baseline and the
+     * candidate once in a random order, then profiles each side separately for the same number of invocations.
+     * With profiling disabled, both sides are invoked once.
+     */
+    private void compare(ProfiledComparison config, ReflectiveInvocationContext<Method> invocationContext,
+                         ExtensionContext context) throws Throwable {
+        Class<?> testClass = invocationContext.getTargetClass();
+        Object target = invocationContext.getTarget().orElse(null);
+        MethodInvoker baseline = getComparedMethod(testClass, config.baseline(), target);
+        MethodInvoker candidate = getComparedMethod(testClass, config.candidate(), target);
+        if (!Configuration.isEnabled(context)) {
+            baseline.invoke();
+            candidate.invoke();
+            return;
+        }
+        if (config.rounds() < 2 || config.warmup() < 0) {
+            throw new ExtensionConfigurationException("A comparison needs at least 2 rounds and no negative warm-up");
+        }
+        SplittableRandom random = new SplittableRandom();
+        Comparison comparison = new Comparison(config.rounds());
+        for (int round = -config.warmup(); round < config.rounds(); round++) {
+            long baselineNanos;
+            long candidateNanos;
+            if (random.nextBoolean()) {
+                baselineNanos = time(baseline);
+                candidateNanos = time(candidate);
+            } else {
+                candidateNanos = time(candidate);
+                baselineNanos = time(baseline);
+            }
+            if (round >= 0) {
+                comparison.record(baselineNanos, candidateNanos);
+            }
+        }
+        String filePath = getFilePath(context);
+        Path baselineOutput = profileCompared(context, config, baseline, filePath + "_baseline", config.baseline());
+        Path candidateOutput = profileCompared(context, config, candidate, filePath + "_candidate", config.candidate());
+
+        String report = comparison.format(config.baseline(), config.candidate(), config.alpha());
+        Method method = context.getRequiredTestMethod();
+        String name = method.getName();
+        LOGGER.info("Comparison %s:%n%s".formatted(name, report));
+        context.publishReportEntry(comparison.reportEntries(config.alpha()));
+        Files.writeString(Path.of(filePath + "_comparison.txt"), report + System.lineSeparator());
+        String testName = method.getDeclaringClass().getName() + "." + name;
+        String events = Configuration.event(context).orElse(config.event());
+        String type = Configuration.type(context).orElse(config.type()).name();
+        getRunReport(context).record("%s(%s)".formatted(testName, config.baseline()), events, type,
+                comparison.baseline(), null, baselineOutput);
+        getRunReport(context).record("%s(%s)".formatted(testName, config.candidate()), events, type,
+                comparison.candidate(), null, candidateOutput);
+
+        if (!baselineOutput.equals(candidateOutput) && DifferentialFlameGraph.isCollapsed(baselineOutput)
+                && Files.exists(baselineOutput)
+                && Files.exists(candidateOutput)) {
+            submitDiff(context, baselineOutput, candidateOutput, Path.of(filePath + "_diff.html"));
+        }
+
+        double lower = comparison.confidenceInterval(config.alpha())[0];
+        if (lower < 1 + config.minSpeedup()) {
+            throw new AssertionError(("Performance check of %s failed: speedup %.3fx of %s over %s is not above %.3fx "
+                    + "with %.0f%% confidence, the lower bound is %.3fx").formatted(name, comparison.speedup(),
+                    config.candidate(), config.baseline(), 1 + config.minSpeedup(), (1 - config.alpha()) * 100, lower));
+        }
+    }
+
+    private static MethodInvoker getComparedMethod(Class<?> testClass, String name, Object target) {
+        Method method = ReflectionSupport.findMethod(testClass, name)
+                .orElseThrow(() -> new ExtensionConfigurationException("Compared method %s() not found in %s"
+                        .formatted(name, testClass.getName())));
+        return new MethodInvoker(method, target, new Object[0]);
+    }
+
+    private static long time(MethodInvoker invoker) throws Throwable {
+        long start = System.nanoTime();
+        invoker.invoke();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Profiles one side of a comparison for as many invocations as there were measured rounds. In a class session,
+     * the invocations are recorded into the recording of the class, marked with the name of the compared method.
+     *
+     * @return The profiling output, or the latency summary if the profiler writes no output.
+     */
+    private Path profileCompared(ExtensionContext context, ProfiledComparison config, MethodInvoker invoker,
+                                 String filePath, String side) throws Throwable {
+        Backend backend = Configuration.backend(context).orElse(config.backend());
+        Type type = Configuration.type(context).orElse(config.type());
+        String events = Configuration.event(context).orElse(config.event());
+        ProfilerOptions options = ProfilerOptions.of(context.getRequiredTestMethod().getAnnotation(Sampling.class));
+        ClassSession classSession = getClassSession(context, backend, type, events, options);
+        if (classSession != null) {
+            Method method = context.getRequiredTestMethod();
+            String test = method.getDeclaringClass().getName() + "." + method.getName();
+            classSession.start();
+            for (int i = 0; i < config.rounds(); i++) {
+                classSession.begin(test, side, i + 1);
+                try {
+                    invoker.invoke();
+                } finally {
+                    classSession.end();
+                }
+            }
+            return classSession.output().orElse(Path.of(getFilePath(context) + "_comparison.txt"));
+        }
+        Profiler profiler = getProfiler(backend, type, events, options, filePath);
+        ExclusiveProfiler exclusive = new ExclusiveProfiler(profiler);
+        exclusive.start();
+        try {
+            for (int i = 0; i < config.rounds(); i++) {
+                invoker.invoke();
+            }
+        } finally {
+            exclusive.stop();
+        }
+        return profiler.output().orElse(Path.of(getFilePath(context) + "_comparison.txt"));
+    }
+
+    private static PostProcessor getPostProcessor(ExtensionContext context) {
+        return context.getRoot().getStore(RUN_NAMESPACE)
+                .getOrComputeIfAbsent(_KEY_POST_PROCESSOR, key -> new PostProcessor(), PostProcessor.class);
+    }
+
+    private List<String> checkBudget(ExtensionContext context, ProfilingSession session, JfrSummary summary) {
+        PerformanceBudget budget = context.getRequiredTestMethod().getAnnotation(PerformanceBudget.class);
+        if (budget == null) {
+            return List.of();
+        }
+        List<String> violations = new ArrayList<>(BudgetCheck.violations(budget, session.histogram(), session.allocations()));
+        violations.addAll(BudgetCheck.violations(budget, session.telemetry()));
+        violations.addAll(BudgetCheck.violations(budget, summary, session.histogram()));
+        return violations;
+    }
+
+    /**
+     * Records the mean latency of the finished size. After the last size, fits and reports the complexity
+     * of the sweep and checks it against the budget.
+     */
+    private List<String> recordSweep(ExtensionContext context, SizeSweep sweep, ProfilingSession session) {
+        sweep.record(session.histogram().mean());
+        ComplexityFit fit = sweep.isComplete() ? sweep.fit() : null;
+        if (fit == null) {
+            return List.of();
+        }
+        String report = sweep.format() + "scaling=" + fit.format();
+        LOGGER.info("Scaling of %s:%n%s".formatted(context.getRequiredTestMethod().getName(), report));
+        context.publishReportEntry(fit.reportEntries());
+        try {
+            Files.writeString(Path.of(getStore(context).get(_KEY_FILE, String.class) + "_scaling.txt"),
+                    report + System.lineSeparator());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        PerformanceBudget budget = context.getRequiredTestMethod().getAnnotation(PerformanceBudget.class);
+        return budget == null ? List.of() : BudgetCheck.violations(budget, fit);
+    }
+
+    /**
+     * Compares the run against the stored baseline of the test. The first run of a test is stored as its baseline,
+     * which is replaced only when a run is accepted with {@link io.github.vkn.profile.ProfilingUnit#UPDATE_BASELINE_PROPERTY},
+     * so a regression keeps failing until it is fixed or accepted.
+     */
+    private List<String> checkBaseline(ExtensionContext context, ProfilingSession session, JfrSummary summary) {
+        Baseline config = context.getRequiredTestMethod().getAnnotation(Baseline.class);
+        if (config == null) {
+            return List.of();
+        }
+        BaselineEntry current = BaselineEntry.of(session.histogram(), session.allocations(), summary);
+        Method method = context.getRequiredTestMethod();
+        String methodName = session.label().isEmpty() ? method.getName() : "%s(%s)".formatted(method.getName(), session.label());
+        String key = BaselineStore.key(method.getDeclaringClass().getName(), methodName, getProfilingEvents(context));
+
+        List<String> regressions = new ArrayList<>();
+        boolean accept = Configuration.isBaselineUpdate(context);
+        getBaselineStore(outputDir(context)).update(key,
+                previous -> RegressionCheck.update(config, previous, current, accept, regressions));
+        if (regressions.isEmpty()) {
+            return List.of();
+        }
+        LOGGER.warning("Regression of %s: %s".formatted(key, String.join(", ", regressions)));
+        return config.failOnRegression() ? regressions : List.of();
+    }
+
+    BaselineStore getBaselineStore(Path dir) {
+        return new BaselineStore(dir.resolve("baseline.txt"));
+    }
 
-        LOGGER.log(Level.FINE, "Profiling iteration %s".formatted(profilingCount.get()));
-        if (profilingCount.get() >= getRepeatCount(context)) {
-            profiler.stop();
+    private void reportLatency(ExtensionContext context, ProfilingSession session) {
+        LatencyHistogram histogram = session.histogram();
+        ConcurrentLoad load = session.load();
+        if (load != null) {
+            load.merge();
+        }
+        AllocationCounter allocations = session.allocations();
+        String summary = histogram.format();
+        Map<String, String> entries = new HashMap<>();
+        histogram.summary().forEach((name, value) -> entries.put("latency." + name, String.valueOf(value)));
+        if (allocations != null) {
+            summary += " alloc=%.1fB/op maxAlloc=%dB".formatted(allocations.bytesPerInvocation(), allocations.max());
+            entries.put("alloc.bytesPerOp", "%.1f".formatted(allocations.bytesPerInvocation()));
+            entries.put("alloc.max", String.valueOf(allocations.max()));
+        }
+        Throughput throughput = session.throughput();
+        if (throughput != null) {
+            summary += " throughput=" + throughput.format();
+            entries.putAll(throughput.reportEntries());
+        }
+        if (load != null) {
+            summary += " " + load.format();
+            entries.putAll(load.reportEntries());
+        }
+        summary += " " + session.telemetry().format();
+        entries.putAll(session.telemetry().reportEntries());
+        String name = context.getRequiredTestMethod().getName();
+        LOGGER.info("Latency %s: %s".formatted(session.label().isEmpty() ? name : name + " " + session.label(), summary));
+        context.publishReportEntry(entries);
+        try {
+            Files.writeString(Path.of(session.filePath() + "_latency.txt"), summary + System.lineSeparator());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
     @Override
     public Stream<TestTemplateInvocationContext> provideTestTemplateInvocationContexts(ExtensionContext context) {
-        namespace = getNamespace(context);
+        int[] sizes = getAnnotation(context).map(ProfiledTest::sizes).orElse(new int[0]);
+        ProfiledComparison comparison = context.getRequiredTestMethod().getAnnotation(ProfiledComparison.class);
+        if (comparison != null) {
+            getStore(context).put(_KEY_COMPARISON, comparison);
+        }
+        if (comparison != null && Configuration.isEnabled(context)) {
+            return Stream.of(new TestTemplateInvocationContext() {
+                @Override
+                public String getDisplayName(int invocationIndex) {
+                    return "Comparison of %s and %s".formatted(comparison.baseline(), comparison.candidate());
+                }
+            });
+        }
+        if (!Configuration.isEnabled(context)) {
+            // no session: the callbacks treat the single invocation as a plain test
+            return Stream.of(sizes.length > 0 ? new SizeInvocationContext(sizes[0], 0, DISABLED_CONTEXT) : DISABLED_CONTEXT);
+        }
+        if (sizes.length > 0) {
+            return sweepInvocationContexts(context, sizes);
+        }
+        String filePath = getFilePath(context);
+        ProfilingSession session = newSession(context, filePath, "");
         ExtensionContext.Store store = getStore(context);
-        store.put(_KEY_WARMUP, new AtomicInteger());
-        store.put(_KEY_COUNT, new AtomicInteger());
+        store.put(_KEY_WARMUP, session.warmUpCount());
+        store.put(_KEY_COUNT, session.profilingCount());
+        store.put(_KEY_HISTOGRAM, session.histogram());
+        putIfPresent(store, _KEY_ALLOCATION, session.allocations());
+        putIfPresent(store, _KEY_THROUGHPUT, session.throughput());
+        putIfPresent(store, _KEY_LOAD, session.load());
+        putIfPresent(store, _KEY_STEADY_STATE, session.steadyState());
+        putIfPresent(store, _KEY_FORK, session.fork());
+        store.put(_KEY_FILE, filePath);
+        store.put(_KEY_PROFILER, session.profiler());
+        store.put(_KEY_SESSION, session);
 
+        if (session.fork() != null) {
+            // one invocation per fork, the test JVM does not profile, the forks do
+            TestTemplateInvocationContext ctx = getInvocationContext(session.repeat(), 0);
+            return Stream.generate(() -> ctx)
+                    .limit(session.repeat());
+        }
+        if (session.steadyState() != null) {
+            return adaptiveInvocationContexts(session.repeat(), session.steadyState());
+        }
+        int total = session.repeat() + session.warmUp();
+        TestTemplateInvocationContext ctx = getInvocationContext(session.repeat(), session.warmUp());
+        return Stream.generate(() -> ctx)
+                .limit(total);
+    }
+
+    /**
+     * Resolves the configuration of the template once and creates the state of a profiling session,
+     * so that the per-invocation callbacks neither reflect on annotations nor allocate.
+     *
+     * @param filePath The path of the profiling output, without suffix and extension.
+     * @param label    The input size of a sweep, otherwise empty.
+     */
+    private ProfilingSession newSession(ExtensionContext context, String filePath, String label) {
+        Fork fork = getForkingAnnotation(context);
+        Throughput throughput = null;
+        ConcurrentLoad load = null;
+        SteadyStateDetector steadyState = null;
+        OutlierWindows outliers = null;
+        HeapSampler heap = null;
+        ClassSession classSession = null;
+        LatencyHistogram histogram = new LatencyHistogram();
+        JvmTelemetry telemetry = new JvmTelemetry();
+        Profiler profiler;
+        if (fork != null) {
+            profiler = new ExclusiveProfiler(new NoOpProfiler());
+        } else {
+            if (isThroughputMode(context)) {
+                ProfiledTest annotation = getAnnotation(context).orElseThrow();
+                throughput = new Throughput(annotation.timeUnit().toNanos(annotation.measurementTime()));
+            }
+            int threads = getAnnotation(context).map(ProfiledTest::threads).orElse(1);
+            ProfilerOptions options = ProfilerOptions.of(context.getRequiredTestMethod().getAnnotation(Sampling.class));
+            if (threads > 1 && options.filterThreads() && getAnnotation(context).orElseThrow().virtualThreads()) {
+                LOGGER.warning("Virtual threads cannot be registered with the thread filter and are not sampled");
+            }
+            if (threads > 1) {
+                load = new ConcurrentLoad(threads, getAnnotation(context).orElseThrow().virtualThreads(),
+                        histogram, throughput);
+            }
+            AdaptiveWarmup adaptiveWarmup = context.getRequiredTestMethod().getAnnotation(AdaptiveWarmup.class);
+            if (adaptiveWarmup != null && !isThroughputMode(context)) {
+                steadyState = new SteadyStateDetector(adaptiveWarmup.cv(), adaptiveWarmup.window(), adaptiveWarmup.max());
+            }
+            TailCapture tailCapture = context.getRequiredTestMethod().getAnnotation(TailCapture.class);
+            if (tailCapture != null && isClassScope(context)) {
+                LOGGER.warning("Tail capture requires a recording per test and is ignored in the class session");
+            } else if (tailCapture != null && getProfilingType(context) != Type.JFR) {
+                LOGGER.warning("Tail capture requires Type.JFR and is ignored");
+            } else if (tailCapture != null && !isThroughputMode(context)) {
+                long threshold = tailCapture.threshold() < 0 ? -1 : tailCapture.unit().toNanos(tailCapture.threshold());
+                outliers = new OutlierWindows(histogram, tailCapture.percentile(), threshold, tailCapture.capacity());
+            }
+            HeapGrowth heapGrowth = context.getRequiredTestMethod().getAnnotation(HeapGrowth.class);
+            if (heapGrowth != null && isThroughputMode(context)) {
+                LOGGER.warning("Heap growth cannot be sampled in the throughput mode and is ignored");
+            } else if (heapGrowth != null) {
+                heap = new HeapSampler(heapGrowth.every(), getRepeatCount(context), heapGrowth.histogram());
+                if (heap.expectedSamples() < 3) {
+                    LOGGER.warning("The heap growth needs at least 3 heap samples, but %d invocations give %d"
+                            .formatted(getRepeatCount(context), heap.expectedSamples()));
+                }
+            }
+            classSession = getClassSession(context, getBackend(context), getProfilingType(context),
+                    getProfilingEvents(context), options);
+            if (classSession != null) {
+                // the class session is exclusive, the test shares it
+                profiler = new TelemetryProfiler(classSession.view(), telemetry);
+            } else {
+                LOGGER.info("File: %s".formatted(filePath));
+                profiler = new ExclusiveProfiler(new TelemetryProfiler(
+                        getProfiler(getBackend(context), getProfilingType(context), getProfilingEvents(context),
+                                options, filePath),
+                        telemetry));
+                keepPrevious(profiler);
+            }
+        }
+        long warmUpNanos = getAnnotation(context).map(a -> a.timeUnit().toNanos(a.warmupTime())).orElse(0L);
+        Method method = context.getRequiredTestMethod();
+        String testName = method.getDeclaringClass().getName() + "." + method.getName();
+        return new ProfilingSession(getRepeatCount(context), getWarmUpCount(context), warmUpNanos,
+                new AtomicInteger(), new AtomicInteger(), histogram,
+                measuresAllocations(context) ? new AllocationCounter() : null,
+                throughput, load, steadyState, fork == null ? null : new ForkedJvm(fork), profiler, telemetry, outliers,
+                heap, classSession, new MethodInvoker(method), filePath, label, label.isEmpty() ? testName : "%s(%s)".formatted(testName, label));
+    }
+
+    /**
+     * Renames the {@link Type#COLLAPSED} output of the previous run before it is overwritten, to compare against it.
+     */
+    private static void keepPrevious(Profiler profiler) {
+        Optional<Path> output = profiler.output().filter(DifferentialFlameGraph::isCollapsed).filter(Files::exists);
+        if (output.isPresent()) {
+            try {
+                Files.move(output.get(), DifferentialFlameGraph.previous(output.get()), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the recording of the class of the test if its session scope is {@link SessionScope#CLASS}. The first
+     * profiled test of the class creates it with its own settings, other than the type, which is always JFR.
+     *
+     * @return The class session, or {@code null} if every test is recorded separately.
+     * @throws ExtensionConfigurationException If tests run in parallel and the class is not serialized with the
+     *                                         profiled tests of other classes.
+     */
+    private ClassSession getClassSession(ExtensionContext context, Backend backend, Type type, String events,
+                                         ProfilerOptions options) {
+        if (!isClassScope(context)) {
+            return null;
+        }
+        ExtensionContext classContext = getTopLevelClassContext(context);
+        Class<?> testClass = getTopLevelClass(classContext);
+        if (Configuration.isParallel(context) && !holdsProfilerLock(testClass)) {
+            // the class session holds the profiler until the class has finished, while a profiled test of another
+            // class holds the resource lock and waits for the profiler
+            throw new ExtensionConfigurationException(("The class session of %s holds the profiler across tests; "
+                    + "under parallel execution, annotate the class with @ResourceLock(ProfiledTest.PROFILER_LOCK)")
+                    .formatted(testClass.getName()));
+        }
+        return classContext.getStore(RUN_NAMESPACE).getOrComputeIfAbsent(_KEY_CLASS_SESSION, key -> {
+            if (type != Type.JFR) {
+                LOGGER.warning("The class session writes a JFR recording, %s is ignored".formatted(type));
+            }
+            String filePath = outputDir(context).resolve(testClass.getName())
+                    .toAbsolutePath().toString();
+            if (ForkedJvm.isFork()) {
+                filePath += "_fork" + System.getProperty(ForkedJvm.INDEX_PROPERTY);
+            }
+            LOGGER.info("Class file: %s".formatted(filePath));
+            return new ClassSession(new ExclusiveProfiler(getProfiler(backend, Type.JFR, events, options, filePath)));
+        }, ClassSession.class);
+    }
+
+    /**
+     * @return {@code true} if the class runs in isolation or holds the {@link ProfiledTest#PROFILER_LOCK} exclusively
+     * for all its tests.
+     */
+    private static boolean holdsProfilerLock(Class<?> testClass) {
+        return AnnotationSupport.isAnnotated(testClass, Isolated.class)
+                || AnnotationSupport.findRepeatableAnnotations(testClass, ResourceLock.class).stream()
+                .anyMatch(lock -> lock.value().equals(ProfiledTest.PROFILER_LOCK)
+                        && lock.mode() == ResourceAccessMode.READ_WRITE);
+    }
+
+    /**
+     * @return {@code true} if the profiled tests of the top-level class share one recording, as configured by
+     * {@link ProfilingUnit#SESSION_PROPERTY} or {@link ProfilingUnit#session()}. Tests forked by this JVM are
+     * recorded by their forks.
+     */
+    private static boolean isClassScope(ExtensionContext context) {
+        if (getForkingAnnotation(context) != null) {
+            return false;
+        }
+        SessionScope scope = Configuration.session(context).orElseGet(() -> {
+            ProfilingUnit unit = getTopLevelClass(getTopLevelClassContext(context)).getAnnotation(ProfilingUnit.class);
+            return unit == null ? SessionScope.METHOD : unit.session();
+        });
+        return scope == SessionScope.CLASS;
+    }
+
+    /**
+     * @return The context of the outermost test class, which outlives the contexts of its nested classes.
+     */
+    private static ExtensionContext getTopLevelClassContext(ExtensionContext context) {
+        ExtensionContext classContext = context;
+        while (classContext.getParent().flatMap(ExtensionContext::getTestClass).isPresent()) {
+            classContext = classContext.getParent().orElseThrow();
+        }
+        return classContext;
+    }
+
+    private static Class<?> getTopLevelClass(ExtensionContext classContext) {
+        return classContext.getTestClass().orElseGet(() -> classContext.getRequiredTestMethod().getDeclaringClass());
+    }
+
+    /**
+     * Provides the warm-up and profiling invocation contexts of every size one after another. JUnit pulls
+     * the contexts of the next size only after the last invocation of the previous size has finished, so
+     * the session of a size is created and becomes the current session just before its first invocation.
+     */
+    private Stream<TestTemplateInvocationContext> sweepInvocationContexts(ExtensionContext context, int[] sizes) {
+        if (getForkingAnnotation(context) != null || context.getRequiredTestMethod().isAnnotationPresent(AdaptiveWarmup.class)) {
+            throw new ExtensionConfigurationException("A sweep over sizes cannot be combined with @Fork or @AdaptiveWarmup");
+        }
+        for (int size : sizes) {
+            if (size < 1) {
+                throw new ExtensionConfigurationException("Sizes must be positive, but was " + size);
+            }
+        }
+        ExtensionContext.Store store = getStore(context);
+        String filePath = getFilePath(context);
+        store.put(_KEY_FILE, filePath);
+        SizeSweep sweep = new SizeSweep(sizes);
+        store.put(_KEY_SWEEP, sweep);
+        AtomicInteger offset = new AtomicInteger();
+        return Arrays.stream(sizes).boxed().flatMap(size -> {
+            ProfilingSession session = newSession(context, filePath + "_n" + size, "n=" + size);
+            sweep.add(session);
+            store.put(_KEY_SESSION, session);
+            int total = session.repeat() + session.warmUp();
+            TestTemplateInvocationContext ctx = new SizeInvocationContext(size, offset.getAndAdd(total),
+                    getInvocationContext(session.repeat(), session.warmUp()));
+            return Stream.generate(() -> ctx)
+                    .limit(total);
+        });
+    }
+
+    private static void putIfPresent(ExtensionContext.Store store, String key, Object value) {
+        if (value != null) {
+            store.put(key, value);
+        }
+    }
+
+    private String getFilePath(ExtensionContext context) {
         String fileName = context.getTestMethod().map(Method::getName).orElse("nomethod");
         String className = context.getTestMethod()
                 .map(Method::getDeclaringClass)
                 .map(Class::getName)
                 .orElse("");
-        Path dir = dumpDir(context.getTestMethod().orElse(null));
-        String events = getProfilingEvents(context);
-        Type type = getProfilingType(context);
+        Path dir = outputDir(context);
         String filePath = dir.resolve(className + "." + fileName).toAbsolutePath().toString();
-        LOGGER.info("File: %s".formatted(filePath));
-        store.put(_KEY_PROFILER, getProfiler(type, events, filePath));
+        if (ForkedJvm.isFork()) {
+            filePath += "_fork" + System.getProperty(ForkedJvm.INDEX_PROPERTY);
+        }
+        return filePath;
+    }
 
-        int repeatCount = getRepeatCount(context);
-        int warmUpCount = getWarmUpCount(context);
-        int total = repeatCount + warmUpCount;
-        TestTemplateInvocationContext ctx = getInvocationContext(repeatCount, warmUpCount);
-        return Stream.generate(() -> ctx)
-                .limit(total);
+    /**
+     * @return The {@link Fork} annotation if the test runs in forks started by this JVM, otherwise {@code null}.
+     */
+    private static Fork getForkingAnnotation(ExtensionContext context) {
+        Fork fork = context.getRequiredTestMethod().getAnnotation(Fork.class);
+        return fork == null || ForkedJvm.isFork() ? null : fork;
+    }
+
+    /**
+     * Provides warm-up invocation contexts until the steady state is reached, then {@code repeat}
+     * profiling invocation contexts. JUnit pulls the next context only after the previous invocation
+     * has finished, so each context sees the steady state decided by the invocations before it.
+     */
+    private static Stream<TestTemplateInvocationContext> adaptiveInvocationContexts(int repeat,
+                                                                                    SteadyStateDetector steadyState) {
+        TestTemplateInvocationContext warmUpCtx = new ProfiledTestTemplateInvocationContext(repeat, steadyState.max(), true);
+        AtomicInteger profiling = new AtomicInteger();
+        return Stream.generate(() -> steadyState.isSteady()
+                        ? new ProfiledTestTemplateInvocationContext(repeat, steadyState.invocations(), true)
+                        : warmUpCtx)
+                .takeWhile(ctx -> ctx == warmUpCtx || profiling.getAndIncrement() < repeat);
+    }
+
+    Profiler getProfiler(Backend backend, Type type, String events, ProfilerOptions options, String absoluteDirPath) {
+        if (backend == Backend.JFR) {
+            return new JfrProfiler(type, events, options, absoluteDirPath);
+        }
+        try {
+            return new AsyncProfiler(type, events, options, absoluteDirPath);
+        } catch (LinkageError | IllegalStateException e) {
+            if (backend == Backend.AUTO) {
+                LOGGER.log(Level.WARNING, "Async profiler is not available, falling back to JDK Flight Recorder", e);
+                return new JfrProfiler(type, events, options, absoluteDirPath);
+            }
+            LOGGER.log(Level.WARNING, "Async profiler is not available, only latency and allocations are measured", e);
+            return new NoOpProfiler();
+        }
     }
 
-    Profiler getProfiler(Type type, String events, String absoluteDirPath) {
-        return new AsyncProfiler(type, events, absoluteDirPath);
+    /**
+     * @return The directory of the profiling output, configured by {@link io.github.vkn.profile.ProfilingUnit#DIR_PROPERTY}
+     * or {@link #dumpDir(Method)}.
+     */
+    private Path outputDir(ExtensionContext context) {
+        Optional<Path> configured = Configuration.dir(context);
+        if (configured.isEmpty()) {
+            return dumpDir(context.getTestMethod().orElse(null));
+        }
+        try {
+            return Files.createDirectories(configured.get()).toAbsolutePath();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     Path dumpDir(Method testMethod) {
@@ -131,32 +1095,76 @@ public class ProfilingExtension implements TestTemplateInvocationContextProvider
     }
 
     private int getRepeatCount(ExtensionContext context) {
-        return getAnnotation(context).map(ProfiledTest::repeat).orElse(1);
+        Fork fork = getForkingAnnotation(context);
+        if (fork != null) {
+            return fork.value();
+        }
+        if (isThroughputMode(context)) {
+            return 1;
+        }
+        return Configuration.repeat(context).orElseGet(() -> getAnnotation(context).map(ProfiledTest::repeat).orElse(1));
+    }
+
+    private static boolean isThroughputMode(ExtensionContext context) {
+        return getAnnotation(context).map(ProfiledTest::measurementTime).orElse(0L) > 0;
     }
 
 
     private String getProfilingEvents(ExtensionContext context) {
-        return getAnnotation(context).map(ProfiledTest::event).orElse("cpu,alloc,lock");
+        return Configuration.event(context)
+                .orElseGet(() -> getAnnotation(context).map(ProfiledTest::event).orElse("cpu,alloc,lock"));
+    }
+
+    private static Backend getBackend(ExtensionContext context) {
+        return Configuration.backend(context)
+                .orElseGet(() -> getAnnotation(context).map(ProfiledTest::backend).orElse(Backend.AUTO));
     }
 
     private Type getProfilingType(ExtensionContext context) {
-        return getAnnotation(context).map(ProfiledTest::type).orElse(Type.JFR);
+        return Configuration.type(context).orElseGet(() -> getAnnotation(context).map(ProfiledTest::type).orElse(Type.JFR));
+    }
+
+    private static boolean measuresAllocations(ExtensionContext context) {
+        PerformanceBudget budget = context.getRequiredTestMethod().getAnnotation(PerformanceBudget.class);
+        boolean requested = getAnnotation(context).map(ProfiledTest::allocations).orElse(false)
+                || budget != null && budget.maxAllocatedBytes() >= 0;
+        if (requested && !AllocationCounter.isSupported()) {
+            LOGGER.warning("Thread allocation measurement is not supported by this JVM");
+            return false;
+        }
+        return requested;
     }
 
     private int getWarmUpCount(ExtensionContext context) {
-        return getAnnotation(context).map(ProfiledTest::warmup).orElse(0);
+        if (getForkingAnnotation(context) != null) {
+            return 0;
+        }
+        if (isThroughputMode(context)) {
+            return getAnnotation(context).map(ProfiledTest::warmupTime).orElse(0L) > 0 ? 1 : 0;
+        }
+        return Configuration.warmUp(context).orElseGet(() -> getAnnotation(context).map(ProfiledTest::warmup).orElse(0));
     }
 
     private ExtensionContext.Store getStore(ExtensionContext context) {
-        return context.getStore(namespace);
+        return context.getStore(getNamespace(context));
     }
 
     private static Optional<ProfiledTest> getAnnotation(ExtensionContext context) {
         return Optional.ofNullable(context.getRequiredTestMethod().getAnnotation(ProfiledTest.class));
     }
 
+    private ProfilingSession getSession(ExtensionContext context) {
+        return getStore(context).get(_KEY_SESSION, ProfilingSession.class);
+    }
+
     private ExtensionContext.Namespace getNamespace(ExtensionContext context) {
-        return ExtensionContext.Namespace.create(getClass().getName() + context.getRequiredTestMethod().getName());
+        Method method = context.getRequiredTestMethod();
+        ExtensionContext.Namespace namespace = namespaces.get(method);
+        if (namespace == null) {
+            namespace = ExtensionContext.Namespace.create(getClass().getName() + method.getName());
+            namespaces.put(method, namespace);
+        }
+        return namespace;
     }
 
 }
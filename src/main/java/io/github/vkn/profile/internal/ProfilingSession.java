@@ -0,0 +1,54 @@
+package io.github.vkn.profile.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The state of one profiled test template, resolved once when the invocation contexts are provided.
+ * The per-invocation callbacks of {@link ProfilingExtension} read everything they need from here with a
+ * single store lookup, without reflection or allocation.
+ *
+ * @param repeat         The number of profiling invocations.
+ * @param warmUp         The number of warm-up invocations, unless chosen by {@code steadyState}.
+ * @param warmUpNanos    The length of the warm-up window in the throughput mode.
+ * @param warmUpCount    The number of started invocations, warm-up included.
+ * @param profilingCount The number of started profiling invocations.
+ * @param histogram      The latencies of the profiling invocations.
+ * @param allocations    The allocation counter, {@code null} if allocations are not measured.
+ * @param throughput     The throughput of the measurement window, {@code null} outside the throughput mode.
+ * @param load           The concurrent load, {@code null} with a single thread.
+ * @param steadyState    The adaptive warm-up, {@code null} with a fixed warm-up.
+ * @param fork           The forked JVM running the test, {@code null} if the test runs in this JVM.
+ * @param profiler       The profiler of the session.
+ * @param telemetry      The GC, JIT and safepoint activity while the profiler was running.
+ * @param outliers       The windows of slow invocations, {@code null} without {@link io.github.vkn.profile.TailCapture}.
+ * @param heap           The heap samples, {@code null} without {@link io.github.vkn.profile.HeapGrowth}.
+ * @param classSession   The recording of the whole class, {@code null} unless the session scope is the class.
+ * @param invoker        The direct invoker of the test method, bound to every invocation that calls it directly.
+ * @param filePath       The path of the profiling output, without suffix and extension.
+ * @param label          The input size of a sweep, e.g. {@code n=1000}, otherwise empty.
+ * @param testName       The test class and method, with the label of a sweep.
+ */
+record ProfilingSession(int repeat, int warmUp, long warmUpNanos, AtomicInteger warmUpCount,
+                        AtomicInteger profilingCount, LatencyHistogram histogram, AllocationCounter allocations,
+                        Throughput throughput, ConcurrentLoad load, SteadyStateDetector steadyState,
+                        ForkedJvm fork, Profiler profiler, JvmTelemetry telemetry, OutlierWindows outliers, HeapSampler heap,
+                        ClassSession classSession, MethodInvoker invoker, String filePath, String label, String testName) {
+
+    /**
+     * @return The number of warm-up invocations; {@link Integer#MAX_VALUE} while an adaptive warm-up
+     * has not reached the steady state.
+     */
+    int warmUpInvocations() {
+        if (steadyState != null) {
+            return steadyState.isSteady() ? steadyState.invocations() : Integer.MAX_VALUE;
+        }
+        return warmUp;
+    }
+
+    /**
+     * @return {@code true} if the current invocation is a warm-up invocation.
+     */
+    boolean isWarmUp() {
+        return warmUpCount.get() <= warmUpInvocations();
+    }
+}
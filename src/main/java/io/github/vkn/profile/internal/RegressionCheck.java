@@ -0,0 +1,64 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.Baseline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compares the result of a profiled test run against its stored {@link BaselineEntry}.
+ */
+final class RegressionCheck {
+
+    private RegressionCheck() {
+    }
+
+    /**
+     * Compares the run against the stored baseline and decides the baseline of the next runs. The first run becomes
+     * the baseline, which is then pinned: a run replaces it only if it is accepted, so that many runs, each slower
+     * than the previous one but within the tolerance, add up to a regression instead of dragging the baseline along.
+     *
+     * @param config      The baseline configuration of the test.
+     * @param previous    The stored baseline, if any.
+     * @param current     The result of the current run.
+     * @param accept      Whether the current run replaces the stored baseline.
+     * @param regressions Receives the regressions of the current run.
+     * @return The new baseline to store, or an empty optional to keep the stored one.
+     */
+    static Optional<BaselineEntry> update(Baseline config, Optional<BaselineEntry> previous, BaselineEntry current,
+                                          boolean accept, List<String> regressions) {
+        previous.map(baseline -> regressions(config, baseline, current)).ifPresent(regressions::addAll);
+        return previous.isEmpty() || accept ? Optional.of(current) : Optional.empty();
+    }
+
+    /**
+     * Returns a human-readable description of every regression. The mean latency is a regression
+     * if it exceeds the baseline by more than the tolerance and a one-sided Welch's t-test rejects
+     * equal means at the configured level. Allocation is deterministic enough to be compared
+     * against the tolerance alone.
+     *
+     * @param config   The baseline configuration of the test.
+     * @param baseline The stored result of a previous run.
+     * @param current  The result of the current run.
+     * @return The regressions, empty if none were detected.
+     */
+    static List<String> regressions(Baseline config, BaselineEntry baseline, BaselineEntry current) {
+        List<String> regressions = new ArrayList<>();
+        double factor = 1 + config.tolerance();
+        if (current.mean() > baseline.mean() * factor) {
+            double pValue = Statistics.welchGreaterPValue(baseline.mean() * factor, baseline.stdDev(),
+                    baseline.count(), current.mean(), current.stdDev(), current.count());
+            if (pValue < config.alpha()) {
+                regressions.add("mean latency %s regressed from baseline %s (+%.1f%%, p=%.4f)".formatted(
+                        LatencyHistogram.formatNanos(current.mean()), LatencyHistogram.formatNanos(baseline.mean()),
+                        (current.mean() / baseline.mean() - 1) * 100, pValue));
+            }
+        }
+        if (baseline.bytesPerOp() >= 0 && current.bytesPerOp() > baseline.bytesPerOp() * factor) {
+            regressions.add("allocation %.1f bytes/invocation regressed from baseline %.1f bytes/invocation"
+                    .formatted(current.bytesPerOp(), baseline.bytesPerOp()));
+        }
+        return regressions;
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.vkn.profile.internal;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A cyclic barrier of a fixed set of parties that does not allocate, unlike {@link java.util.concurrent.CyclicBarrier},
+ * whose lock and condition allocate a node whenever a thread blocks. The parties spin briefly on a multiprocessor and
+ * then park until the last one arrives and unparks them. A barrier that is broken by an interrupt stays broken until it is reset.
+ */
+final class RoundBarrier {
+    // spinning only delays the other parties on a single processor
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 10_000 : 0;
+
+    private final Thread[] waiters;
+    private final AtomicInteger arrived = new AtomicInteger();
+    private volatile int generation;
+    private volatile boolean broken;
+
+    /**
+     * @param parties The number of threads that wait for each other.
+     */
+    RoundBarrier(int parties) {
+        this.waiters = new Thread[parties];
+    }
+
+    /**
+     * Waits until all parties arrived.
+     *
+     * @param party The index of the calling thread, from {@code 0} to the number of parties.
+     * @throws InterruptedException   If the calling thread was interrupted while waiting; the barrier is broken.
+     * @throws BrokenBarrierException If the barrier is broken.
+     */
+    void await(int party) throws InterruptedException, BrokenBarrierException {
+        if (broken) {
+            throw new BrokenBarrierException();
+        }
+        waiters[party] = Thread.currentThread();
+        int current = generation;
+        if (arrived.incrementAndGet() == waiters.length) {
+            arrived.set(0);
+            generation = current + 1;
+            unparkOthers();
+            return;
+        }
+        int spins = SPINS;
+        while (generation == current) {
+            if (Thread.interrupted()) {
+                breakBarrier();
+                throw new InterruptedException();
+            }
+            if (spins > 0) {
+                spins--;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        if (broken) {
+            throw new BrokenBarrierException();
+        }
+    }
+
+    /**
+     * Releases all waiting parties with a {@link BrokenBarrierException}.
+     */
+    void breakBarrier() {
+        broken = true;
+        generation++;
+        unparkOthers();
+    }
+
+    /**
+     * Repairs a broken barrier, once the parties that waited have left.
+     */
+    void reset() {
+        arrived.set(0);
+        broken = false;
+    }
+
+    private void unparkOthers() {
+        Thread self = Thread.currentThread();
+        for (Thread waiter : waiters) {
+            if (waiter != null && waiter != self) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * The run-wide report of all profiled tests. Every finished test is appended as one CSV record to
+ * {@code report-<run>-<jvm>.csv} as soon as it completes, so the memory footprint does not grow with the run.
+ * A build may run the tests in several JVMs, e.g. surefire forks, which are identified by their process id and
+ * grouped into a run by the process id of their parent. The report is registered in the root store; when JUnit
+ * closes it at the end of the tests of a JVM, the CSV files of all JVMs of the run are read back and an HTML index
+ * of all tests, sorted by the total time of their profiling invocations, is written to {@code index.html}. The
+ * index written by the last JVM covers the whole run.
+ */
+class RunReport implements ExtensionContext.Store.CloseableResource {
+    private static final Logger LOGGER = Logger.getLogger(RunReport.class.getName());
+    static final String CSV_PREFIX = "report-";
+    static final String CSV_SUFFIX = ".csv";
+    static final String INDEX_FILE = "index.html";
+    private static final List<String> COLUMNS = List.of("test", "events", "type", "count", "totalNanos",
+            "meanNanos", "p50Nanos", "p99Nanos", "maxNanos", "allocatedBytesPerOp", "output");
+    private static final int TOTAL = COLUMNS.indexOf("totalNanos");
+    private final Path dir;
+    private final long run;
+    private final Path csvFile;
+    private final BufferedWriter writer;
+
+    /**
+     * Creates the CSV file of this JVM in the directory.
+     */
+    RunReport(Path dir) {
+        this(dir, ProcessHandle.current().parent().map(ProcessHandle::pid).orElse(0L), ProcessHandle.current().pid());
+    }
+
+    /**
+     * Creates the CSV file of a JVM in the directory, replacing the reports of previous runs whose process has exited.
+     *
+     * @param run The process id of the parent process of all JVMs of the run.
+     * @param jvm The process id of the JVM.
+     */
+    RunReport(Path dir, long run, long jvm) {
+        this.dir = dir;
+        this.run = run;
+        this.csvFile = dir.resolve("%s%d-%d%s".formatted(CSV_PREFIX, run, jvm, CSV_SUFFIX));
+        try {
+            deletePreviousRuns();
+            writer = Files.newBufferedWriter(csvFile);
+            writeLine(COLUMNS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The CSV file of this JVM.
+     */
+    Path csvFile() {
+        return csvFile;
+    }
+
+    private void deletePreviousRuns() throws IOException {
+        for (Path file : csvFiles()) {
+            long fileRun = runOf(file);
+            if (fileRun != run && !ProcessHandle.of(fileRun).map(ProcessHandle::isAlive).orElse(false)) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private List<Path> csvFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> runOf(file) >= 0).sorted().toList();
+        }
+    }
+
+    /**
+     * @return The run of a CSV file, or {@code -1} if the file is not a report.
+     */
+    private static long runOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(CSV_PREFIX) || !name.endsWith(CSV_SUFFIX)) {
+            return -1;
+        }
+        String id = name.substring(CSV_PREFIX.length(), name.length() - CSV_SUFFIX.length());
+        int separator = id.indexOf('-');
+        try {
+            return separator < 0 ? -1 : Long.parseLong(id.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Appends the record of a finished test.
+     *
+     * @param test        The name of the test, e.g. {@code com.example.MyTest.parse(n=1000)}.
+     * @param events      The profiled events.
+     * @param type        The output type of the profiler.
+     * @param histogram   The latencies of the profiling invocations.
+     * @param allocations The allocations of the profiling invocations, may be {@code null} if not measured.
+     * @param output      The profiling output of the test.
+     */
+    synchronized void record(String test, String events, String type, LatencyHistogram histogram,
+                             AllocationCounter allocations, Path output) {
+        try {
+            writeLine(List.of(test, events, type, String.valueOf(histogram.count()), String.valueOf(histogram.sum()),
+                    String.valueOf(Math.round(histogram.mean())), String.valueOf(histogram.percentile(50)),
+                    String.valueOf(histogram.percentile(99)), String.valueOf(histogram.max()),
+                    allocations == null ? "" : "%.1f".formatted(allocations.bytesPerInvocation()),
+                    output.toString()));
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(List<String> fields) throws IOException {
+        writer.write(String.join(",", fields.stream().map(RunReport::quote).toList()));
+        writer.newLine();
+    }
+
+    /**
+     * Writes the index of the records of all JVMs of the run. A JVM that is still running may be writing a record,
+     * which is skipped if it is incomplete.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        List<List<String>> rows = new ArrayList<>();
+        for (Path file : csvFiles()) {
+            if (runOf(file) == run) {
+                readRows(file, rows);
+            }
+        }
+        rows.sort(Comparator.comparingLong((List<String> row) -> Long.parseLong(row.get(TOTAL))).reversed());
+        Path index = dir.resolve(INDEX_FILE);
+        Path temp = Files.createTempFile(dir, INDEX_FILE, ".tmp");
+        Files.writeString(temp, html(rows));
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Profiling report of %d tests: %s".formatted(rows.size(), index));
+    }
+
+    private static void readRows(Path file, List<List<String>> rows) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            reader.readLine();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                List<String> row = parse(line);
+                if (row.size() == COLUMNS.size() && row.get(TOTAL).matches("\\d+")) {
+                    rows.add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the rows as an HTML table with the share of each test in the total time of the run.
+     */
+    static String html(List<List<String>> rows) {
+        double total = rows.stream().mapToLong(row -> Long.parseLong(row.get(TOTAL))).sum();
+        StringBuilder sb = new StringBuilder("""
+                <!DOCTYPE html>
+                <html>
+                <head>
+                <meta charset="utf-8">
+                <title>Profiling report</title>
+                <style>
+                body { font-family: sans-serif; }
+                table { border-collapse: collapse; }
+                th, td { border: 1px solid #ccc; padding: 2px 6px; text-align: right; }
+                td:first-child, td:last-child { text-align: left; }
+                </style>
+                </head>
+                <body>
+                <h1>Profiling report</h1>
+                <table>
+                <tr><th>Test</th><th>Events</th><th>Count</th><th>Total</th><th>Share</th><th>Mean</th><th>p50</th>\
+                <th>p99</th><th>Max</th><th>Alloc/op</th><th>Output</th></tr>
+                """);
+        for (List<String> row : rows) {
+            long rowTotal = Long.parseLong(row.get(TOTAL));
+            Path output = Path.of(row.get(10));
+            sb.append("<tr><td>").append(escape(row.get(0)))
+                    .append("</td><td>").append(escape(row.get(1)))
+                    .append("</td><td>").append(row.get(3))
+                    .append("</td><td>").append(LatencyHistogram.formatNanos(rowTotal))
+                    .append("</td><td>").append("%.1f%%".formatted(total == 0 ? 0 : 100 * rowTotal / total))
+                    .append("</td><td>").append(LatencyHistogram.formatNanos(Long.parseLong(row.get(5))))
+                    .append("</td><td>").append(LatencyHistogram.formatNanos(Long.parseLong(row.get(6))))
+                    .append("</td><td>").append(LatencyHistogram.formatNanos(Long.parseLong(row.get(7))))
+                    .append("</td><td>").append(LatencyHistogram.formatNanos(Long.parseLong(row.get(8))))
+                    .append("</td><td>").append(row.get(9).isEmpty() ? "" : escape(row.get(9)) + "B")
+                    .append("</td><td><a href=\"").append(escape(output.getFileName().toString())).append("\">")
+                    .append(escape(output.getFileName().toString())).append("</a></td></tr>\n");
+        }
+        return sb.append("</table>\n</body>\n</html>\n").toString();
+    }
+
+    private static String quote(String field) {
+        String value = field.replace('\n', ' ').replace('\r', ' ');
+        if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * Splits a CSV line written by {@link #record}.
+     */
+    static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append('"');
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.Extension;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContext;
+
+import java.util.List;
+
+/**
+ * The invocation context of one size of a {@link io.github.vkn.profile.ProfiledTest#sizes()} sweep.
+ * Passes the size to the {@code int} or {@code long} parameter of the test method and prefixes the
+ * display name of the delegate with the size.
+ */
+class SizeInvocationContext implements TestTemplateInvocationContext, ParameterResolver {
+    private final int size;
+    private final int offset;
+    private final TestTemplateInvocationContext delegate;
+
+    /**
+     * @param size     The input size.
+     * @param offset   The number of invocations of the previous sizes.
+     * @param delegate The context of the warm-up and profiling invocations of this size.
+     */
+    SizeInvocationContext(int size, int offset, TestTemplateInvocationContext delegate) {
+        this.size = size;
+        this.offset = offset;
+        this.delegate = delegate;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public String getDisplayName(int invocationIndex) {
+        return "n=%d: %s".formatted(size, delegate.getDisplayName(invocationIndex - offset));
+    }
+
+    @Override
+    public List<Extension> getAdditionalExtensions() {
+        return List.of(this);
+    }
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        Class<?> type = parameterContext.getParameter().getType();
+        return type == int.class || type == Integer.class || type == long.class || type == Long.class;
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        Class<?> type = parameterContext.getParameter().getType();
+        return type == long.class || type == Long.class ? (Object) (long) size : (Object) size;
+    }
+}
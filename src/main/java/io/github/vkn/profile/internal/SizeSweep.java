@@ -0,0 +1,76 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of a {@link io.github.vkn.profile.ProfiledTest#sizes()} sweep: the mean latency of every
+ * completed size and the profilers and concurrent loads of all sizes, which are closed together with the template.
+ */
+class SizeSweep implements ExtensionContext.Store.CloseableResource {
+    private final long[] sizes;
+    private final double[] meanNanos;
+    private final List<Profiler> profilers = new ArrayList<>();
+    private final List<ConcurrentLoad> loads = new ArrayList<>();
+    private int completed;
+
+    SizeSweep(int[] sizes) {
+        this.sizes = new long[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            this.sizes[i] = sizes[i];
+        }
+        this.meanNanos = new double[sizes.length];
+    }
+
+    /**
+     * Registers the resources of the session of a size.
+     */
+    void add(ProfilingSession session) {
+        profilers.add(session.profiler());
+        if (session.load() != null) {
+            loads.add(session.load());
+        }
+    }
+
+    /**
+     * Records the mean latency of the next size.
+     */
+    void record(double meanNanos) {
+        this.meanNanos[completed++] = meanNanos;
+    }
+
+    boolean isComplete() {
+        return completed == sizes.length;
+    }
+
+    /**
+     * @return The best fitting complexity, or {@code null} with fewer than two sizes.
+     */
+    ComplexityFit fit() {
+        return sizes.length < 2 ? null : ComplexityFit.of(sizes, meanNanos);
+    }
+
+    /**
+     * @return One line per size with its mean latency.
+     */
+    String format() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < completed; i++) {
+            sb.append("n=").append(sizes[i]).append(" mean=").append(LatencyHistogram.formatNanos(meanNanos[i]))
+                    .append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        for (Profiler profiler : profilers) {
+            profiler.stop();
+        }
+        for (ConcurrentLoad load : loads) {
+            load.close();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.vkn.profile.internal;
+
+import java.util.Arrays;
+
+/**
+ * Statistical functions used to compare profiling results.
+ */
+final class Statistics {
+
+    private static final int MAX_ITERATIONS = 300;
+    private static final double EPSILON = 1e-14;
+    private static final double TINY = 1e-300;
+
+    private Statistics() {
+    }
+
+    /**
+     * Performs a one-sided Welch's t-test for the hypothesis that the mean of the second sample
+     * is greater than the mean of the first sample.
+     *
+     * @return The p-value, or {@code 1} if the test cannot be performed.
+     */
+    static double welchGreaterPValue(double mean1, double stdDev1, long n1, double mean2, double stdDev2, long n2) {
+        if (n1 < 2 || n2 < 2) {
+            return 1;
+        }
+        double v1 = stdDev1 * stdDev1 / n1;
+        double v2 = stdDev2 * stdDev2 / n2;
+        double se = Math.sqrt(v1 + v2);
+        if (se == 0) {
+            return mean2 > mean1 ? 0 : 1;
+        }
+        double t = (mean2 - mean1) / se;
+        double df = (v1 + v2) * (v1 + v2) / (v1 * v1 / (n1 - 1) + v2 * v2 / (n2 - 1));
+        return 1 - studentTCdf(t, df);
+    }
+
+    /**
+     * Performs a one-sided Mann-Whitney U test for the hypothesis that the values of the second sample
+     * tend to be smaller than the values of the first sample, using the normal approximation with tie
+     * and continuity correction.
+     *
+     * @return The p-value, or {@code 1} if the test cannot be performed.
+     */
+    static double mannWhitneyLessPValue(long[] first, long[] second) {
+        int n1 = first.length;
+        int n2 = second.length;
+        if (n1 == 0 || n2 == 0) {
+            return 1;
+        }
+        int n = n1 + n2;
+        // the values of the second sample are tagged by the lowest bit
+        long[] values = new long[n];
+        for (int i = 0; i < n1; i++) {
+            values[i] = first[i] << 1;
+        }
+        for (int i = 0; i < n2; i++) {
+            values[n1 + i] = second[i] << 1 | 1;
+        }
+        Arrays.sort(values);
+        double rankSum = 0;
+        double ties = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && values[j] >> 1 == values[i] >> 1) {
+                j++;
+            }
+            double rank = (i + 1 + j) / 2.0;
+            for (int k = i; k < j; k++) {
+                if ((values[k] & 1) == 1) {
+                    rankSum += rank;
+                }
+            }
+            double t = j - i;
+            ties += t * t * t - t;
+            i = j;
+        }
+        double u = rankSum - n2 * (n2 + 1) / 2.0;
+        double mean = (double) n1 * n2 / 2;
+        double variance = (double) n1 * n2 / 12 * (n + 1 - ties / ((double) n * (n - 1)));
+        if (variance <= 0) {
+            return 1;
+        }
+        return normalCdf((u - mean + 0.5) / Math.sqrt(variance));
+    }
+
+    /**
+     * @return The cumulative distribution function of the standard normal distribution, using a Chebyshev
+     * approximation of the complementary error function with a relative error below {@code 1.2e-7}.
+     */
+    static double normalCdf(double x) {
+        double z = Math.abs(x) / Math.sqrt(2);
+        double t = 1 / (1 + 0.5 * z);
+        double erfc = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? 1 - erfc / 2 : erfc / 2;
+    }
+
+    /**
+     * @return The cumulative distribution function of Student's t-distribution.
+     */
+    static double studentTCdf(double t, double degreesOfFreedom) {
+        double x = degreesOfFreedom / (degreesOfFreedom + t * t);
+        double tail = 0.5 * regularizedIncompleteBeta(x, degreesOfFreedom / 2, 0.5);
+        return t > 0 ? 1 - tail : tail;
+    }
+
+    /**
+     * @return The quantile function of Student's t-distribution, found by bisection of {@link #studentTCdf}.
+     */
+    static double studentTQuantile(double p, double degreesOfFreedom) {
+        double low = -1e3;
+        double high = 1e3;
+        for (int i = 0; i < 100; i++) {
+            double mid = (low + high) / 2;
+            if (studentTCdf(mid, degreesOfFreedom) < p) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * @return The regularized incomplete beta function {@code I_x(a, b)}.
+     */
+    static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        }
+        return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    /**
+     * @return The natural logarithm of the gamma function, using the Lanczos approximation.
+     */
+    static double logGamma(double x) {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+
+    private static double betaContinuedFraction(double x, double a, double b) {
+        double qab = a + b;
+        double qap = a + 1;
+        double qam = a - 1;
+        double c = 1;
+        double d = 1 - qab * x / qap;
+        if (Math.abs(d) < TINY) {
+            d = TINY;
+        }
+        d = 1 / d;
+        double h = d;
+        for (int m = 1; m <= MAX_ITERATIONS; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+            d = 1 + aa * d;
+            if (Math.abs(d) < TINY) {
+                d = TINY;
+            }
+            c = 1 + aa / c;
+            if (Math.abs(c) < TINY) {
+                c = TINY;
+            }
+            d = 1 / d;
+            h *= d * c;
+            aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+            d = 1 + aa * d;
+            if (Math.abs(d) < TINY) {
+                d = TINY;
+            }
+            c = 1 + aa / c;
+            if (Math.abs(c) < TINY) {
+                c = TINY;
+            }
+            d = 1 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < EPSILON) {
+                break;
+            }
+        }
+        return h;
+    }
+}
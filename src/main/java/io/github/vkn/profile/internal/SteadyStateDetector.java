@@ -0,0 +1,95 @@
+package io.github.vkn.profile.internal;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides when warm-up has reached a steady state. The invocation times of the last {@code window}
+ * warm-up invocations are kept in a ring buffer; the state is steady once their coefficient of
+ * variation is below the threshold and the total JIT compilation time of the JVM did not change
+ * during the window, or once the maximum number of warm-up invocations has been reached.
+ */
+final class SteadyStateDetector {
+
+    private final double cv;
+    private final long[] window;
+    private final int max;
+    private final LongSupplier compilationTime;
+    private int invocations;
+    private long lastCompilationTime = -1;
+    private int lastCompilationChange;
+    private boolean isSteady;
+
+    SteadyStateDetector(double cv, int window, int max) {
+        this(cv, window, max, compilationTimeSupplier());
+    }
+
+    SteadyStateDetector(double cv, int window, int max, LongSupplier compilationTime) {
+        this.cv = cv;
+        this.window = new long[Math.max(2, window)];
+        this.max = max;
+        this.compilationTime = compilationTime;
+        this.isSteady = max <= 0;
+    }
+
+    /**
+     * Records the time of a warm-up invocation and re-evaluates the steady state.
+     *
+     * @param nanos The invocation time in nanoseconds.
+     */
+    void record(long nanos) {
+        if (isSteady) {
+            return;
+        }
+        window[invocations % window.length] = nanos;
+        invocations++;
+        long compilation = compilationTime.getAsLong();
+        if (compilation != lastCompilationTime) {
+            lastCompilationTime = compilation;
+            lastCompilationChange = invocations;
+        }
+        isSteady = invocations >= max
+                || invocations - lastCompilationChange >= window.length && coefficientOfVariation() <= cv;
+    }
+
+    boolean isSteady() {
+        return isSteady;
+    }
+
+    /**
+     * @return The number of warm-up invocations recorded so far.
+     */
+    int invocations() {
+        return invocations;
+    }
+
+    int max() {
+        return max;
+    }
+
+    double coefficientOfVariation() {
+        int n = Math.min(invocations, window.length);
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += window[i];
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (int i = 0; i < n; i++) {
+            squares += (window[i] - mean) * (window[i] - mean);
+        }
+        return mean == 0 ? 0 : Math.sqrt(squares / (n - 1)) / mean;
+    }
+
+    private static LongSupplier compilationTimeSupplier() {
+        CompilationMXBean bean = ManagementFactory.getCompilationMXBean();
+        if (bean == null || !bean.isCompilationTimeMonitoringSupported()) {
+            return () -> 0;
+        }
+        return bean::getTotalCompilationTime;
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.vkn.profile.internal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * A {@link Profiler} that measures the {@link JvmTelemetry} of the window between {@link #start()} and
+ * {@link #stop()} of its delegate. After the delegate has been stopped, the deoptimizations and safepoints
+ * are read from its JFR recording, if it wrote one.
+ */
+class TelemetryProfiler implements Profiler {
+    private final Profiler delegate;
+    private final JvmTelemetry telemetry;
+
+    TelemetryProfiler(Profiler delegate, JvmTelemetry telemetry) {
+        this.delegate = delegate;
+        this.telemetry = telemetry;
+    }
+
+    @Override
+    public void start() {
+        telemetry.start();
+        try {
+            delegate.start();
+        } catch (RuntimeException | Error e) {
+            telemetry.stop();
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            delegate.stop();
+        } finally {
+            telemetry.stop();
+        }
+        delegate.recording().filter(Files::exists).ifPresent(telemetry::addRecording);
+    }
+
+    @Override
+    public Optional<Path> recording() {
+        return delegate.recording();
+    }
+
+    @Override
+    public Optional<Path> output() {
+        return delegate.output();
+    }
+}
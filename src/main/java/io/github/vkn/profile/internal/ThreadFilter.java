@@ -0,0 +1,72 @@
+package io.github.vkn.profile.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The threads sampled by a profiler that runs with the thread filter of the async-profiler, see
+ * {@link io.github.vkn.profile.Sampling#filterThreads()}. The thread that starts the profiler, the JUnit
+ * thread, is always sampled; other threads are sampled once they are registered. Registrations outlive a
+ * profiling session, so a pool registered in {@code @BeforeAll} is sampled by every test of the class, and
+ * are held weakly, so terminated threads are not retained.
+ * <p>
+ * Use {@link io.github.vkn.profile.ProfiledThreads} to register threads from tests.
+ */
+public final class ThreadFilter {
+    private static final Set<Thread> THREADS = Collections.newSetFromMap(new WeakHashMap<>());
+    private static one.profiler.AsyncProfiler active;
+
+    private ThreadFilter() {
+    }
+
+    /**
+     * Samples the thread from now on, or from the start of the next filtered session.
+     *
+     * @param thread The thread.
+     */
+    public static synchronized void add(Thread thread) {
+        THREADS.add(thread);
+        if (active != null) {
+            active.addThread(thread);
+        }
+    }
+
+    /**
+     * Stops sampling the thread.
+     *
+     * @param thread The thread.
+     */
+    public static synchronized void remove(Thread thread) {
+        THREADS.remove(thread);
+        if (active != null) {
+            active.removeThread(thread);
+        }
+    }
+
+    /**
+     * Adds the calling thread and all registered threads to the filter of the started profiler.
+     * Threads that have not been started yet are ignored by the async-profiler.
+     */
+    static synchronized void attach(one.profiler.AsyncProfiler profiler) {
+        active = profiler;
+        profiler.addThread(Thread.currentThread());
+        THREADS.forEach(profiler::addThread);
+    }
+
+    /**
+     * Called when the filtered profiler is stopped.
+     */
+    static synchronized void detach() {
+        active = null;
+    }
+
+    /**
+     * @return The registered threads.
+     */
+    static synchronized List<Thread> threads() {
+        return new ArrayList<>(THREADS);
+    }
+}
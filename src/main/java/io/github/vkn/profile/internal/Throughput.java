@@ -0,0 +1,115 @@
+package io.github.vkn.profile.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts operations of a time-bounded measurement window. The window is split into equal slices,
+ * and the operations per second of the slices are the samples for the confidence interval. The operation
+ * running at the end of the window completes after it, so the last slice lasts until the actual end of
+ * the measurement set by {@link #end(long)}.
+ */
+final class Throughput {
+
+    static final int SLICES = 10;
+    static final double CONFIDENCE = 0.999;
+
+    private final long durationNanos;
+    private final long[] sliceOps = new long[SLICES];
+    private long elapsedNanos;
+
+    /**
+     * @param durationNanos The length of the measurement window in nanoseconds.
+     */
+    Throughput(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    long durationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Records an operation that completed at the given offset into the measurement window.
+     *
+     * @param elapsedNanos The nanoseconds since the start of the window.
+     */
+    void record(long elapsedNanos) {
+        int slice = (int) Math.min(SLICES - 1, Math.max(0, elapsedNanos) * SLICES / durationNanos);
+        sliceOps[slice]++;
+    }
+
+    /**
+     * Ends the measurement after the last operation.
+     *
+     * @param elapsedNanos The nanoseconds since the start of the window, at least its length unless the
+     *                     measurement was interrupted.
+     */
+    void end(long elapsedNanos) {
+        this.elapsedNanos = Math.max(this.elapsedNanos, elapsedNanos);
+    }
+
+    /**
+     * @return The actual length of the measurement in nanoseconds, the length of the window if it was not ended.
+     */
+    long elapsedNanos() {
+        return elapsedNanos > 0 ? elapsedNanos : durationNanos;
+    }
+
+    /**
+     * Adds the operations of another window of the same length, e.g. of a concurrent thread.
+     *
+     * @param other The throughput to add.
+     */
+    void add(Throughput other) {
+        for (int i = 0; i < SLICES; i++) {
+            sliceOps[i] += other.sliceOps[i];
+        }
+        end(other.elapsedNanos);
+    }
+
+    long operations() {
+        long total = 0;
+        for (long ops : sliceOps) {
+            total += ops;
+        }
+        return total;
+    }
+
+    /**
+     * @return The mean operations per second over the actual length of the measurement.
+     */
+    double opsPerSecond() {
+        return operations() * 1e9 / elapsedNanos();
+    }
+
+    /**
+     * @return The half-width of the {@link #CONFIDENCE} confidence interval of {@link #opsPerSecond()},
+     * based on Student's t-distribution of the per-slice throughput.
+     */
+    double confidenceHalfWidth() {
+        double sliceSeconds = durationNanos / 1e9 / SLICES;
+        double lastSliceSeconds = Math.max(sliceSeconds, (elapsedNanos() - durationNanos) / 1e9 + sliceSeconds);
+        double mean = opsPerSecond();
+        double sumOfSquares = 0;
+        for (int i = 0; i < SLICES; i++) {
+            double deviation = sliceOps[i] / (i == SLICES - 1 ? lastSliceSeconds : sliceSeconds) - mean;
+            sumOfSquares += deviation * deviation;
+        }
+        double stdDev = Math.sqrt(sumOfSquares / (SLICES - 1));
+        return Statistics.studentTQuantile(1 - (1 - CONFIDENCE) / 2, SLICES - 1) * stdDev / Math.sqrt(SLICES);
+    }
+
+    Map<String, String> reportEntries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("throughput.ops", String.valueOf(operations()));
+        entries.put("throughput.opsPerSecond", "%.1f".formatted(opsPerSecond()));
+        entries.put("throughput.error", "%.1f".formatted(confidenceHalfWidth()));
+        return entries;
+    }
+
+    String format() {
+        return "%.1f ± %.1f ops/s (%.1f%% CI, %d ops)"
+                .formatted(opsPerSecond(), confidenceHalfWidth(), CONFIDENCE * 100, operations());
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.vkn.profile.internal;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates weights per key and keeps at most {@code capacity} keys. When the capacity is
+ * exceeded, the lighter half of the keys is dropped, so memory stays bounded no matter how many
+ * distinct keys are seen. Heavy hitters survive pruning, which makes the top entries reliable
+ * for the skewed distributions found in profiles.
+ */
+final class TopCounter {
+
+    private final int capacity;
+    private final Map<String, long[]> weights = new HashMap<>();
+
+    TopCounter(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds the weight to the key.
+     *
+     * @param key    The key, e.g. a frame or a monitor class.
+     * @param weight The weight, e.g. samples, bytes or nanoseconds.
+     */
+    void add(String key, long weight) {
+        long[] value = weights.get(key);
+        if (value == null) {
+            if (weights.size() >= capacity) {
+                prune();
+            }
+            value = new long[2];
+            weights.put(key, value);
+        }
+        value[0] += weight;
+        value[1]++;
+    }
+
+    boolean isEmpty() {
+        return weights.isEmpty();
+    }
+
+    /**
+     * @param n The maximum number of entries.
+     * @return The heaviest entries in descending order of weight.
+     */
+    List<Entry> top(int n) {
+        List<Entry> entries = new ArrayList<>(weights.size());
+        weights.forEach((key, value) -> entries.add(new Entry(key, value[0], value[1])));
+        entries.sort(Comparator.comparingLong(Entry::weight).reversed().thenComparing(Entry::key));
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+
+    private void prune() {
+        // exactly the lighter half, also when weights are tied
+        List<Map.Entry<String, long[]>> sorted = new ArrayList<>(weights.entrySet());
+        sorted.sort(Comparator.comparingLong(e -> e.getValue()[0]));
+        for (Map.Entry<String, long[]> entry : sorted.subList(0, sorted.size() / 2)) {
+            weights.remove(entry.getKey());
+        }
+    }
+
+    /**
+     * @param key    The key.
+     * @param weight The accumulated weight.
+     * @param count  The number of times the key was added.
+     */
+    record Entry(String key, long weight, long count) {
+    }
+}
@@ -1,6 +1,10 @@
 package io.github.vkn.profile.internal;
 
+import io.github.vkn.profile.CStack;
+import io.github.vkn.profile.ProfiledThreads;
+import io.github.vkn.profile.Sampling;
 import io.github.vkn.profile.Type;
+import one.profiler.Counter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -16,10 +20,81 @@ class AsyncProfilerTest {
     void canRun(@TempDir Path tmpDir) {
         var rand = ThreadLocalRandom.current().nextInt();
         var absolutePath = tmpDir.resolve("testresult" + rand).toAbsolutePath();
-        var profiler = new AsyncProfiler(Type.JFR, "cpu,lock", absolutePath.toString());
+        var profiler = new AsyncProfiler(Type.JFR, "cpu,lock", ProfilerOptions.DEFAULT, absolutePath.toString());
         profiler.start();
         profiler.stop();
         assertThat(Files.exists(Path.of(absolutePath + "_cpu_lock.jfr"))).isTrue();
     }
 
+    @Test
+    void collapsed(@TempDir Path tmpDir) {
+        var absolutePath = tmpDir.resolve("collapsed").toAbsolutePath();
+        var profiler = new AsyncProfiler(Type.COLLAPSED, "cpu", ProfilerOptions.DEFAULT, absolutePath.toString());
+        profiler.start();
+        profiler.stop();
+        assertThat(profiler.output()).hasValue(Path.of(absolutePath + "_cpu.collapsed"));
+        assertThat(profiler.recording()).isEmpty();
+        assertThat(Path.of(absolutePath + "_cpu.collapsed")).exists();
+    }
+
+    @Test
+    void samplingOptions(@TempDir Path tmpDir) throws NoSuchMethodException {
+        var options = ProfilerOptions.of(AsyncProfilerTest.class.getDeclaredMethod("tuned").getAnnotation(Sampling.class));
+        assertThat(options.asyncProfilerArguments())
+                .isEqualTo(",interval=1000000,wall=5000000,lock=0,alloc=1024,jstackdepth=64,cstack=no,threads");
+        assertThat(options.events("cpu,alloc")).isEqualTo("itimer,alloc");
+
+        var absolutePath = tmpDir.resolve("tuned").toAbsolutePath();
+        var profiler = new AsyncProfiler(Type.JFR, "cpu,alloc", options, absolutePath.toString());
+        profiler.start();
+        profiler.stop();
+        assertThat(profiler.output()).hasValue(Path.of(absolutePath + "_itimer_alloc.jfr"));
+        assertThat(Path.of(absolutePath + "_itimer_alloc.jfr")).exists();
+    }
+
+    @Test
+    void filterThreads(@TempDir Path tmpDir) throws InterruptedException {
+        var options = new ProfilerOptions(-1, -1, -1, -1, -1, CStack.DEFAULT, false, false, false, true);
+        assertThat(options.asyncProfilerArguments()).isEqualTo(",filter");
+
+        Thread registered = new Thread(AsyncProfilerTest::registeredWork, "registered");
+        Thread other = new Thread(AsyncProfilerTest::otherWork, "other");
+        var profiler = new AsyncProfiler(Type.FLAME, "wall", options, tmpDir.resolve("filtered").toString());
+        profiler.start();
+        try {
+            registered.start();
+            other.start();
+            registered.join();
+            other.join();
+            String stacks = one.profiler.AsyncProfiler.getInstance().dumpCollapsed(Counter.SAMPLES);
+            assertThat(stacks).contains("registeredWork").doesNotContain("otherWork");
+        } finally {
+            profiler.stop();
+            ProfiledThreads.unregister(registered);
+        }
+        assertThat(ThreadFilter.threads()).doesNotContain(registered);
+    }
+
+    private static void registeredWork() {
+        ProfiledThreads.register(Thread.currentThread());
+        sleep();
+    }
+
+    private static void otherWork() {
+        sleep();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Sampling(interval = 1, wall = 5, lock = 0, alloc = 1024, stackDepth = 64, cstack = CStack.NO, threads = true,
+            itimer = true)
+    private static void tuned() {
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.Baseline;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BaselineStoreTest {
+
+    @Test
+    void key() {
+        assertThat(BaselineStore.key("a.B", "m", "cpu,alloc")).isEqualTo("a.B.m[cpu,alloc]");
+    }
+
+    @Test
+    void entryRoundTrip() {
+        var entry = new BaselineEntry(10, 1234.5, 12.3, 2000, -1, "a.B.m;c.D.n");
+        assertThat(BaselineEntry.parse(entry.format())).isEqualTo(entry);
+    }
+
+    @Test
+    void update(@TempDir Path dir) throws IOException {
+        var store = new BaselineStore(dir.resolve("baseline.txt"));
+        var first = new BaselineEntry(10, 100, 1, 120, 0, "");
+        var second = new BaselineEntry(10, 200, 1, 220, 0, "");
+
+        assertThat(store.update("k", previous -> Optional.of(first))).isEmpty();
+        assertThat(store.update("k", previous -> Optional.empty())).contains(first);
+        assertThat(store.update("k", previous -> Optional.of(second))).contains(first);
+        assertThat(store.read()).containsEntry("k", second);
+        assertThat(Files.list(dir)).extracting(p -> p.getFileName().toString())
+                .containsExactlyInAnyOrder("baseline.txt", "baseline.txt.lock");
+    }
+
+    @Test
+    void skipsMalformedLines(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("baseline.txt");
+        Files.writeString(file, "# comment\nbroken=1,2\nk=1,2.0,3.0,4,5.0\n");
+        assertThat(new BaselineStore(file).read()).containsOnlyKeys("k");
+    }
+
+    @Test
+    void separatesKeyAtTheFirstEqualsSignAfterTheEvents(@TempDir Path dir) throws IOException {
+        var store = new BaselineStore(dir.resolve("baseline.txt"));
+        var entry = new BaselineEntry(10, 100, 1, 120, 0, "a.B.m;a.B.lambda$x=y");
+        String key = BaselineStore.key("a.B", "sweep(n=10)", "cpu");
+        store.update(key, previous -> Optional.of(entry));
+        store.update("k", previous -> Optional.of(entry));
+        assertThat(store.read()).containsEntry(key, entry).containsEntry("k", entry).hasSize(2);
+    }
+
+    @Test
+    void concurrentUpdates(@TempDir Path dir) throws IOException {
+        var store = new BaselineStore(dir.resolve("baseline.txt"));
+        CompletableFuture.allOf(IntStream.range(0, 16)
+                .mapToObj(i -> CompletableFuture.runAsync(() ->
+                        store.update("k" + i, previous -> Optional.of(new BaselineEntry(i, i, 0, i, -1, "")))))
+                .toArray(CompletableFuture[]::new)).join();
+        assertThat(store.read()).hasSize(16);
+    }
+
+    @Test
+    @Baseline(tolerance = 0.1, alpha = 0.01)
+    void pinnedBaselineDetectsDrift(@TempDir Path dir) throws NoSuchMethodException, IOException {
+        Baseline config = getClass().getDeclaredMethod("pinnedBaselineDetectsDrift", Path.class)
+                .getAnnotation(Baseline.class);
+        var store = new BaselineStore(dir.resolve("baseline.txt"));
+        var first = new BaselineEntry(1000, 100, 5, 120, 0, "");
+        // each run is 8% slower than the one before, within the 10% tolerance
+        var second = new BaselineEntry(1000, 108, 5, 130, 0, "");
+        var third = new BaselineEntry(1000, 116.6, 5, 140, 0, "");
+
+        assertThat(run(store, config, first, false)).isEmpty();
+        assertThat(run(store, config, second, false)).isEmpty();
+        assertThat(store.read()).containsEntry("k", first);
+        assertThat(run(store, config, third, false)).singleElement()
+                .asString().startsWith("mean latency 117ns regressed from baseline 100ns");
+
+        assertThat(run(store, config, third, true)).hasSize(1);
+        assertThat(store.read()).as("accepted").containsEntry("k", third);
+    }
+
+    private static List<String> run(BaselineStore store, Baseline config, BaselineEntry current, boolean accept) {
+        List<String> regressions = new ArrayList<>();
+        store.update("k", previous -> RegressionCheck.update(config, previous, current, accept, regressions));
+        return regressions;
+    }
+
+    @Test
+    @Baseline(tolerance = 0.1, alpha = 0.01)
+    void regressions() throws NoSuchMethodException {
+        Baseline config = getClass().getDeclaredMethod("regressions").getAnnotation(Baseline.class);
+        var baseline = new BaselineEntry(1000, 100, 5, 120, 0, "");
+
+        assertThat(RegressionCheck.regressions(config, baseline, new BaselineEntry(1000, 105, 5, 125, 0, ""))).isEmpty();
+        assertThat(RegressionCheck.regressions(config, baseline, new BaselineEntry(1000, 150, 5, 180, 16, "")))
+                .hasSize(2)
+                .anySatisfy(r -> assertThat(r).startsWith("mean latency 150ns regressed from baseline 100ns (+50.0%"))
+                .anySatisfy(r -> assertThat(r).startsWith("allocation 16.0 bytes/invocation"));
+        // too few samples to be significant
+        assertThat(RegressionCheck.regressions(config, baseline, new BaselineEntry(1, 150, 0, 150, 0, ""))).isEmpty();
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.Complexity;
+import io.github.vkn.profile.PerformanceBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BudgetCheckTest {
+
+    @Test
+    void withinBudget() throws NoSuchMethodException {
+        var histogram = histogram(500_000, 900_000);
+        assertThat(BudgetCheck.violations(budget("withinBudget"), histogram, null)).isEmpty();
+    }
+
+    @Test
+    void latencyExceeded() throws NoSuchMethodException {
+        var histogram = histogram(2_000_000, 3_000_000);
+        assertThat(BudgetCheck.violations(budget("latencyBudget"), histogram, null))
+                .hasSize(2)
+                .anySatisfy(v -> assertThat(v).startsWith("p99 latency 3.0").endsWith("exceeds budget 1.000ms"))
+                .anySatisfy(v -> assertThat(v).startsWith("mean latency 2.5"));
+    }
+
+    @Test
+    void allocationExceeded() throws NoSuchMethodException {
+        var allocations = new AllocationCounter();
+        allocations.begin();
+        var ignored = new byte[1024];
+        allocations.end();
+        assertThat(ignored).hasSize(1024);
+        assertThat(BudgetCheck.violations(budget("allocationFree"), histogram(1), allocations))
+                .singleElement()
+                .asString()
+                .contains("bytes/invocation exceeds budget 0 bytes");
+    }
+
+    @Test
+    void complexityExceeded() throws NoSuchMethodException {
+        var linear = new ComplexityFit(Complexity.LINEAR, 3, 0.01);
+        assertThat(BudgetCheck.violations(budget("withinBudget"), linear)).isEmpty();
+        assertThat(BudgetCheck.violations(budget("constant"), linear))
+                .containsExactly("scaling O(n) exceeds budget O(1)");
+    }
+
+    @Test
+    void jvmActivityExceeded() throws NoSuchMethodException {
+        var telemetry = JvmTelemetry.decode("2 1 30000000 20000000 0 0 3 4 0");
+        assertThat(BudgetCheck.violations(budget("withinBudget"), telemetry)).isEmpty();
+        assertThat(BudgetCheck.violations(budget("noGc"), telemetry))
+                .containsExactly("2 garbage collections exceed budget 0", "1 major garbage collections exceed budget 0",
+                        "GC pause 20.000ms exceeds budget 10.000ms", "3 deoptimizations exceed budget 0");
+        assertThat(BudgetCheck.violations(budget("noGc"), new JvmTelemetry())).isEmpty();
+    }
+
+    @Test
+    void lockContentionNotMeasured() throws NoSuchMethodException {
+        assertThat(BudgetCheck.hasLockLimits(budget("withinBudget"))).isFalse();
+        assertThat(BudgetCheck.hasLockLimits(budget("noContention"))).isTrue();
+        assertThat(BudgetCheck.violations(budget("noContention"), null, histogram(1))).isEmpty();
+    }
+
+    private static LatencyHistogram histogram(long... values) {
+        var histogram = new LatencyHistogram();
+        for (long value : values) {
+            histogram.record(value);
+        }
+        return histogram;
+    }
+
+    private static PerformanceBudget budget(String method) throws NoSuchMethodException {
+        return Budgets.class.getDeclaredMethod(method).getAnnotation(PerformanceBudget.class);
+    }
+
+    @SuppressWarnings("unused")
+    private static class Budgets {
+        @PerformanceBudget(maxP99 = 1, maxMean = 1)
+        void withinBudget() {
+        }
+
+        @PerformanceBudget(maxGcCount = 0, maxMajorGcCount = 0, maxGcPause = 10, maxDeoptimizations = 0)
+        void noGc() {
+        }
+
+        @PerformanceBudget(maxComplexity = Complexity.CONSTANT)
+        void constant() {
+        }
+
+        @PerformanceBudget(maxP99 = 1000, maxMean = 1000, unit = TimeUnit.MICROSECONDS)
+        void latencyBudget() {
+        }
+
+        @PerformanceBudget(maxAllocatedBytes = 0)
+        void allocationFree() {
+        }
+
+        @PerformanceBudget(maxBlocked = 0, maxContendedRatio = 0)
+        void noContention() {
+        }
+    }
+}
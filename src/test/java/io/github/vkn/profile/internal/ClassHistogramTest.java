@@ -0,0 +1,47 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassHistogramTest {
+
+    private static final String BEFORE = """
+             num     #instances         #bytes  class name (module)
+            -------------------------------------------------------
+               1:          1000          64000  [B (java.base@21)
+               2:           500          12000  java.lang.String (java.base@21)
+               3:            10            320  com.example.Cache$Entry
+            Total          1510          76320
+            """;
+    private static final String AFTER = """
+             num     #instances         #bytes  class name (module)
+            -------------------------------------------------------
+               1:          1100          70400  [B (java.base@21)
+               2:           400           9600  java.lang.String (java.base@21)
+               3:           510          16320  com.example.Cache$Entry
+               4:             5            120  com.example.Key
+            Total          2015          96440
+            """;
+
+    @Test
+    void parse() {
+        var histogram = ClassHistogram.parse(BEFORE);
+        assertThat(histogram.size()).isEqualTo(3);
+        assertThat(histogram.instances("[B")).isEqualTo(1000);
+        assertThat(histogram.instances("com.example.Cache$Entry")).isEqualTo(10);
+        assertThat(histogram.instances("com.example.Missing")).isZero();
+    }
+
+    @Test
+    void growth() {
+        assertThat(ClassHistogram.parse(AFTER).growth(ClassHistogram.parse(BEFORE), 2)).containsExactly(
+                "+500 instances +16000B com.example.Cache$Entry",
+                "+100 instances +6400B [B");
+    }
+
+    @Test
+    void take() {
+        assertThat(ClassHistogram.take().instances("java.lang.Class")).isPositive();
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ComparisonTest {
+
+    @Test
+    void speedup() {
+        var comparison = new Comparison(100);
+        for (int i = 0; i < 100; i++) {
+            // the candidate takes half the time, with noise that affects both sides of a round alike
+            long noise = i % 7 * 10;
+            comparison.record(2_000 + 2 * noise, 1_000 + noise + i % 3);
+        }
+
+        assertThat(comparison.rounds()).isEqualTo(100);
+        assertThat(comparison.speedup()).isCloseTo(2, within(0.01));
+        double[] interval = comparison.confidenceInterval(0.01);
+        assertThat(interval[0]).isLessThan(comparison.speedup()).isGreaterThan(1.9);
+        assertThat(interval[1]).isGreaterThan(comparison.speedup()).isLessThan(2.1);
+        assertThat(comparison.pValue()).isLessThan(1e-6);
+        assertThat(comparison.baseline().count()).isEqualTo(100);
+        assertThat(comparison.reportEntries(0.01)).containsEntry("comparison.rounds", "100")
+                .containsKeys("comparison.speedup", "comparison.speedupLower", "comparison.pValue");
+        assertThat(comparison.format("old", "new", 0.01)).contains("old: count=100").contains("(99% confidence)");
+    }
+
+    @Test
+    void noDifference() {
+        var comparison = new Comparison(50);
+        for (int i = 0; i < 50; i++) {
+            comparison.record(1_000 + i % 5, 1_000 + (i + 2) % 5);
+        }
+
+        assertThat(comparison.speedup()).isCloseTo(1, within(0.01));
+        double[] interval = comparison.confidenceInterval(0.01);
+        assertThat(interval[0]).isLessThan(1);
+        assertThat(interval[1]).isGreaterThan(1);
+        assertThat(comparison.pValue()).isGreaterThan(0.1);
+    }
+}
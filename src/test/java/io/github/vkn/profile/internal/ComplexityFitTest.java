@@ -0,0 +1,51 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.Complexity;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.LongToDoubleFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class ComplexityFitTest {
+
+    private static final long[] SIZES = {1_000, 10_000, 100_000, 1_000_000};
+
+    @Test
+    void fitsEveryComplexity() {
+        assertThat(fit(n -> 500).complexity()).isEqualTo(Complexity.CONSTANT);
+        assertThat(fit(n -> 20 * Math.log(n)).complexity()).isEqualTo(Complexity.LOGARITHMIC);
+        assertThat(fit(n -> 3.0 * n).complexity()).isEqualTo(Complexity.LINEAR);
+        assertThat(fit(n -> 3.0 * n * Math.log(n)).complexity()).isEqualTo(Complexity.LINEARITHMIC);
+        assertThat(fit(n -> 0.5 * n * n).complexity()).isEqualTo(Complexity.QUADRATIC);
+    }
+
+    @Test
+    void toleratesNoise() {
+        double[] noise = {1.08, 0.93, 1.05, 0.97};
+        double[] times = new double[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            times[i] = 3.0 * SIZES[i] * noise[i];
+        }
+        var fit = ComplexityFit.of(SIZES, times);
+        assertThat(fit.complexity()).isEqualTo(Complexity.LINEAR);
+        assertThat(fit.coefficient()).isCloseTo(3.0, within(0.2));
+        assertThat(fit.format()).startsWith("O(n) (coefficient=3ns, rms=");
+    }
+
+    @Test
+    void requiresTwoSizes() {
+        assertThatThrownBy(() -> ComplexityFit.of(new long[]{10}, new double[]{1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ComplexityFit fit(LongToDoubleFunction time) {
+        double[] times = new double[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            times[i] = time.applyAsDouble(SIZES[i]);
+        }
+        return ComplexityFit.of(SIZES, times);
+    }
+}
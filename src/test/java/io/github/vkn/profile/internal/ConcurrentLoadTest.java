@@ -0,0 +1,89 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrentLoadTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    @SuppressWarnings("unused")
+    void work() {
+        calls.incrementAndGet();
+        threads.add(Thread.currentThread());
+    }
+
+    Void proceed() {
+        work();
+        return null;
+    }
+
+    @SuppressWarnings("unused")
+    void fail() {
+        throw new IllegalStateException("boom");
+    }
+
+    @Test
+    void countMode() throws Throwable {
+        var histogram = new LatencyHistogram();
+        var load = new ConcurrentLoad(4, false, histogram, null);
+        try {
+            MethodInvoker invoker = invoker("work");
+            for (int i = 0; i < 10; i++) {
+                load.run(this::proceed, invoker, null);
+            }
+            load.merge();
+            load.merge();
+
+            assertThat(calls).hasValue(40);
+            assertThat(threads).hasSize(4).contains(Thread.currentThread());
+            assertThat(histogram.count()).isEqualTo(40);
+            assertThat(load.histogram(1).count()).isEqualTo(10);
+            assertThat(load.aggregateOpsPerSecond()).isPositive();
+            assertThat(load.reportEntries()).containsEntry("load.threads", "4").containsKeys("load.thread.3.p99");
+            assertThat(load.format()).startsWith("threads=4 aggregate=");
+        } finally {
+            load.close();
+        }
+    }
+
+    @Test
+    void throughputMode() throws Throwable {
+        var histogram = new LatencyHistogram();
+        var throughput = new Throughput(TimeUnit.MILLISECONDS.toNanos(50));
+        var load = new ConcurrentLoad(2, true, histogram, throughput);
+        try {
+            load.run(this::proceed, invoker("work"), null);
+            load.merge();
+            assertThat(throughput.operations()).isEqualTo(calls.get()).isEqualTo(histogram.count()).isGreaterThan(2);
+        } finally {
+            load.close();
+        }
+    }
+
+    @Test
+    void propagatesFailures() throws Throwable {
+        var load = new ConcurrentLoad(3, false, new LatencyHistogram(), null);
+        try {
+            assertThatThrownBy(() -> load.run(this::proceed, invoker("fail"), null))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("boom");
+            load.run(this::proceed, invoker("work"), null);
+            assertThat(calls).hasValue(4);
+        } finally {
+            load.close();
+        }
+    }
+
+    private MethodInvoker invoker(String method) throws NoSuchMethodException {
+        return new MethodInvoker(getClass().getDeclaredMethod(method), this, new Object[0]);
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DifferentialFlameGraphTest {
+
+    @Test
+    void aggregatesBothProfiles(@TempDir Path dir) throws IOException {
+        Path previous = Files.writeString(dir.resolve("previous.collapsed"), """
+                main;parse;tokenize 60
+                main;parse;validate 20
+                main;write 20
+                """);
+        Path current = Files.writeString(dir.resolve("current.collapsed"), """
+                main;parse;tokenize 30
+                main;parse;validate 50
+                main;write 20
+                main;write;flush<T> 5
+                """);
+
+        DifferentialFlameGraph graph = DifferentialFlameGraph.of(previous, current);
+
+        assertThat(graph.weights()).containsExactly(100, 105);
+        assertThat(graph.weights("main", "parse")).containsExactly(80, 80);
+        assertThat(graph.weights("main", "parse", "validate")).containsExactly(20, 50);
+        assertThat(graph.weights("main", "write", "flush<T>")).containsExactly(0, 5);
+        assertThat(graph.weights("main", "missing")).isNull();
+        assertThat(graph.frames()).isEqualTo(6);
+        assertThat(graph.truncated()).isZero();
+
+        Path html = dir.resolve("diff.html");
+        graph.write(html, "current compared to previous");
+        assertThat(html).content()
+                .contains("<svg")
+                .contains("<title>validate (50 samples, previously 20, +27.62%)</title>")
+                .contains("fill=\"rgb(0,0,255)\"")
+                .contains("tokenize (30 samples, previously 60, -31.43%)")
+                .contains("flush&lt;T&gt;");
+    }
+
+    @Test
+    void boundsTheTree() {
+        DifferentialFlameGraph graph = new DifferentialFlameGraph(2);
+        graph.add("a;b;c 3", true);
+        graph.add("a;d 2", true);
+        graph.add("no weight", true);
+
+        assertThat(graph.frames()).isEqualTo(2);
+        assertThat(graph.weights("a")).containsExactly(0, 5);
+        assertThat(graph.weights("a", "b")).containsExactly(0, 3);
+        assertThat(graph.truncated()).isEqualTo(5);
+    }
+
+    @Test
+    void previous() {
+        assertThat(DifferentialFlameGraph.previous(Path.of("dir", "Test.method_cpu.collapsed")))
+                .isEqualTo(Path.of("dir", "Test.method_cpu_previous.collapsed"));
+        assertThat(DifferentialFlameGraph.isCollapsed(Path.of("Test.method_cpu.html"))).isFalse();
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.ProfiledTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExclusiveProfilerTest {
+
+    @Test
+    void serializesSessions() throws InterruptedException {
+        List<String> events = new CopyOnWriteArrayList<>();
+        var first = new ExclusiveProfiler(new RecordingProfiler("first", events));
+        var second = new ExclusiveProfiler(new RecordingProfiler("second", events));
+
+        first.start();
+        first.start();
+        var secondStarted = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            second.start();
+            secondStarted.countDown();
+            second.stop();
+        });
+        thread.start();
+        assertThat(secondStarted.await(100, TimeUnit.MILLISECONDS)).as("second waits for first").isFalse();
+        first.close();
+        assertThat(secondStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        thread.join();
+
+        assertThat(events).containsExactly("first start", "first stop", "second start", "second stop");
+    }
+
+    @Test
+    void releasesSessionOnFailedStart() {
+        var failing = new ExclusiveProfiler(new NoOpProfiler() {
+            @Override
+            public void start() {
+                throw new IllegalStateException("perf_event_open failed");
+            }
+        });
+        assertThatThrownBy(failing::start).isInstanceOf(IllegalStateException.class);
+
+        var next = new ExclusiveProfiler(new NoOpProfiler());
+        next.start();
+        next.stop();
+        failing.close();
+    }
+
+    @Test
+    void profiledTestHoldsResourceLock() {
+        assertThat(ProfiledTest.class.getAnnotation(ResourceLock.class).value()).isEqualTo(ProfiledTest.PROFILER_LOCK);
+    }
+
+    private record RecordingProfiler(String name, List<String> events) implements Profiler {
+        @Override
+        public void start() {
+            events.add(name + " start");
+        }
+
+        @Override
+        public void stop() {
+            events.add(name + " stop");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HeapTrendTest {
+
+    private static final long[] INVOCATIONS = {1, 11, 21, 31, 41, 51};
+
+    @Test
+    void detectsLinearGrowth() {
+        long[] noise = {3_000, -2_000, 1_000, -4_000, 2_000, 0};
+        long[] used = new long[INVOCATIONS.length];
+        for (int i = 0; i < used.length; i++) {
+            used[i] = 50_000_000 + 1_000 * INVOCATIONS[i] + noise[i];
+        }
+        var trend = HeapTrend.of(INVOCATIONS, used, used.length, 0.01);
+        assertThat(trend.slope()).isCloseTo(1_000, within(100.0));
+        assertThat(trend.lower()).isLessThan(trend.slope()).isPositive();
+        assertThat(trend.upper()).isGreaterThan(trend.slope());
+        assertThat(trend.r2()).isGreaterThan(0.95);
+        assertThat(trend.grows(0)).isTrue();
+        assertThat(trend.grows(2_000)).isFalse();
+        assertThat(trend.format()).startsWith("growth=+").endsWith("samples=6");
+        assertThat(trend.reportEntries()).containsEntry("heap.samples", "6");
+    }
+
+    @Test
+    void ignoresNoise() {
+        long[] used = {50_003_000, 49_998_000, 50_001_000, 49_996_000, 50_002_000, 50_000_000};
+        var trend = HeapTrend.of(INVOCATIONS, used, used.length, 0.01);
+        assertThat(trend.lower()).isNegative();
+        assertThat(trend.grows(0)).isFalse();
+    }
+
+    @Test
+    void requiresThreeSamples() {
+        assertThatThrownBy(() -> HeapTrend.of(new long[]{1, 2}, new long[]{1, 2}, 2, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
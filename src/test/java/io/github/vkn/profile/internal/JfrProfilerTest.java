@@ -0,0 +1,76 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.CStack;
+import io.github.vkn.profile.Type;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrProfilerTest {
+
+    private static volatile Object sink;
+
+    @Test
+    void recordsRequestedEvents(@TempDir Path dir) {
+        var profiler = new JfrProfiler(Type.JFR, "cpu,alloc", ProfilerOptions.DEFAULT, dir.resolve("test").toString());
+        profiler.start();
+        profiler.start();
+        long end = System.nanoTime() + 300_000_000L;
+        while (System.nanoTime() < end) {
+            sink = new byte[1024];
+        }
+        profiler.stop();
+        profiler.stop();
+
+        assertThat(JfrProfiler.hasRecorded()).isTrue();
+        Path recording = profiler.recording().orElseThrow();
+        assertThat(recording).isEqualTo(dir.resolve("test_cpu_alloc.jfr")).exists();
+        assertThat(JfrSummary.of(recording, 5).format()).contains("JfrProfilerTest.recordsRequestedEvents");
+    }
+
+    @Test
+    void classSessionMarksInvocations(@TempDir Path dir) throws IOException {
+        var session = new ClassSession(new ExclusiveProfiler(
+                new JfrProfiler(Type.JFR, "cpu", ProfilerOptions.DEFAULT, dir.resolve("TestClass").toString())));
+        session.start();
+        session.begin("TestClass.test", InvocationEvent.WARMUP, 1);
+        session.end();
+        session.start();
+        session.begin("TestClass.test", InvocationEvent.PROFILING, 1);
+        session.end();
+        session.close();
+
+        List<RecordedEvent> markers = RecordingFile.readAllEvents(session.output().orElseThrow()).stream()
+                .filter(event -> event.getEventType().getName().equals(InvocationEvent.NAME))
+                .toList();
+        assertThat(markers).extracting(event -> event.getString("phase"))
+                .containsExactlyInAnyOrder(InvocationEvent.WARMUP, InvocationEvent.PROFILING);
+        assertThat(markers).allSatisfy(event -> {
+            assertThat(event.getString("test")).isEqualTo("TestClass.test");
+            assertThat(event.getInt("invocation")).isOne();
+        });
+    }
+
+    @Test
+    void settings() {
+        assertThat(JfrProfiler.settings("cpu,lock,wall,cache-misses", ProfilerOptions.DEFAULT))
+                .containsEntry("jdk.ExecutionSample#period", "10 ms")
+                .containsEntry("jdk.JavaMonitorEnter#threshold", "10 ms")
+                .containsEntry("jdk.NativeMethodSample#enabled", "true")
+                .containsEntry("jdk.Deoptimization#enabled", "true")
+                .containsEntry(InvocationEvent.NAME + "#enabled", "true")
+                .doesNotContainKey("jdk.ObjectAllocationSample#enabled");
+        var options = new ProfilerOptions(1_000_000, 5_000_000, 0, -1, -1, CStack.DEFAULT, false, false, false, false);
+        assertThat(JfrProfiler.settings("cpu,lock", options))
+                .containsEntry("jdk.ExecutionSample#period", "1000000 ns")
+                .containsEntry("jdk.NativeMethodSample#period", "5000000 ns")
+                .containsEntry("jdk.ThreadPark#threshold", "0 ns");
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.vkn.profile.internal;
+
+import io.github.vkn.profile.PerformanceBudget;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrSummaryTest {
+
+    private static final Object MONITOR = new Object();
+    private static volatile Object sink;
+
+    @Test
+    void summarize(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(1));
+            recording.enable("jdk.ObjectAllocationSample").with("throttle", "off");
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            spin();
+            contend();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        JfrSummary summary = JfrSummary.of(file, 100);
+
+        assertThat(summary.cpuSamples()).isPositive();
+        assertThat(summary.selfCpu()).hasSizeLessThanOrEqualTo(100).isNotEmpty();
+        assertThat(summary.totalCpu()).extracting(TopCounter.Entry::key)
+                .contains(JfrSummaryTest.class.getName() + ".spin");
+        assertThat(summary.allocations()).isNotEmpty();
+        assertThat(summary.monitors()).extracting(TopCounter.Entry::key).contains("java.lang.Object");
+        assertThat(summary.format()).contains("Top CPU frames (self):", "Most contended monitors:",
+                "Most contended stacks:");
+        assertThat(summary.reportEntries()).containsKeys("jfr.cpu.samples", "jfr.cpu.self.1", "jfr.monitor.1",
+                "jfr.lockStack.1");
+    }
+
+    @Test
+    void lockContention(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            contend();
+            recording.stop();
+            recording.dump(file);
+        }
+        var histogram = new LatencyHistogram();
+        histogram.record(Duration.ofMillis(100).toNanos());
+
+        JfrSummary summary = JfrSummary.of(file, 10);
+
+        assertThat(summary.lockEvents()).isPositive();
+        assertThat(summary.maxBlockedNanos()).isGreaterThan(Duration.ofMillis(20).toNanos());
+        assertThat(summary.blockedNanos()).isGreaterThanOrEqualTo(summary.maxBlockedNanos());
+        assertThat(summary.maxBlockedMonitor()).isEqualTo("java.lang.Object");
+        assertThat(summary.lockStacks()).extracting(TopCounter.Entry::key)
+                .anySatisfy(stack -> assertThat(stack).startsWith(JfrSummaryTest.class.getName() + ".contend"));
+        assertThat(summary.contendedRatio(histogram)).isGreaterThan(0.2);
+        assertThat(summary.formatContention(histogram)).startsWith("Lock contention: ")
+                .contains("of operation time").endsWith("(java.lang.Object)");
+        assertThat(summary.contentionEntries(histogram)).containsEntry("locks.maxBlockedMonitor", "java.lang.Object");
+
+        var budget = Budgets.class.getDeclaredMethod("lockFree").getAnnotation(PerformanceBudget.class);
+        assertThat(BudgetCheck.violations(budget, summary, histogram))
+                .hasSize(2)
+                .anySatisfy(v -> assertThat(v).startsWith("blocked on java.lang.Object for ").endsWith("exceeds budget 1.000ms"))
+                .anySatisfy(v -> assertThat(v).startsWith("contended time ").endsWith("exceeds budget 1.00%"));
+
+        Thread current = Thread.currentThread();
+        assertThat(JfrSummary.of(file, 10, JfrSummary.testLocks(Map.of(current.getId(), current.getName()))).lockEvents())
+                .as("blocked on the test thread").isPositive();
+        assertThat(JfrSummary.of(file, 10, JfrSummary.testLocks(Map.of(Long.MAX_VALUE, "other"))).lockEvents())
+                .as("blocked on another thread").isZero();
+    }
+
+    @Test
+    void topCounterIsBounded() {
+        var counter = new TopCounter(8);
+        counter.add("hot", 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            counter.add("cold" + i, 1);
+        }
+        assertThat(counter.top(100)).hasSizeLessThanOrEqualTo(8);
+        assertThat(counter.top(1)).singleElement().extracting(TopCounter.Entry::key).isEqualTo("hot");
+    }
+
+    private static void spin() {
+        long end = System.nanoTime() + Duration.ofMillis(300).toNanos();
+        List<Object> objects = new ArrayList<>();
+        while (System.nanoTime() < end) {
+            objects.add(new long[64]);
+            if (objects.size() > 1_000) {
+                sink = objects;
+                objects = new ArrayList<>();
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class Budgets {
+        @PerformanceBudget(maxBlocked = 1, maxContendedRatio = 0.01)
+        void lockFree() {
+        }
+    }
+
+    private static void contend() throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            synchronized (MONITOR) {
+                locked.countDown();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        holder.start();
+        locked.await();
+        synchronized (MONITOR) {
+            sink = MONITOR;
+        }
+        holder.join();
+    }
+}
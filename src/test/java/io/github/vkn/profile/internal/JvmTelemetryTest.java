@@ -0,0 +1,80 @@
+package io.github.vkn.profile.internal;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JvmTelemetryTest {
+
+    @Test
+    void countsGarbageCollections() throws InterruptedException {
+        var telemetry = new JvmTelemetry();
+        telemetry.start();
+        System.gc();
+        // GC notifications are delivered asynchronously
+        for (int i = 0; i < 500 && telemetry.majorGcCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        telemetry.stop();
+
+        assertThat(telemetry.gcCount()).isPositive();
+        assertThat(telemetry.majorGcCount()).isPositive();
+        assertThat(telemetry.gcTimeNanos()).isNotNegative();
+        assertThat(telemetry.maxGcPauseNanos()).isNotNegative();
+        assertThat(telemetry.deoptimizations()).isEqualTo(-1);
+        assertThat(telemetry.format()).startsWith("gc=").doesNotContain("deopts");
+        assertThat(telemetry.reportEntries()).containsKeys("jvm.gc.count", "jvm.gc.major", "jvm.jit.timeNanos");
+    }
+
+    @Test
+    void ignoresActivityOutsideTheWindow() {
+        var telemetry = new JvmTelemetry();
+        telemetry.start();
+        telemetry.stop();
+        System.gc();
+
+        assertThat(telemetry.gcCount()).isZero();
+    }
+
+    @Test
+    void readsDeoptimizationsAndSafepointsFromRecording(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("telemetry.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.Deoptimization");
+            recording.enable("jdk.SafepointBegin");
+            recording.start();
+            System.gc();
+            recording.stop();
+            recording.dump(file);
+        }
+        var telemetry = new JvmTelemetry();
+        telemetry.addRecording(file);
+
+        assertThat(telemetry.deoptimizations()).isNotNegative();
+        assertThat(telemetry.safepoints()).isPositive();
+        assertThat(telemetry.safepointSyncNanos()).isNotNegative();
+        assertThat(telemetry.format()).contains("deopts=", "safepoints=");
+        assertThat(telemetry.reportEntries()).containsKeys("jvm.deoptimizations", "jvm.safepoints");
+    }
+
+    @Test
+    void encodeAndAdd() {
+        var fork = JvmTelemetry.decode("3 1 2000 1500 4096 7000 2 5 300");
+        var total = new JvmTelemetry();
+        total.add(fork);
+        total.add(JvmTelemetry.decode("1 0 100 100 0 10 -1 -1 -1"));
+
+        assertThat(total.gcCount()).isEqualTo(4);
+        assertThat(total.majorGcCount()).isEqualTo(1);
+        assertThat(total.maxGcPauseNanos()).isEqualTo(1500);
+        assertThat(total.deoptimizations()).isEqualTo(2);
+        assertThat(JvmTelemetry.decode(total.encode()).encode()).isEqualTo(total.encode());
+        assertThat(new JvmTelemetry().encode()).endsWith("-1 -1 -1");
+        assertThatThrownBy(() -> JvmTelemetry.decode("1 2")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
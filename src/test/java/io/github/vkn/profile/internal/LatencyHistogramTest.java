@@ -0,0 +1,64 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void empty() {
+        var histogram = new LatencyHistogram();
+        assertThat(histogram.count()).isZero();
+        assertThat(histogram.min()).isZero();
+        assertThat(histogram.max()).isZero();
+        assertThat(histogram.mean()).isZero();
+        assertThat(histogram.percentile(99)).isZero();
+    }
+
+    @Test
+    void percentiles() {
+        var histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000);
+        }
+        assertThat(histogram.count()).isEqualTo(10_000);
+        assertThat(histogram.min()).isEqualTo(1_000);
+        assertThat(histogram.max()).isEqualTo(10_000_000);
+        assertThat(histogram.mean()).isCloseTo(5_000_500, within(1.0));
+        assertThat(histogram.percentile(50)).isCloseTo(5_000_000, within(5_000_000 / 100L));
+        assertThat(histogram.percentile(99)).isCloseTo(9_900_000, within(9_900_000 / 100L));
+        assertThat(histogram.percentile(100)).isEqualTo(10_000_000);
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        var histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(127);
+        assertThat(histogram.min()).isZero();
+        assertThat(histogram.percentile(50)).isEqualTo(3);
+        assertThat(histogram.percentile(100)).isEqualTo(127);
+    }
+
+    @Test
+    void indexRoundTrip() {
+        for (long value : new long[]{0, 1, 127, 128, 255, 256, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestEquivalentValue(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestEquivalentValue(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    void format() {
+        var histogram = new LatencyHistogram();
+        histogram.record(1_500);
+        assertThat(histogram.format()).startsWith("count=1 min=1.500us");
+        assertThat(histogram.summary()).containsKeys("p50", "p90", "p99", "p99.9");
+    }
+}
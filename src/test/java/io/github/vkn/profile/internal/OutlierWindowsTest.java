@@ -0,0 +1,139 @@
+package io.github.vkn.profile.internal;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutlierWindowsTest {
+
+    private static volatile long sink;
+
+    @Test
+    void fixedThreshold() {
+        var windows = new OutlierWindows(new LatencyHistogram(), 99, 1_000, 16);
+        windows.record(0, 500);
+        windows.record(10_000, 2_000);
+        windows.finish();
+        assertThat(windows.size()).isOne();
+        assertThat(windows.threshold()).isEqualTo(1_000);
+    }
+
+    @Test
+    void keepsInvocationsAboveTheFinalPercentile() {
+        var histogram = new LatencyHistogram();
+        var windows = new OutlierWindows(histogram, 99, -1, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            long duration = i % 100 == 99 ? 1_000_000 : 1_000 + i % 10;
+            histogram.record(duration);
+            windows.record(i * 10_000_000L, duration);
+        }
+        windows.finish();
+        assertThat(windows.size()).isEqualTo(10);
+        assertThat(windows.dropped()).isZero();
+    }
+
+    @Test
+    void discardsFastestOutliersWhenFull() {
+        var windows = new OutlierWindows(new LatencyHistogram(), 99, 0, 4);
+        for (int i = 1; i <= 10; i++) {
+            windows.record(i * 1_000L, i);
+        }
+        assertThat(windows.size()).isLessThanOrEqualTo(4);
+        assertThat(windows.dropped()).isPositive();
+        assertThat(windows.threshold()).isPositive();
+    }
+
+    @Test
+    void discardsHalfOfTiedOutliersWhenFull() {
+        var windows = new OutlierWindows(new LatencyHistogram(), 99, 0, 4);
+        for (int i = 1; i <= 5; i++) {
+            windows.record(i * 1_000L, 7);
+        }
+        assertThat(windows.size()).isEqualTo(3);
+        assertThat(windows.dropped()).isEqualTo(2);
+        windows.finish();
+        assertThat(windows.size()).isEqualTo(3);
+    }
+
+    @Test
+    void recordsWithoutAllocating() {
+        // every invocation is slower than the previous ones, so the windows are compacted again and again
+        var windows = new OutlierWindows(new LatencyHistogram(), 99, 0, 64);
+        for (int i = 1; i <= 100_000; i++) {
+            windows.record(i, i);
+        }
+        long allocated = AllocationCounter.currentThreadAllocatedBytes();
+        for (int i = 100_001; i <= 110_000; i++) {
+            windows.record(i, i);
+        }
+        assertThat(AllocationCounter.currentThreadAllocatedBytes() - allocated).isZero();
+        assertThat(windows.dropped()).isGreaterThan(100_000);
+    }
+
+    @Test
+    void containsEpochTimestamps() {
+        var windows = new OutlierWindows(new LatencyHistogram(), 99, 0, 4);
+        long start = System.nanoTime();
+        windows.record(start, TimeUnit.SECONDS.toNanos(10));
+        assertThat(windows.contains(epochNanos(Instant.now()))).isTrue();
+        assertThat(windows.contains(epochNanos(Instant.now().minusSeconds(60)))).isFalse();
+        assertThat(windows.contains(epochNanos(Instant.now().plusSeconds(60)))).isFalse();
+    }
+
+    @Test
+    void outlierStacks(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("recording.jfr");
+        var windows = new OutlierWindows(new LatencyHistogram(), 99, Duration.ofMillis(150).toNanos(), 16);
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(1));
+            recording.start();
+            long start = System.nanoTime();
+            fast();
+            windows.record(start, System.nanoTime() - start);
+            start = System.nanoTime();
+            slow();
+            windows.record(start, System.nanoTime() - start);
+            recording.stop();
+            recording.dump(file);
+        }
+        windows.finish();
+
+        OutlierStacks stacks = OutlierStacks.of(file, windows);
+
+        assertThat(windows.size()).isOne();
+        assertThat(stacks.cpuSamples()).isPositive();
+        assertThat(stacks.cpu().keySet())
+                .anyMatch(stack -> stack.contains(OutlierWindowsTest.class.getName() + ".slow"))
+                .noneMatch(stack -> stack.contains(OutlierWindowsTest.class.getName() + ".fast"));
+        assertThat(stacks.write(dir.resolve("test").toString()))
+                .containsExactly(dir.resolve("test_outliers_cpu.collapsed"));
+    }
+
+    private static void fast() {
+        spin(Duration.ofMillis(100));
+    }
+
+    private static void slow() {
+        spin(Duration.ofMillis(300));
+    }
+
+    private static void spin(Duration duration) {
+        long end = System.nanoTime() + duration.toNanos();
+        long sum = 0;
+        while (System.nanoTime() < end) {
+            sum += System.nanoTime() % 7;
+        }
+        sink = sum;
+    }
+
+    private static long epochNanos(Instant instant) {
+        return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostProcessorTest {
+
+    @Test
+    void runsOffTheCallingThreadAndDrainsOnClose() {
+        var postProcessor = new PostProcessor();
+        var thread = new AtomicReference<Thread>();
+        var done = new AtomicInteger();
+        postProcessor.submit("first", () -> {
+            thread.set(Thread.currentThread());
+            sleep();
+            done.incrementAndGet();
+        });
+        postProcessor.submit("second", done::incrementAndGet);
+        postProcessor.close();
+
+        assertThat(done).hasValue(2);
+        assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+        assertThat(thread.get().getName()).startsWith("profiling-post-processor-");
+    }
+
+    @Test
+    void callerRunsWhenQueueIsFull() throws InterruptedException {
+        var postProcessor = new PostProcessor();
+        var blocked = new CountDownLatch(1);
+        postProcessor.submit("blocking", () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < PostProcessor.QUEUE_CAPACITY; i++) {
+            postProcessor.submit("queued", () -> {
+            });
+        }
+        var thread = new AtomicReference<Thread>();
+        postProcessor.submit("overflow", () -> thread.set(Thread.currentThread()));
+        blocked.countDown();
+        postProcessor.close();
+
+        assertThat(thread.get()).isSameAs(Thread.currentThread());
+    }
+
+    @Test
+    void failuresAreLoggedAndClosedProcessorRunsInline() {
+        var postProcessor = new PostProcessor();
+        postProcessor.submit("failing", () -> {
+            throw new IllegalStateException("broken recording");
+        });
+        postProcessor.close();
+        var ran = new AtomicInteger();
+        postProcessor.submit("late", ran::incrementAndGet);
+
+        assertThat(ran).hasValue(1);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
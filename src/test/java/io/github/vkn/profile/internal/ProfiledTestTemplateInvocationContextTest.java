@@ -16,6 +16,14 @@ class ProfiledTestTemplateInvocationContextTest {
         test(3, 5, 6, "Profiling invocation 1/3"); // Beyond warm-up phase, more warm-ups than repeats
     }
 
+    @Test
+    void testAdaptiveDisplayName() {
+        assertThat(new ProfiledTestTemplateInvocationContext(10, 1000, true).getDisplayName(3))
+                .isEqualTo("Adaptive warmup invocation 3/max 1000");
+        assertThat(new ProfiledTestTemplateInvocationContext(10, 37, true).getDisplayName(38))
+                .isEqualTo("Profiling invocation 1/10 after 37 warmup invocations");
+    }
+
     void test(int repeat, int warmUp, int invocationIndex, String expectedDisplayName) {
         ProfiledTestTemplateInvocationContext context = new ProfiledTestTemplateInvocationContext(repeat, warmUp);
         String actual = context.getDisplayName(invocationIndex);
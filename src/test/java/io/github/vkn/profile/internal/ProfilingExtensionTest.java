@@ -1,33 +1,58 @@
 package io.github.vkn.profile.internal;
 
+import io.github.vkn.profile.AdaptiveWarmup;
+import io.github.vkn.profile.Backend;
+import io.github.vkn.profile.Complexity;
+import io.github.vkn.profile.Fork;
+import io.github.vkn.profile.HeapGrowth;
+import io.github.vkn.profile.PerformanceBudget;
+import io.github.vkn.profile.ProfiledComparison;
 import io.github.vkn.profile.ProfiledTest;
 import io.github.vkn.profile.ProfilingUnit;
+import io.github.vkn.profile.Sampling;
+import io.github.vkn.profile.SessionScope;
 import io.github.vkn.profile.Type;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.extension.ExecutableInvoker;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
 import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
 import org.junit.jupiter.api.extension.TestInstances;
 import org.junit.jupiter.api.extension.TestTemplateInvocationContext;
 import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
+import java.io.IOException;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class ProfilingExtensionTest {
 
     private static final String PROFILED_METHOD = "profiledMethod";
+    private static volatile Object sink;
     private TestExtensionContext extensionContext;
     private TestedExtension extension;
 
@@ -38,6 +63,27 @@ class ProfilingExtensionTest {
         extension = new TestedExtension();
     }
 
+    @AfterEach
+    void tearDown() throws IOException {
+        // JUnit closes the template's store, releasing the profiling session
+        var profiler = extensionContext.getStore(null).get(ProfilingExtension._KEY_PROFILER, ExclusiveProfiler.class);
+        if (profiler != null) {
+            profiler.close();
+        }
+        var sweep = extensionContext.getStore(null).get(ProfilingExtension._KEY_SWEEP, SizeSweep.class);
+        if (sweep != null) {
+            sweep.close();
+        }
+        var postProcessor = extensionContext.getStore(null).get(ProfilingExtension._KEY_POST_PROCESSOR, PostProcessor.class);
+        if (postProcessor != null) {
+            postProcessor.close();
+        }
+        var report = extensionContext.getStore(null).get(ProfilingExtension._KEY_REPORT, RunReport.class);
+        if (report != null) {
+            report.close();
+        }
+    }
+
     @Test
     void defaults() throws NoSuchMethodException {
         var annotation = TestClass.class.getDeclaredMethod("defaults")
@@ -69,6 +115,549 @@ class ProfilingExtensionTest {
         assertThatNoException().isThrownBy(() -> extension.afterEach(extensionContext));
     }
 
+    @Test
+    void interceptTestTemplateMethod() throws Throwable {
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        var histogram = extensionContext.getStore(null).get(ProfilingExtension._KEY_HISTOGRAM, LatencyHistogram.class);
+        var invocations = new AtomicInteger();
+        InvocationInterceptor.Invocation<Void> invocation = () -> {
+            invocations.incrementAndGet();
+            return null;
+        };
+
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(invocation, null, extensionContext);
+        assertThat(histogram.count()).as("warm-up is not timed").isZero();
+
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(invocation, null, extensionContext);
+        assertThat(histogram.count()).isOne();
+        assertThat(invocations).hasValue(2);
+    }
+
+    @Test
+    void measuresAllocations() throws Throwable {
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("allocating"));
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        var allocations = extensionContext.getStore(null).get(ProfilingExtension._KEY_ALLOCATION, AllocationCounter.class);
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(() -> {
+            sink = new byte[4096];
+            return null;
+        }, null, extensionContext);
+        assertThatNoException().isThrownBy(() -> extension.afterEach(extensionContext));
+        assertThat(allocations.count()).isOne();
+        assertThat(allocations.bytesPerInvocation()).isGreaterThanOrEqualTo(4096);
+    }
+
+    @Test
+    void allocationFreeWithinBudget() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("allocationFree");
+        extensionContext.setMethod(method);
+        var invocationContext = new TestInvocationContext(method, new TestClass());
+        var invoker = new MethodInvoker(invocationContext);
+        var proceeded = new AtomicInteger();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+            try {
+                extension.beforeEach(extensionContext);
+                extension.interceptTestTemplateMethod(() -> {
+                    // the invocation chain allocates, like JUnit's
+                    sink = new long[4];
+                    proceeded.incrementAndGet();
+                    invoker.invoke();
+                    return null;
+                }, invocationContext, extensionContext);
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+            assertThatNoException().isThrownBy(() -> extension.afterEach(extensionContext));
+        });
+        var allocations = extensionContext.getStore(null).get(ProfilingExtension._KEY_ALLOCATION, AllocationCounter.class);
+        assertThat(proceeded).as("every invocation proceeds through the chain").hasValue(22_000);
+        assertThat(allocations.overhead()).isPositive();
+        assertThat(allocations.count()).isEqualTo(2000);
+        assertThat(allocations.total()).isZero();
+    }
+
+    @Test
+    void loadedInvocationsDoNotAllocate() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("loaded");
+        extensionContext.setMethod(method);
+        var invocationContext = new TestInvocationContext(method, new TestClass());
+        InvocationInterceptor.Invocation<Void> invocation = () -> null;
+        var allocated = new AtomicLong();
+        var index = new AtomicInteger();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+            extension.beforeEach(extensionContext);
+            long before = AllocationCounter.currentThreadAllocatedBytes();
+            try {
+                extension.interceptTestTemplateMethod(invocation, invocationContext, extensionContext);
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+            if (index.incrementAndGet() > 40_000) {
+                // the last invocations, after the JIT compiled the path
+                allocated.addAndGet(AllocationCounter.currentThreadAllocatedBytes() - before);
+            }
+            extension.afterEach(extensionContext);
+        });
+        var load = extensionContext.getStore(null).get(ProfilingExtension._KEY_LOAD, ConcurrentLoad.class);
+        load.close();
+        assertThat(index).hasValue(50_000);
+        assertThat(allocated.get()).as("bytes allocated by 10000 invocations").isLessThan(10_000);
+    }
+
+    @Test
+    void noAllocationMeasurementByDefault() {
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        assertThat(extensionContext.getStore(null).get(ProfilingExtension._KEY_ALLOCATION)).isNull();
+    }
+
+    @Test
+    void throughputMode() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("throughput");
+        extensionContext.setMethod(method);
+        var contexts = extension.provideTestTemplateInvocationContexts(extensionContext);
+        assertThat(contexts).hasSize(2);
+        var histogram = extensionContext.getStore(null).get(ProfilingExtension._KEY_HISTOGRAM, LatencyHistogram.class);
+        var throughput = extensionContext.getStore(null).get(ProfilingExtension._KEY_THROUGHPUT, Throughput.class);
+        var instance = new TestClass();
+        var invocationContext = new TestInvocationContext(method, instance);
+
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(instance::proceed, invocationContext, extensionContext);
+        assertThat(instance.invocations).as("warm-up runs for 20ms").isGreaterThan(1);
+        assertThat(histogram.count()).isZero();
+
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(instance::proceed, invocationContext, extensionContext);
+        assertThat(histogram.count()).isGreaterThan(1).isEqualTo(throughput.operations());
+        assertThat(throughput.opsPerSecond()).isPositive();
+        assertThatNoException().isThrownBy(() -> extension.afterEach(extensionContext));
+    }
+
+    @Test
+    void adaptiveWarmup() throws Throwable {
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("adaptive"));
+        var profiled = new AtomicInteger();
+        var names = new ArrayList<String>();
+        var index = new AtomicInteger();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+            names.add(ctx.getDisplayName(index.incrementAndGet()));
+            extension.beforeEach(extensionContext);
+            try {
+                extension.interceptTestTemplateMethod(() -> null, null, extensionContext);
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+            extension.afterEach(extensionContext);
+            profiled.set((int) extensionContext.getStore(null)
+                    .get(ProfilingExtension._KEY_HISTOGRAM, LatencyHistogram.class).count());
+        });
+
+        assertThat(names).hasSizeBetween(4, 7);
+        assertThat(names.get(0)).isEqualTo("Adaptive warmup invocation 1/max 5");
+        int warmUps = names.size() - 2;
+        assertThat(names.subList(warmUps, names.size())).containsExactly(
+                "Profiling invocation 1/2 after %d warmup invocations".formatted(warmUps),
+                "Profiling invocation 2/2 after %d warmup invocations".formatted(warmUps));
+        assertThat(profiled).hasValue(2);
+    }
+
+    @Test
+    void budgetExceeded() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("overBudget");
+        extensionContext.setMethod(method);
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(() -> null, new TestInvocationContext(method, new TestClass()),
+                extensionContext);
+        assertThatThrownBy(() -> extension.afterEach(extensionContext))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("Performance check of overBudget failed: mean latency");
+    }
+
+    @Test
+    void sizeSweepClosesTheLoadOfEverySize() throws Throwable {
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("loadedSweep", int.class));
+        var loads = new LinkedHashSet<ConcurrentLoad>();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> loads.add(
+                extensionContext.getStore(null).get(ProfilingExtension._KEY_SESSION, ProfilingSession.class).load()));
+        assertThat(loads).hasSize(2).noneMatch(ConcurrentLoad::isClosed);
+
+        extensionContext.getStore(null).remove(ProfilingExtension._KEY_SWEEP, SizeSweep.class).close();
+        assertThat(loads).allMatch(ConcurrentLoad::isClosed);
+    }
+
+    @Test
+    void sizeSweep() throws Throwable {
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("sweep", int.class));
+        var names = new ArrayList<String>();
+        var index = new AtomicInteger();
+        var failures = new ArrayList<Throwable>();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+            names.add(ctx.getDisplayName(index.incrementAndGet()));
+            long spin = ((SizeInvocationContext) ctx).size() * 20_000L;
+            extension.beforeEach(extensionContext);
+            try {
+                extension.interceptTestTemplateMethod(() -> {
+                    long end = System.nanoTime() + spin;
+                    while (System.nanoTime() < end) {
+                        Thread.onSpinWait();
+                    }
+                    return null;
+                }, null, extensionContext);
+                extension.afterEach(extensionContext);
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+
+        assertThat(names).containsExactly(
+                "n=1: Warmup invocation 1/1", "n=1: Profiling invocation 1/2", "n=1: Profiling invocation 2/2",
+                "n=10: Warmup invocation 1/1", "n=10: Profiling invocation 1/2", "n=10: Profiling invocation 2/2",
+                "n=100: Warmup invocation 1/1", "n=100: Profiling invocation 1/2", "n=100: Profiling invocation 2/2");
+        assertThat(failures).singleElement()
+                .asString()
+                .contains("Performance check of sweep failed: scaling")
+                .contains("exceeds budget O(1)");
+    }
+
+    @Test
+    void forked() throws Throwable {
+        Method method = ForkedTestClass.class.getDeclaredMethod("forked");
+        extensionContext.setMethod(method);
+        assertThat(extension.provideTestTemplateInvocationContexts(extensionContext)).hasSize(2);
+        var histogram = extensionContext.getStore(null).get(ProfilingExtension._KEY_HISTOGRAM, LatencyHistogram.class);
+        var allocations = extensionContext.getStore(null).get(ProfilingExtension._KEY_ALLOCATION, AllocationCounter.class);
+        var invocations = new AtomicInteger();
+        InvocationInterceptor.Invocation<Void> invocation = () -> {
+            invocations.incrementAndGet();
+            return null;
+        };
+        for (int i = 0; i < 2; i++) {
+            extension.beforeEach(extensionContext);
+            extension.interceptTestTemplateMethod(invocation, new TestInvocationContext(method, null), extensionContext);
+            extension.afterEach(extensionContext);
+        }
+        assertThat(invocations).as("the test runs in the forks only").hasValue(0);
+        assertThat(histogram.count()).isEqualTo(6);
+        assertThat(allocations.count()).isEqualTo(6);
+        assertThat(allocations.bytesPerInvocation()).isGreaterThanOrEqualTo(4096);
+    }
+
+    @Test
+    void runReport() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("allocating");
+        extensionContext.setMethod(method);
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(() -> null, new TestInvocationContext(method, new TestClass()), extensionContext);
+        extension.afterEach(extensionContext);
+        var report = extensionContext.getStore(null).remove(ProfilingExtension._KEY_REPORT, RunReport.class);
+        report.close();
+
+        Path dir = getPath();
+        assertThat(Files.readAllLines(report.csvFile()))
+                .hasSize(2)
+                .last().asString()
+                .startsWith(TestClass.class.getName() + ".allocating,\"cpu,alloc,lock\",JFR,1,")
+                .endsWith("TestClass.allocating_latency.txt");
+        assertThat(dir.resolve(RunReport.INDEX_FILE)).content().contains("<td>" + TestClass.class.getName() + ".allocating</td>");
+    }
+
+    @Test
+    void comparison() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("comparison");
+        extensionContext.setMethod(method);
+        var instance = new TestClass();
+        assertThat(extension.provideTestTemplateInvocationContexts(extensionContext))
+                .singleElement()
+                .satisfies(ctx -> assertThat(ctx.getDisplayName(1)).isEqualTo("Comparison of slow and fast"));
+
+        var skipped = new AtomicInteger();
+        extension.interceptTestTemplateMethod(new InvocationInterceptor.Invocation<>() {
+            @Override
+            public Void proceed() {
+                throw new AssertionError("the body of a comparison must not be invoked");
+            }
+
+            @Override
+            public void skip() {
+                skipped.incrementAndGet();
+            }
+        }, new TestInvocationContext(method, instance), extensionContext);
+        var report = extensionContext.getStore(null).remove(ProfilingExtension._KEY_REPORT, RunReport.class);
+        report.close();
+
+        assertThat(skipped).hasValue(1);
+        // 2 warm-up and 5 measured rounds, then 5 profiled invocations
+        assertThat(instance.slow).isEqualTo(12);
+        assertThat(instance.fast).isEqualTo(12);
+        Path dir = getPath();
+        assertThat(dir.resolve(TestClass.class.getName() + ".comparison_comparison.txt")).content()
+                .contains("slow: count=5").contains("fast: count=5").contains("speedup=");
+        assertThat(Files.readAllLines(report.csvFile()))
+                .anyMatch(line -> line.startsWith(TestClass.class.getName() + ".comparison(fast),"));
+
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("requiredSpeedup"));
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        assertThatThrownBy(() -> extension.interceptTestTemplateMethod(() -> null,
+                new TestInvocationContext(TestClass.class.getDeclaredMethod("requiredSpeedup"), instance), extensionContext))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("speedup")
+                .hasMessageContaining("not above 2.000x");
+    }
+
+    @Test
+    void differentialFlameGraph() throws Throwable {
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("collapsed"));
+        var weight = new AtomicInteger();
+        var extension = new ProfilingExtension() {
+            @Override
+            Profiler getProfiler(Backend backend, Type type, String events, ProfilerOptions options,
+                                 String absoluteDirPath) {
+                Path output = Path.of(absoluteDirPath + "_cpu.collapsed");
+                return new TestProfiler() {
+                    @Override
+                    public void stop() {
+                        try {
+                            Files.writeString(output, "main;parse " + weight.addAndGet(10) + "\n");
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+
+                    @Override
+                    public Optional<Path> output() {
+                        return Optional.of(output);
+                    }
+                };
+            }
+        };
+        Path dir = getPath();
+        String name = TestClass.class.getName() + ".collapsed";
+        Files.deleteIfExists(dir.resolve(name + "_cpu_previous.collapsed"));
+        Files.deleteIfExists(dir.resolve(name + "_cpu.collapsed"));
+        Files.deleteIfExists(dir.resolve(name + "_diff.html"));
+        for (int run = 0; run < 2; run++) {
+            extension.provideTestTemplateInvocationContexts(extensionContext);
+            extension.beforeEach(extensionContext);
+            extension.interceptTestTemplateMethod(() -> null, null, extensionContext);
+            extension.afterEach(extensionContext);
+            var postProcessor = extensionContext.getStore(null).remove(ProfilingExtension._KEY_POST_PROCESSOR, PostProcessor.class);
+            if (postProcessor != null) {
+                postProcessor.close();
+            }
+            assertThat(Files.exists(dir.resolve(name + "_diff.html"))).isEqualTo(run == 1);
+        }
+
+        assertThat(dir.resolve(name + "_cpu_previous.collapsed")).content().isEqualTo("main;parse 10\n");
+        assertThat(dir.resolve(name + "_cpu.collapsed")).content().isEqualTo("main;parse 20\n");
+        assertThat(dir.resolve(name + "_diff.html")).content().contains("parse (20 samples, previously 10, +0.00%)");
+    }
+
+    @Test
+    void heapGrowth() throws Throwable {
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("leaking"));
+        var retained = new ArrayList<long[]>();
+        var failures = new ArrayList<Throwable>();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+            extension.beforeEach(extensionContext);
+            try {
+                extension.interceptTestTemplateMethod(() -> {
+                    // many small arrays, so that they lead the instance growth of the histogram
+                    for (int i = 0; i < 8_192; i++) {
+                        retained.add(new long[4]);
+                    }
+                    return null;
+                }, null, extensionContext);
+                extension.afterEach(extensionContext);
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+
+        assertThat(retained).hasSize(9 * 8_192);
+        assertThat(failures).singleElement()
+                .asString()
+                .contains("Performance check of leaking failed: heap grows by");
+        assertThat(getPath().resolve(TestClass.class.getName() + ".leaking_heap.txt")).content()
+                .contains("samples=5")
+                .contains("instances", " [J");
+    }
+
+    @Test
+    void classSession() throws Throwable {
+        var created = new AtomicInteger();
+        var started = new AtomicInteger();
+        var stopped = new AtomicInteger();
+        var extension = new ProfilingExtension() {
+            @Override
+            Profiler getProfiler(Backend backend, Type type, String events, ProfilerOptions options,
+                                 String absoluteDirPath) {
+                created.incrementAndGet();
+                assertThat(type).isEqualTo(Type.JFR);
+                assertThat(absoluteDirPath).endsWith(ClassScopedTestClass.class.getName());
+                return new TestProfiler() {
+                    @Override
+                    public void start() {
+                        started.incrementAndGet();
+                    }
+
+                    @Override
+                    public void stop() {
+                        stopped.incrementAndGet();
+                    }
+                };
+            }
+        };
+        for (String name : List.of("first", "second")) {
+            extensionContext.setMethod(ClassScopedTestClass.class.getDeclaredMethod(name));
+            extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+                extension.beforeEach(extensionContext);
+                extension.afterEach(extensionContext);
+            });
+        }
+        // the profiler of the tests is not closeable, the class session is
+        extensionContext.getStore(null).remove(ProfilingExtension._KEY_PROFILER);
+        extensionContext.getStore(null).remove(ProfilingExtension._KEY_REPORT, RunReport.class).close();
+
+        assertThat(created).hasValue(1);
+        assertThat(started).as("started by the warm-up of the first test").hasValue(1);
+        assertThat(stopped).hasValue(0);
+        extensionContext.getStore(null).remove(ProfilingExtension._KEY_CLASS_SESSION, ClassSession.class).close();
+        assertThat(stopped).hasValue(1);
+    }
+
+    @Test
+    void classSessionNeedsProfilerLockUnderParallelExecution() throws Throwable {
+        extensionContext.configuration.put("junit.jupiter.execution.parallel.enabled", "true");
+        var extension = new ProfilingExtension() {
+            @Override
+            Profiler getProfiler(Backend backend, Type type, String events, ProfilerOptions options,
+                                 String absoluteDirPath) {
+                return new TestProfiler();
+            }
+        };
+        extensionContext.setMethod(ClassScopedTestClass.class.getDeclaredMethod("second"));
+        assertThatThrownBy(() -> extension.provideTestTemplateInvocationContexts(extensionContext))
+                .isInstanceOf(ExtensionConfigurationException.class)
+                .hasMessageContaining("@ResourceLock(ProfiledTest.PROFILER_LOCK)");
+
+        extensionContext.setMethod(LockedClassScopedTestClass.class.getDeclaredMethod("profiled"));
+        assertThat(extension.provideTestTemplateInvocationContexts(extensionContext)).isNotEmpty();
+        extensionContext.getStore(null).remove(ProfilingExtension._KEY_PROFILER);
+        extensionContext.getStore(null).remove(ProfilingExtension._KEY_CLASS_SESSION, ClassSession.class).close();
+    }
+
+    @Test
+    void lockFreeWithinLockBudget() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("lockFree");
+        extensionContext.setMethod(method);
+        var extension = new ProfilingExtension();
+        var invocationContext = new TestInvocationContext(method, new TestClass());
+        var invoker = new MethodInvoker(invocationContext);
+        var failures = new ArrayList<Throwable>();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+            try {
+                extension.beforeEach(extensionContext);
+                extension.interceptTestTemplateMethod(() -> {
+                    invoker.invoke();
+                    return null;
+                }, invocationContext, extensionContext);
+                extension.afterEach(extensionContext);
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        extensionContext.getStore(null).remove(ProfilingExtension._KEY_LOAD, ConcurrentLoad.class).close();
+
+        assertThat(failures).isEmpty();
+        assertThat(extensionContext.getStore(null).get(ProfilingExtension._KEY_SUMMARY, JfrSummary.class))
+                .as("the lock budget is checked").isNotNull();
+    }
+
+    @Test
+    void publishesSummaryAfterAll() throws Throwable {
+        Method method = TestClass.class.getDeclaredMethod("summarized");
+        extensionContext.setMethod(method);
+        var extension = new ProfilingExtension();
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        extension.beforeEach(extensionContext);
+        extension.interceptTestTemplateMethod(() -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() < end) {
+                sink = new byte[64];
+            }
+            return null;
+        }, null, extensionContext);
+        extension.afterEach(extensionContext);
+        assertThat(extensionContext.reportEntries).noneMatch(entries -> entries.containsKey("jfr.test"));
+
+        extension.afterAll(extensionContext);
+        assertThat(extensionContext.reportEntries).filteredOn(entries -> entries.containsKey("jfr.test"))
+                .singleElement()
+                .satisfies(entries -> assertThat(entries)
+                        .containsEntry("jfr.test", TestClass.class.getName() + ".summarized")
+                        .containsKey("jfr.cpu.samples"));
+    }
+
+    @Test
+    void disabled() throws Throwable {
+        extensionContext.configuration.put(ProfilingUnit.ENABLED_PROPERTY, "false");
+        var extension = new ProfilingExtension() {
+            @Override
+            Profiler getProfiler(Backend backend, Type type, String events, ProfilerOptions options,
+                                 String absoluteDirPath) {
+                throw new AssertionError("the profiler must not be loaded");
+            }
+        };
+        var names = new ArrayList<String>();
+        var invocations = new AtomicInteger();
+        var index = new AtomicInteger();
+        extension.provideTestTemplateInvocationContexts(extensionContext).forEach(ctx -> {
+            names.add(ctx.getDisplayName(index.incrementAndGet()));
+            extension.beforeEach(extensionContext);
+            try {
+                extension.interceptTestTemplateMethod(() -> {
+                    invocations.incrementAndGet();
+                    return null;
+                }, null, extensionContext);
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+            extension.afterEach(extensionContext);
+        });
+
+        assertThat(names).containsExactly("Profiling disabled");
+        assertThat(invocations).hasValue(1);
+        assertThat(extensionContext.getStore(null).get(ProfilingExtension._KEY_SESSION)).isNull();
+
+        extensionContext.setMethod(TestClass.class.getDeclaredMethod("sweep", int.class));
+        assertThat(extension.provideTestTemplateInvocationContexts(extensionContext))
+                .singleElement()
+                .satisfies(ctx -> assertThat(((SizeInvocationContext) ctx).size()).isOne());
+    }
+
+    @Test
+    void configurationOverrides() throws NoSuchMethodException {
+        extensionContext.configuration.put(ProfilingUnit.REPEAT_PROPERTY, "3");
+        extensionContext.configuration.put(ProfilingUnit.WARMUP_PROPERTY, "2");
+        assertThat(extension.provideTestTemplateInvocationContexts(extensionContext)).hasSize(5);
+
+        extensionContext.configuration.put(ProfilingUnit.DIR_PROPERTY, getPath().resolve("custom").toString());
+        extensionContext.configuration.put(ProfilingUnit.TYPE_PROPERTY, "flame");
+        extension.provideTestTemplateInvocationContexts(extensionContext);
+        assertThat(extensionContext.getStore(null).get(ProfilingExtension._KEY_FILE, String.class))
+                .contains("profiling/custom/");
+
+        extensionContext.configuration.put(ProfilingUnit.REPEAT_PROPERTY, "0");
+        assertThatThrownBy(() -> extension.provideTestTemplateInvocationContexts(extensionContext))
+                .isInstanceOf(ExtensionConfigurationException.class)
+                .hasMessageContaining(ProfilingUnit.REPEAT_PROPERTY);
+    }
+
     @Test
     void provideTestTemplateInvocationContexts() {
         Stream<TestTemplateInvocationContext> stream = extension.provideTestTemplateInvocationContexts(extensionContext);
@@ -89,16 +678,20 @@ class ProfilingExtensionTest {
 
     @Test
     void getProfiler() throws NoSuchMethodException {
-        assertThat(extension.getProfiler(Type.JFR, "cpu", getPath().toString()))
+        String path = getPath().toString();
+        assertThat(extension.getProfiler(Backend.AUTO, Type.JFR, "cpu", ProfilerOptions.DEFAULT, path))
                 .isInstanceOf(Profiler.class);
 
-        assertThat(new ProfilingExtension().getProfiler(Type.JFR, "cpu", getPath().toString()))
-                .isInstanceOf(Profiler.class);
+        assertThat(new ProfilingExtension().getProfiler(Backend.AUTO, Type.JFR, "cpu", ProfilerOptions.DEFAULT, path))
+                .isInstanceOf(AsyncProfiler.class);
+        assertThat(new ProfilingExtension().getProfiler(Backend.JFR, Type.JFR, "cpu", ProfilerOptions.DEFAULT, path))
+                .isInstanceOf(JfrProfiler.class);
     }
 
     private static class TestedExtension extends ProfilingExtension {
         @Override
-        Profiler getProfiler(Type type, String events, String absoluteDirPath) {
+        Profiler getProfiler(Backend backend, Type type, String events, ProfilerOptions options,
+                                 String absoluteDirPath) {
             return new TestProfiler();
         }
     }
@@ -127,16 +720,148 @@ class ProfilingExtensionTest {
         }
         @ProfiledTest
         void defaults() {}
+        @ProfiledTest
+        @PerformanceBudget(maxMean = 1, maxAllocatedBytes = 1_000_000, unit = TimeUnit.NANOSECONDS)
+        void overBudget() throws InterruptedException {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        @ProfiledTest(allocations = true)
+        void allocating() {
+            sink = new byte[4096];
+        }
+        final AtomicLong operations = new AtomicLong();
+        @ProfiledTest(backend = Backend.JFR, event = "cpu,lock", threads = 4, warmup = 10, repeat = 200, top = 0)
+        @Sampling(lock = 10, unit = TimeUnit.MICROSECONDS)
+        @PerformanceBudget(maxBlocked = 500, maxContendedRatio = 0.01, unit = TimeUnit.MICROSECONDS)
+        void lockFree() {
+            for (int i = 0; i < 1_000; i++) {
+                operations.incrementAndGet();
+            }
+        }
+        @ProfiledTest(backend = Backend.JFR, event = "cpu", repeat = 1, top = 3)
+        void summarized() {}
+        @ProfiledTest(threads = 2, repeat = 50_000, top = 0)
+        void loaded() {}
+        int counter;
+        @ProfiledTest(warmup = 20_000, repeat = 2_000, top = 0)
+        @PerformanceBudget(maxAllocatedBytes = 0)
+        void allocationFree() {
+            counter++;
+        }
+        @ProfiledTest(type = Type.COLLAPSED, top = 0)
+        void collapsed() {}
+        @ProfiledTest(repeat = 9, top = 0)
+        @HeapGrowth(every = 2, histogram = true, top = 3)
+        void leaking() {}
+        @ProfiledTest(repeat = 2, warmup = 1, sizes = {1, 10, 100})
+        @PerformanceBudget(maxComplexity = Complexity.CONSTANT)
+        void sweep(int size) {}
+        @ProfiledTest(repeat = 1, threads = 2, sizes = {1, 10}, top = 0)
+        void loadedSweep(int size) {}
+        @ProfiledTest(repeat = 2)
+        @AdaptiveWarmup(cv = 1, window = 2, max = 5)
+        void adaptive() {}
+        int invocations;
+        @ProfiledTest(warmupTime = 20, measurementTime = 50, timeUnit = TimeUnit.MILLISECONDS)
+        void throughput() {
+            invocations++;
+        }
+        Void proceed() {
+            throughput();
+            return null;
+        }
         @Test
         void methodNoAnnotation() {
         }
+        int slow;
+        int fast;
+        void slow() throws InterruptedException {
+            slow++;
+            Thread.sleep(2);
+        }
+        void fast() {
+            fast++;
+        }
+        @ProfiledComparison(baseline = "slow", candidate = "fast", rounds = 5, warmup = 2)
+        void comparison() {
+        }
+        @ProfiledComparison(baseline = "fast", candidate = "slow", rounds = 5, warmup = 0, minSpeedup = 1)
+        void requiredSpeedup() {
+        }
+
+    }
+
 
+    @SuppressWarnings({"JUnitMalformedDeclaration", "NewClassNamingConvention"})
+    @ProfilingUnit(session = SessionScope.CLASS)
+    static class ClassScopedTestClass {
+
+        @ProfiledTest(repeat = 2, warmup = 1, type = Type.FLAME, top = 0)
+        void first() {
+        }
+
+        @ProfiledTest(repeat = 1, top = 0)
+        void second() {
+        }
     }
 
 
+    @SuppressWarnings({"JUnitMalformedDeclaration", "NewClassNamingConvention"})
+    @ProfilingUnit(session = SessionScope.CLASS)
+    @ResourceLock(ProfiledTest.PROFILER_LOCK)
+    static class LockedClassScopedTestClass {
+
+        @ProfiledTest(repeat = 1, top = 0)
+        void profiled() {
+        }
+    }
+
+
+    @SuppressWarnings({"JUnitMalformedDeclaration", "NewClassNamingConvention"})
+    @ProfilingUnit
+    static class ForkedTestClass {
+
+        @ProfiledTest(repeat = 3, warmup = 1, event = "cpu", allocations = true, top = 0)
+        @Fork(value = 2, heap = "64m", gc = "Serial")
+        void forked() {
+            sink = new byte[4096];
+        }
+    }
+
+
+    private record TestInvocationContext(Method method, Optional<Object> target)
+            implements ReflectiveInvocationContext<Method> {
+        TestInvocationContext(Method method, Object target) {
+            // created once, so that the context does not allocate per invocation
+            this(method, Optional.of(target));
+        }
+
+        @Override
+        public Class<?> getTargetClass() {
+            return target.orElseThrow().getClass();
+        }
+
+        @Override
+        public Method getExecutable() {
+            return method;
+        }
+
+        @Override
+        public List<Object> getArguments() {
+            return List.of();
+        }
+
+        @Override
+        public Optional<Object> getTarget() {
+            return target;
+        }
+    }
+
     private static class TestExtensionContext implements ExtensionContext {
         private final TestStore store = new TestStore();
-        private Method method;
+        private final Map<String, String> configuration = new HashMap<>();
+        private final List<Map<String, String>> reportEntries = new ArrayList<>();
+        private Optional<Method> method = Optional.empty();
 
         @Override
         public Optional<ExtensionContext> getParent() {
@@ -189,12 +914,12 @@ class ProfilingExtensionTest {
         }
 
         public void setMethod(Method method) {
-            this.method = method;
+            this.method = Optional.ofNullable(method);
         }
 
         @Override
         public Optional<Method> getTestMethod() {
-            return Optional.ofNullable(method);
+            return method;
         }
 
         @Override
@@ -204,7 +929,7 @@ class ProfilingExtensionTest {
 
         @Override
         public Optional<String> getConfigurationParameter(String s) {
-            return Optional.empty();
+            return Optional.ofNullable(configuration.get(s));
         }
 
         @Override
@@ -214,7 +939,7 @@ class ProfilingExtensionTest {
 
         @Override
         public void publishReportEntry(Map<String, String> map) {
-
+            reportEntries.add(map);
         }
 
         @Override
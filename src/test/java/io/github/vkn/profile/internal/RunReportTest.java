@@ -0,0 +1,66 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RunReportTest {
+
+    @Test
+    void streamsRecordsAndSortsIndexByCost(@TempDir Path dir) throws Exception {
+        var report = new RunReport(dir);
+        report.record("a.Fast.cheap", "cpu", "JFR", histogram(1_000, 1_000), null, dir.resolve("cheap_cpu.jfr"));
+        assertThat(Files.readAllLines(report.csvFile())).as("written as tests complete").hasSize(2);
+        report.record("a.Slow.costly(n=10)", "cpu,alloc", "HTML", histogram(5_000_000, 7_000_000),
+                new AllocationCounter(), dir.resolve("costly_cpu_alloc.html"));
+        report.close();
+
+        String index = Files.readString(dir.resolve(RunReport.INDEX_FILE));
+        assertThat(index.indexOf("a.Slow.costly(n=10)")).isLessThan(index.indexOf("a.Fast.cheap"));
+        assertThat(index).contains("<a href=\"costly_cpu_alloc.html\">", "12.000ms", "100.0%");
+    }
+
+    @Test
+    void indexCoversAllJvmsOfTheRun(@TempDir Path dir) throws Exception {
+        // a previous run whose parent process has exited
+        Path previous = dir.resolve(RunReport.CSV_PREFIX + Long.MAX_VALUE + "-1" + RunReport.CSV_SUFFIX);
+        Files.writeString(previous, "test\nold.Test.stale\n");
+        var first = new RunReport(dir, 1, 10);
+        var second = new RunReport(dir, 1, 11);
+        assertThat(previous).doesNotExist();
+
+        first.record("a.First.test", "cpu", "JFR", histogram(1_000), null, dir.resolve("first_cpu.jfr"));
+        first.close();
+        second.record("a.Second.test", "cpu", "JFR", histogram(2_000), null, dir.resolve("second_cpu.jfr"));
+        second.close();
+
+        assertThat(first.csvFile()).isNotEqualTo(second.csvFile());
+        assertThat(dir.resolve(RunReport.INDEX_FILE)).content()
+                .contains("a.First.test", "a.Second.test")
+                .doesNotContain("stale");
+    }
+
+    @Test
+    void quotesFields() {
+        assertThat(RunReport.parse("a,\"cpu,alloc\",\"say \"\"hi\"\"\",")).containsExactly("a", "cpu,alloc", "say \"hi\"", "");
+    }
+
+    @Test
+    void escapesHtml() {
+        var row = List.of("<T>", "cpu", "JFR", "1", "0", "0", "0", "0", "0", "", "/x/a&b.jfr");
+        assertThat(RunReport.html(List.of(row))).contains("&lt;T&gt;", "a&amp;b.jfr", "0.0%");
+    }
+
+    private static LatencyHistogram histogram(long... values) {
+        var histogram = new LatencyHistogram();
+        for (long value : values) {
+            histogram.record(value);
+        }
+        return histogram;
+    }
+}
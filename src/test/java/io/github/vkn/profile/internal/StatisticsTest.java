@@ -0,0 +1,58 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class StatisticsTest {
+
+    @Test
+    void logGamma() {
+        assertThat(Statistics.logGamma(1)).isCloseTo(0, within(1e-10));
+        assertThat(Statistics.logGamma(5)).isCloseTo(Math.log(24), within(1e-10));
+    }
+
+    @Test
+    void studentTCdf() {
+        assertThat(Statistics.studentTCdf(0, 10)).isCloseTo(0.5, within(1e-10));
+        // reference values from t-distribution tables
+        assertThat(Statistics.studentTCdf(2.228, 10)).isCloseTo(0.975, within(1e-4));
+        assertThat(Statistics.studentTCdf(-2.228, 10)).isCloseTo(0.025, within(1e-4));
+        assertThat(Statistics.studentTCdf(1.96, 1e6)).isCloseTo(0.975, within(1e-4));
+    }
+
+    @Test
+    void studentTQuantile() {
+        assertThat(Statistics.studentTQuantile(0.975, 10)).isCloseTo(2.228, within(1e-3));
+        assertThat(Statistics.studentTQuantile(0.9995, 9)).isCloseTo(4.781, within(1e-3));
+        assertThat(Statistics.studentTQuantile(0.5, 3)).isCloseTo(0, within(1e-6));
+    }
+
+    @Test
+    void normalCdf() {
+        assertThat(Statistics.normalCdf(0)).isCloseTo(0.5, within(1e-7));
+        assertThat(Statistics.normalCdf(1.96)).isCloseTo(0.975, within(1e-4));
+        assertThat(Statistics.normalCdf(-2.326)).isCloseTo(0.01, within(1e-4));
+    }
+
+    @Test
+    void mannWhitneyLessPValue() {
+        long[] slow = {110, 120, 130, 140, 150, 160, 170, 180, 190, 200};
+        long[] fast = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+        assertThat(Statistics.mannWhitneyLessPValue(slow, fast)).isLessThan(1e-3);
+        assertThat(Statistics.mannWhitneyLessPValue(fast, slow)).isGreaterThan(0.999);
+        assertThat(Statistics.mannWhitneyLessPValue(fast, fast)).isCloseTo(0.5, within(0.05));
+        assertThat(Statistics.mannWhitneyLessPValue(new long[]{5, 5}, new long[]{5, 5})).isOne();
+        assertThat(Statistics.mannWhitneyLessPValue(new long[0], fast)).isOne();
+    }
+
+    @Test
+    void welchGreaterPValue() {
+        assertThat(Statistics.welchGreaterPValue(100, 10, 1000, 110, 10, 1000)).isLessThan(1e-6);
+        assertThat(Statistics.welchGreaterPValue(100, 10, 1000, 100.1, 10, 1000)).isGreaterThan(0.1);
+        assertThat(Statistics.welchGreaterPValue(100, 10, 1000, 90, 10, 1000)).isGreaterThan(0.99);
+        assertThat(Statistics.welchGreaterPValue(100, 10, 1, 110, 10, 1000)).isOne();
+        assertThat(Statistics.welchGreaterPValue(100, 0, 10, 110, 0, 10)).isZero();
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SteadyStateDetectorTest {
+
+    private final AtomicLong compilationTime = new AtomicLong();
+
+    @Test
+    void steadyAfterStableWindow() {
+        var detector = new SteadyStateDetector(0.05, 5, 1_000, compilationTime::get);
+        for (int i = 0; i < 5; i++) {
+            detector.record(100 + i);
+            assertThat(detector.isSteady()).isFalse();
+        }
+        detector.record(100);
+        assertThat(detector.isSteady()).isTrue();
+        assertThat(detector.invocations()).isEqualTo(6);
+        detector.record(100);
+        assertThat(detector.invocations()).as("no longer recording").isEqualTo(6);
+    }
+
+    @Test
+    void waitsForCompilationToSettle() {
+        var detector = new SteadyStateDetector(0.05, 5, 1_000, compilationTime::get);
+        for (int i = 0; i < 10; i++) {
+            compilationTime.incrementAndGet();
+            detector.record(100);
+        }
+        assertThat(detector.isSteady()).isFalse();
+        for (int i = 0; i < 5; i++) {
+            detector.record(100);
+        }
+        assertThat(detector.isSteady()).isTrue();
+        assertThat(detector.invocations()).isEqualTo(15);
+    }
+
+    @Test
+    void waitsForLowVariation() {
+        var detector = new SteadyStateDetector(0.05, 5, 1_000, compilationTime::get);
+        for (int i = 0; i < 20; i++) {
+            detector.record(i % 2 == 0 ? 100 : 200);
+        }
+        assertThat(detector.isSteady()).isFalse();
+        assertThat(detector.coefficientOfVariation()).isGreaterThan(0.05);
+    }
+
+    @Test
+    void hardCap() {
+        var detector = new SteadyStateDetector(0.05, 5, 3, compilationTime::get);
+        detector.record(1);
+        detector.record(1_000);
+        assertThat(detector.isSteady()).isFalse();
+        detector.record(1);
+        assertThat(detector.isSteady()).isTrue();
+        assertThat(new SteadyStateDetector(0.05, 5, 0).isSteady()).isTrue();
+    }
+}
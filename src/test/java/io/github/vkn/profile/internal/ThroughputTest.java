@@ -0,0 +1,72 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ThroughputTest {
+
+    @Test
+    void constantRate() {
+        long duration = TimeUnit.SECONDS.toNanos(1);
+        var throughput = new Throughput(duration);
+        for (long t = 0; t < duration; t += 1_000_000) {
+            throughput.record(t);
+        }
+        assertThat(throughput.operations()).isEqualTo(1_000);
+        assertThat(throughput.opsPerSecond()).isCloseTo(1_000, within(1e-6));
+        assertThat(throughput.confidenceHalfWidth()).isCloseTo(0, within(1e-6));
+        assertThat(throughput.format()).startsWith("1000.0 ± 0.0 ops/s (99.9% CI, 1000 ops)");
+    }
+
+    @Test
+    void varyingRate() {
+        long duration = TimeUnit.SECONDS.toNanos(1);
+        var throughput = new Throughput(duration);
+        for (int slice = 0; slice < Throughput.SLICES; slice++) {
+            int ops = slice % 2 == 0 ? 90 : 110;
+            for (int i = 0; i < ops; i++) {
+                throughput.record(slice * duration / Throughput.SLICES);
+            }
+        }
+        // slices alternate 900 and 1100 ops/s: stdDev 105.4, t(0.9995, 9) = 4.781
+        assertThat(throughput.opsPerSecond()).isCloseTo(1_000, within(1e-6));
+        assertThat(throughput.confidenceHalfWidth()).isCloseTo(159.4, within(0.5));
+        assertThat(throughput.reportEntries()).containsKeys("throughput.opsPerSecond", "throughput.error");
+    }
+
+    @Test
+    void operationSlowerThanWindow() {
+        long duration = TimeUnit.MILLISECONDS.toNanos(10);
+        var throughput = new Throughput(duration);
+        // the first operation always runs, and completes long after the end of the window
+        throughput.record(4 * duration);
+        throughput.end(4 * duration);
+        assertThat(throughput.elapsedNanos()).isEqualTo(4 * duration);
+        assertThat(throughput.opsPerSecond()).isCloseTo(25, within(1e-6));
+    }
+
+    @Test
+    void mergedWindowsEndWithTheLastThread() {
+        long duration = TimeUnit.SECONDS.toNanos(1);
+        var throughput = new Throughput(duration);
+        var other = new Throughput(duration);
+        throughput.record(duration / 2);
+        throughput.end(duration);
+        other.record(2 * duration);
+        other.end(2 * duration);
+        throughput.add(other);
+        assertThat(throughput.opsPerSecond()).isCloseTo(1, within(1e-6));
+    }
+
+    @Test
+    void lateOperationsCountInLastSlice() {
+        var throughput = new Throughput(100);
+        throughput.record(150);
+        throughput.record(-1);
+        assertThat(throughput.operations()).isEqualTo(2);
+    }
+}
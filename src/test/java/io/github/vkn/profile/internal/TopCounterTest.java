@@ -0,0 +1,29 @@
+package io.github.vkn.profile.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopCounterTest {
+
+    @Test
+    void keepsHeavyHitters() {
+        var counter = new TopCounter(8);
+        counter.add("hot", 1_000);
+        for (int i = 0; i < 100; i++) {
+            counter.add("cold" + i, 1);
+        }
+        assertThat(counter.top(1)).extracting(TopCounter.Entry::key).containsExactly("hot");
+        assertThat(counter.top(100)).hasSizeLessThanOrEqualTo(8);
+    }
+
+    @Test
+    void prunesHalfOfTiedKeys() {
+        var counter = new TopCounter(8);
+        for (int i = 0; i < 9; i++) {
+            counter.add("key" + i, 1);
+        }
+        assertThat(counter.isEmpty()).isFalse();
+        assertThat(counter.top(100)).hasSize(5).extracting(TopCounter.Entry::key).contains("key8");
+    }
+}